@@ -0,0 +1,123 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Measures the throughput of {@code ConcurrentMap4} on a mixed workload
+ * ({@code merge}, {@code hasKey}, and {@code value} on a shared key space) as
+ * the number of threads grows.
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public final class ConcurrentMap4Benchmark {
+
+    /**
+     * Numbers of threads to measure.
+     */
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16 };
+
+    /**
+     * Number of distinct keys.
+     */
+    private static final int KEYS = 100_000;
+
+    /**
+     * Operations performed by each thread.
+     */
+    private static final int OPERATIONS_PER_THREAD = 1_000_000;
+
+    /**
+     * Percentage of operations that are {@code merge}; the rest are split
+     * between {@code hasKey} and {@code value}.
+     */
+    private static final int MERGE_PERCENT = 20;
+
+    /**
+     * Number of percentage points.
+     */
+    private static final int PERCENT = 100;
+
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private ConcurrentMap4Benchmark() {
+    }
+
+    /**
+     * Performs {@code OPERATIONS_PER_THREAD} random operations on
+     * {@code map}.
+     *
+     * @param map
+     *            the shared map
+     * @param keys
+     *            the key space
+     * @updates map
+     */
+    private static void work(ConcurrentMap4<String, Integer> map,
+            String[] keys) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            String key = keys[random.nextInt(keys.length)];
+            int choice = random.nextInt(PERCENT);
+            if (choice < MERGE_PERCENT) {
+                map.merge(key, 1, Integer::sum);
+            } else if (map.hasKey(key) && choice % 2 == 0) {
+                map.value(key);
+            }
+        }
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; unused here
+     * @throws InterruptedException
+     *             if interrupted while waiting for the worker threads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        SimpleWriter out = new SimpleWriter1L();
+
+        String[] keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "key" + i;
+        }
+
+        out.println("ConcurrentMap4, " + KEYS + " keys, " + MERGE_PERCENT
+                + "% merge, " + Runtime.getRuntime().availableProcessors()
+                + " processors");
+        out.println("threads    Mops/s    speedup");
+        double single = 0;
+        for (int threads : THREAD_COUNTS) {
+            ConcurrentMap4<String, Integer> map = new ConcurrentMap4<>();
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                workers[t] = new Thread(() -> work(map, keys));
+            }
+            long start = System.nanoTime();
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+            double mops = threads * (OPERATIONS_PER_THREAD / seconds) / 1e6;
+            if (threads == 1) {
+                single = mops;
+            }
+            out.println(String.format("%7d    %6.2f    %7.2f", threads, mops,
+                    mops / single));
+        }
+
+        out.close();
+    }
+
+}
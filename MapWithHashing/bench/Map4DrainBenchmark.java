@@ -0,0 +1,205 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import components.map.Map;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Measures how long it takes to iterate over, and then drain with
+ * {@code removeAny}, a {@code Map4} whose hash table has about a million
+ * buckets but holds comparatively few entries; and how long it takes, and how
+ * many bytes it allocates, to clear and refill such a map when it retains its
+ * storage.
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public final class Map4DrainBenchmark {
+
+    /**
+     * Size of the hash table (the smallest prime above one million).
+     */
+    private static final int HASH_TABLE_SIZE = 1_000_003;
+
+    /**
+     * Numbers of entries to drain.
+     */
+    private static final int[] ENTRY_COUNTS = { 1_000, 10_000, 100_000 };
+
+    /**
+     * Number of times each measurement is repeated; the fastest is reported.
+     */
+    private static final int REPEATS = 5;
+
+    /**
+     * Number of clear/refill cycles measured in each run, after one more that
+     * creates the buckets.
+     */
+    private static final int CYCLES = 10;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Source of the per-thread allocation counter.
+     */
+    private static final ThreadMXBean THREADS = ManagementFactory
+            .getThreadMXBean();
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Map4DrainBenchmark() {
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread, or
+     * -1 if the JVM does not report it.
+     *
+     * @return the bytes allocated by the current thread, or -1
+     */
+    @SuppressWarnings("deprecation")
+    private static long allocatedBytes() {
+        long result = -1;
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            result = ((com.sun.management.ThreadMXBean) THREADS)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code n} keys spread over the whole of a table with
+     * {@code HASH_TABLE_SIZE} buckets, boxed in advance so that adding them
+     * allocates nothing.
+     *
+     * @param n
+     *            the number of keys
+     * @return the keys
+     * @requires n >= 0
+     * @ensures |spreadKeys| = n
+     */
+    private static Integer[] spreadKeys(int n) {
+        Integer[] keys = new Integer[n];
+        int stride = HASH_TABLE_SIZE / Math.max(1, n);
+        for (int i = 0; i < n; i++) {
+            keys[i] = i * stride;
+        }
+        return keys;
+    }
+
+    /**
+     * Empties {@code map} with {@code clear} and adds each of {@code keys}
+     * to it again, with itself as the value.
+     *
+     * @param map
+     *            the map to refill
+     * @param keys
+     *            the keys
+     * @updates map
+     * @requires [the entries of keys are distinct]
+     * @ensures map = [the pairs (k, k) for each k in keys]
+     */
+    private static void refill(Map<Integer, Integer> map, Integer[] keys) {
+        map.clear();
+        for (Integer k : keys) {
+            map.add(k, k);
+        }
+    }
+
+    /**
+     * Returns a {@code Map4} with {@code HASH_TABLE_SIZE} buckets holding the
+     * keys 0 through {@code n - 1}, spread over the whole table.
+     *
+     * @param n
+     *            the number of entries
+     * @return the new map
+     * @requires n >= 0
+     * @ensures |fill| = n
+     */
+    private static Map<Integer, Integer> fill(int n) {
+        Map<Integer, Integer> map = new Map4<>(HASH_TABLE_SIZE);
+        int stride = HASH_TABLE_SIZE / Math.max(1, n);
+        for (int i = 0; i < n; i++) {
+            map.add(i * stride, i);
+        }
+        return map;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; unused here
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+
+        out.println("Map4 with " + HASH_TABLE_SIZE + " buckets, best of "
+                + REPEATS + " runs");
+        out.println("entries    iterate (ms)    drain (ms)");
+        for (int n : ENTRY_COUNTS) {
+            long bestIterate = Long.MAX_VALUE;
+            long bestDrain = Long.MAX_VALUE;
+            for (int r = 0; r < REPEATS; r++) {
+                Map<Integer, Integer> map = fill(n);
+
+                long start = System.nanoTime();
+                long checksum = 0;
+                for (Map.Pair<Integer, Integer> p : map) {
+                    checksum += p.value();
+                }
+                bestIterate = Math.min(bestIterate, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                while (map.size() > 0) {
+                    checksum -= map.removeAny().value();
+                }
+                bestDrain = Math.min(bestDrain, System.nanoTime() - start);
+
+                assert checksum == 0 : "Violation of: all entries drained";
+            }
+            out.println(String.format("%7d    %12.2f    %10.2f", n,
+                    bestIterate / NANOS_PER_MILLI,
+                    bestDrain / NANOS_PER_MILLI));
+        }
+
+        out.println();
+        out.println("Map4 with " + HASH_TABLE_SIZE + " buckets, retaining "
+                + "storage, " + CYCLES + " cycles per run, best of " + REPEATS
+                + " runs");
+        out.println("entries    clear+refill (ms)    B/cycle");
+        for (int n : ENTRY_COUNTS) {
+            Integer[] keys = spreadKeys(n);
+            long bestCycle = Long.MAX_VALUE;
+            long bestBytes = Long.MAX_VALUE;
+            for (int r = 0; r < REPEATS; r++) {
+                Map4<Integer, Integer> map = new Map4<>(HASH_TABLE_SIZE);
+                map.setRetainStorage(true);
+                refill(map, keys);
+
+                long startBytes = allocatedBytes();
+                long start = System.nanoTime();
+                for (int c = 0; c < CYCLES; c++) {
+                    refill(map, keys);
+                }
+                bestCycle = Math.min(bestCycle, System.nanoTime() - start);
+                bestBytes = Math.min(bestBytes, allocatedBytes() - startBytes);
+
+                assert map.size() == n : "Violation of: map refilled";
+            }
+            double bytesPerCycle = -1;
+            if (allocatedBytes() >= 0) {
+                bytesPerCycle = (double) bestBytes / CYCLES;
+            }
+            out.println(String.format("%7d    %17.2f    %7.1f", n,
+                    bestCycle / NANOS_PER_MILLI / CYCLES, bytesPerCycle));
+        }
+
+        out.close();
+    }
+
+}
@@ -0,0 +1,125 @@
+import components.map.Map;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Compares the cost of taking a {@code Map4} snapshot, including the
+ * copy-on-write work it causes for the updates that follow, with the cost of
+ * copying the whole map so it can be iterated while the original changes.
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public final class Map4SnapshotBenchmark {
+
+    /**
+     * Numbers of entries in the map.
+     */
+    private static final int[] ENTRY_COUNTS = { 10_000, 100_000, 1_000_000 };
+
+    /**
+     * Number of updates made after each snapshot or copy.
+     */
+    private static final int UPDATES = 1_000;
+
+    /**
+     * Number of times each measurement is repeated; the fastest is reported.
+     */
+    private static final int REPEATS = 5;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Sink for checksums, so the measured loops cannot be optimized away.
+     */
+    private static volatile long sink;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Map4SnapshotBenchmark() {
+    }
+
+    /**
+     * Returns a {@code Map4} holding the keys 0 through {@code n - 1}.
+     *
+     * @param n
+     *            the number of entries
+     * @return the new map
+     * @requires n >= 0
+     * @ensures |fill| = n
+     */
+    private static Map4<Integer, Integer> fill(int n) {
+        Map4<Integer, Integer> map = new Map4<>();
+        for (int i = 0; i < n; i++) {
+            map.add(i, i);
+        }
+        return map;
+    }
+
+    /**
+     * Replaces the values of {@code UPDATES} keys of {@code map}, spread over
+     * its key range.
+     *
+     * @param map
+     *            the map to update
+     * @param n
+     *            the number of entries in map
+     * @updates map
+     * @requires DOMAIN(map) = [0, n)
+     * @ensures DOMAIN(map) = [0, n)
+     */
+    private static void update(Map4<Integer, Integer> map, int n) {
+        int stride = Math.max(1, n / UPDATES);
+        for (int i = 0; i < UPDATES; i++) {
+            map.merge((i * stride) % n, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; unused here
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+
+        out.println("time to take a snapshot or copy, then make " + UPDATES
+                + " updates; best of " + REPEATS + " runs");
+        out.println("entries    snapshot (ms)    full copy (ms)");
+        for (int n : ENTRY_COUNTS) {
+            long bestSnapshot = Long.MAX_VALUE;
+            long bestCopy = Long.MAX_VALUE;
+            for (int r = 0; r < REPEATS; r++) {
+                Map4<Integer, Integer> map = fill(n);
+
+                long start = System.nanoTime();
+                Iterable<Map.Pair<Integer, Integer>> snapshot = map
+                        .snapshot();
+                update(map, n);
+                bestSnapshot = Math.min(bestSnapshot,
+                        System.nanoTime() - start);
+
+                start = System.nanoTime();
+                Map4<Integer, Integer> copy = Map4.from(map, map.size());
+                update(map, n);
+                bestCopy = Math.min(bestCopy, System.nanoTime() - start);
+
+                long checksum = 0;
+                for (Map.Pair<Integer, Integer> p : snapshot) {
+                    checksum += p.value();
+                }
+                sink = checksum + copy.size();
+            }
+            out.println(String.format("%7d    %13.2f    %14.2f", n,
+                    bestSnapshot / NANOS_PER_MILLI, bestCopy / NANOS_PER_MILLI));
+        }
+
+        out.close();
+    }
+
+}
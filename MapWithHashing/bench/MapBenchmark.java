@@ -0,0 +1,524 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.map.Map2;
+import components.map.MapSecondary;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Baseline performance harness for the {@code Map} implementations: measures
+ * the throughput (operations per second) and allocation (bytes per operation)
+ * of {@code add}, {@code hasKey}, {@code value}, iteration,
+ * {@code transferFrom}, {@code remove}, and {@code removeAny} for
+ * {@code Map4} with several initial table sizes, {@code Map1L}, {@code Map2},
+ * and {@code java.util.HashMap}, with {@code String}, {@code Integer}, and
+ * colliding {@code String} keys, for 10^2 through 10^7 keys.
+ *
+ * <p>
+ * The optional argument is the largest number of keys to measure (10^7 by
+ * default, which needs a heap of several gigabytes). Each measurement is the
+ * best of {@code REPEATS} runs on a freshly filled map. Implementations whose
+ * operations take time linear in the size of the map are only measured up to
+ * {@code LINEAR_LIMIT} keys, and colliding keys only up to
+ * {@code COLLISION_LIMIT}. Allocation is read from the JVM's per-thread
+ * allocation counter, and reported as -1 where that is not available.
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public final class MapBenchmark {
+
+    /**
+     * Default largest number of keys.
+     */
+    private static final int DEFAULT_MAXIMUM_KEYS = 10_000_000;
+
+    /**
+     * Smallest number of keys; each further count is 10 times the previous.
+     */
+    private static final int MINIMUM_KEYS = 100;
+
+    /**
+     * Factor between successive key counts.
+     */
+    private static final int KEY_COUNT_STEP = 10;
+
+    /**
+     * Largest number of keys for implementations with linear-time lookups.
+     */
+    private static final int LINEAR_LIMIT = 10_000;
+
+    /**
+     * Largest number of colliding keys.
+     */
+    private static final int COLLISION_LIMIT = 100_000;
+
+    /**
+     * Number of times each measurement is repeated; the fastest is reported.
+     */
+    private static final int REPEATS = 3;
+
+    /**
+     * Number of round trips measured for {@code transferFrom}.
+     */
+    private static final int TRANSFER_ROUNDS = 1_000;
+
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * Names of the key distributions.
+     */
+    private static final String[] DISTRIBUTIONS = { "String", "Integer",
+        "colliding" };
+
+    /**
+     * Names of the operations, in the order they are measured.
+     */
+    private static final String[] OPERATIONS = { "add", "hasKey", "value",
+        "iterate", "transferFrom", "remove", "removeAny" };
+
+    /**
+     * Index of {@code add} in {@code OPERATIONS}.
+     */
+    private static final int ADD = 0;
+
+    /**
+     * Index of {@code hasKey} in {@code OPERATIONS}.
+     */
+    private static final int HAS_KEY = 1;
+
+    /**
+     * Index of {@code value} in {@code OPERATIONS}.
+     */
+    private static final int VALUE = 2;
+
+    /**
+     * Index of iteration in {@code OPERATIONS}.
+     */
+    private static final int ITERATE = 3;
+
+    /**
+     * Index of {@code transferFrom} in {@code OPERATIONS}.
+     */
+    private static final int TRANSFER_FROM = 4;
+
+    /**
+     * Index of {@code remove} in {@code OPERATIONS}.
+     */
+    private static final int REMOVE = 5;
+
+    /**
+     * Index of {@code removeAny} in {@code OPERATIONS}.
+     */
+    private static final int REMOVE_ANY = 6;
+
+    /**
+     * Names of the implementations measured.
+     */
+    private static final String[] IMPLEMENTATIONS = { "Map4(101)",
+        "Map4(10007)", "Map4(1000003)", "Map1L", "Map2", "HashMap" };
+
+    /**
+     * Constructors of the implementations, parallel to
+     * {@code IMPLEMENTATIONS}.
+     */
+    private static final List<Supplier<Map<Object, Integer>>> FACTORIES = Arrays
+            .asList(() -> new Map4<Object, Integer>(101),
+                    () -> new Map4<Object, Integer>(10_007),
+                    () -> new Map4<Object, Integer>(1_000_003),
+                    () -> new Map1L<Object, Integer>(),
+                    () -> new Map2<Object, Integer>(),
+                    () -> new JavaHashMap<Object, Integer>());
+
+    /**
+     * Largest number of keys for each implementation, parallel to
+     * {@code IMPLEMENTATIONS}.
+     */
+    private static final int[] LIMITS = { Integer.MAX_VALUE,
+        Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE,
+        LINEAR_LIMIT, Integer.MAX_VALUE };
+
+    /**
+     * Source of the per-thread allocation counter.
+     */
+    private static final ThreadMXBean THREADS = ManagementFactory
+            .getThreadMXBean();
+
+    /**
+     * Sink for checksums, so the measured loops cannot be optimized away.
+     */
+    private static volatile long sink;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private MapBenchmark() {
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread, or
+     * -1 if the JVM does not report it.
+     *
+     * @return the bytes allocated by the current thread, or -1
+     */
+    @SuppressWarnings("deprecation")
+    private static long allocatedBytes() {
+        long result = -1;
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            result = ((com.sun.management.ThreadMXBean) THREADS)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return result;
+    }
+
+    /**
+     * Returns {@code n} distinct {@code String}s that all have the same
+     * {@code hashCode}: each is a sequence of the blocks "Aa" and "BB", which
+     * hash alike.
+     *
+     * @param n
+     *            the number of keys
+     * @return the keys
+     * @requires n > 0
+     * @ensures <pre>
+     * |collidingKeys| = n  and  [the entries of collidingKeys are distinct
+     * and have the same hashCode]
+     * </pre>
+     */
+    private static Object[] collidingKeys(int n) {
+        int blocks = Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(n
+                - 1));
+        Object[] keys = new Object[n];
+        for (int i = 0; i < n; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int b = 0; b < blocks; b++) {
+                if ((i & (1 << b)) == 0) {
+                    key.append("Aa");
+                } else {
+                    key.append("BB");
+                }
+            }
+            keys[i] = key.toString();
+        }
+        return keys;
+    }
+
+    /**
+     * Returns {@code n} distinct keys of the distribution named
+     * {@code distribution}.
+     *
+     * @param distribution
+     *            the name of the distribution
+     * @param n
+     *            the number of keys
+     * @return the keys
+     * @requires distribution is in DISTRIBUTIONS and n > 0
+     * @ensures |keys| = n and [the entries of keys are distinct]
+     */
+    private static Object[] keys(String distribution, int n) {
+        Object[] keys;
+        if (distribution.equals("colliding")) {
+            keys = collidingKeys(n);
+        } else {
+            keys = new Object[n];
+            for (int i = 0; i < n; i++) {
+                if (distribution.equals("String")) {
+                    keys[i] = "key" + i;
+                } else {
+                    keys[i] = i;
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Performs each operation once on a new map from {@code factory}, with
+     * {@code keys}, and records the time and allocation of each.
+     *
+     * @param factory
+     *            constructor of the map
+     * @param keys
+     *            the keys
+     * @param nanos
+     *            the time taken by each operation
+     * @param bytes
+     *            the bytes allocated by each operation
+     * @replaces nanos, bytes
+     * @requires |nanos| = |bytes| = |OPERATIONS|
+     */
+    private static void runOnce(Supplier<Map<Object, Integer>> factory,
+            Object[] keys, long[] nanos, long[] bytes) {
+        int n = keys.length;
+        Map<Object, Integer> map = factory.get();
+        long checksum = 0;
+
+        long startBytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            map.add(keys[i], i);
+        }
+        nanos[ADD] = System.nanoTime() - start;
+        bytes[ADD] = allocatedBytes() - startBytes;
+
+        startBytes = allocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            if (map.hasKey(keys[i])) {
+                checksum++;
+            }
+        }
+        nanos[HAS_KEY] = System.nanoTime() - start;
+        bytes[HAS_KEY] = allocatedBytes() - startBytes;
+
+        startBytes = allocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            checksum += map.value(keys[i]);
+        }
+        nanos[VALUE] = System.nanoTime() - start;
+        bytes[VALUE] = allocatedBytes() - startBytes;
+
+        startBytes = allocatedBytes();
+        start = System.nanoTime();
+        for (Map.Pair<Object, Integer> p : map) {
+            checksum -= p.value();
+        }
+        nanos[ITERATE] = System.nanoTime() - start;
+        bytes[ITERATE] = allocatedBytes() - startBytes;
+
+        Map<Object, Integer> other = map.newInstance();
+        startBytes = allocatedBytes();
+        start = System.nanoTime();
+        for (int r = 0; r < TRANSFER_ROUNDS; r++) {
+            other.transferFrom(map);
+            map.transferFrom(other);
+        }
+        nanos[TRANSFER_FROM] = System.nanoTime() - start;
+        bytes[TRANSFER_FROM] = allocatedBytes() - startBytes;
+
+        startBytes = allocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < n / 2; i++) {
+            checksum += map.remove(keys[i]).value();
+        }
+        nanos[REMOVE] = System.nanoTime() - start;
+        bytes[REMOVE] = allocatedBytes() - startBytes;
+
+        startBytes = allocatedBytes();
+        start = System.nanoTime();
+        while (map.size() > 0) {
+            checksum += map.removeAny().value();
+        }
+        nanos[REMOVE_ANY] = System.nanoTime() - start;
+        bytes[REMOVE_ANY] = allocatedBytes() - startBytes;
+
+        sink = checksum;
+    }
+
+    /**
+     * Returns the number of times operation {@code op} is performed by
+     * {@code runOnce} with {@code n} keys.
+     *
+     * @param op
+     *            index of the operation in OPERATIONS
+     * @param n
+     *            the number of keys
+     * @return the number of operations
+     */
+    private static int operationCount(int op, int n) {
+        int count = n;
+        if (op == TRANSFER_FROM) {
+            count = 2 * TRANSFER_ROUNDS;
+        } else if (op == REMOVE) {
+            count = n / 2;
+        } else if (op == REMOVE_ANY) {
+            count = n - n / 2;
+        }
+        return count;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments: optionally, the largest number
+     *            of keys to measure
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        int maximumKeys = DEFAULT_MAXIMUM_KEYS;
+        if (args.length > 0) {
+            maximumKeys = Integer.parseInt(args[0]);
+        }
+
+        out.println("best of " + REPEATS + " runs");
+        out.println(String.format("%-10s %9s %-14s %-13s %12s %10s", "keys",
+                "n", "map", "operation", "ops/s", "B/op"));
+        long[] nanos = new long[OPERATIONS.length];
+        long[] bytes = new long[OPERATIONS.length];
+        long[] bestNanos = new long[OPERATIONS.length];
+        long[] bestBytes = new long[OPERATIONS.length];
+        for (String distribution : DISTRIBUTIONS) {
+            for (int n = MINIMUM_KEYS; n <= maximumKeys; n *= KEY_COUNT_STEP) {
+                if (distribution.equals("colliding") && n > COLLISION_LIMIT) {
+                    break;
+                }
+                Object[] keys = keys(distribution, n);
+                for (int m = 0; m < IMPLEMENTATIONS.length; m++) {
+                    if (n > LIMITS[m]) {
+                        continue;
+                    }
+                    Arrays.fill(bestNanos, Long.MAX_VALUE);
+                    Arrays.fill(bestBytes, Long.MAX_VALUE);
+                    for (int r = 0; r < REPEATS; r++) {
+                        runOnce(FACTORIES.get(m), keys, nanos, bytes);
+                        for (int op = 0; op < OPERATIONS.length; op++) {
+                            bestNanos[op] = Math.min(bestNanos[op], nanos[op]);
+                            bestBytes[op] = Math.min(bestBytes[op], bytes[op]);
+                        }
+                    }
+                    for (int op = 0; op < OPERATIONS.length; op++) {
+                        int count = operationCount(op, n);
+                        double opsPerSecond = count * NANOS_PER_SECOND
+                                / Math.max(1, bestNanos[op]);
+                        double bytesPerOp = -1;
+                        if (bestBytes[op] >= 0) {
+                            bytesPerOp = (double) bestBytes[op] / count;
+                        }
+                        out.println(String.format(
+                                "%-10s %9d %-14s %-13s %12.0f %10.1f",
+                                distribution, n, IMPLEMENTATIONS[m],
+                                OPERATIONS[op], opsPerSecond, bytesPerOp));
+                    }
+                }
+            }
+        }
+
+        out.close();
+    }
+
+    /**
+     * {@code Map} layered on {@code java.util.HashMap}, as the baseline.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     */
+    private static final class JavaHashMap<K, V> extends MapSecondary<K, V> {
+
+        /**
+         * The pairs.
+         */
+        private HashMap<K, V> rep;
+
+        /**
+         * Iterator used by {@code removeAny}, kept between calls so that
+         * draining the map does not rescan the emptied part of the table;
+         * {@code null} after any other update.
+         */
+        private Iterator<java.util.Map.Entry<K, V>> drain;
+
+        /**
+         * No-argument constructor.
+         */
+        JavaHashMap() {
+            this.rep = new HashMap<K, V>();
+            this.drain = null;
+        }
+
+        @Override
+        public Map<K, V> newInstance() {
+            return new JavaHashMap<K, V>();
+        }
+
+        @Override
+        public void clear() {
+            this.rep = new HashMap<K, V>();
+            this.drain = null;
+        }
+
+        @Override
+        public void transferFrom(Map<K, V> source) {
+            JavaHashMap<K, V> localSource = (JavaHashMap<K, V>) source;
+            this.rep = localSource.rep;
+            this.drain = null;
+            localSource.clear();
+        }
+
+        @Override
+        public void add(K key, V value) {
+            this.rep.put(key, value);
+            this.drain = null;
+        }
+
+        @Override
+        public Pair<K, V> remove(K key) {
+            this.drain = null;
+            return new MapPair<K, V>(key, this.rep.remove(key));
+        }
+
+        @Override
+        public Pair<K, V> removeAny() {
+            if (this.drain == null) {
+                this.drain = this.rep.entrySet().iterator();
+            }
+            java.util.Map.Entry<K, V> e = this.drain.next();
+            this.drain.remove();
+            return new MapPair<K, V>(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public V value(K key) {
+            return this.rep.get(key);
+        }
+
+        @Override
+        public boolean hasKey(K key) {
+            return this.rep.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return this.rep.size();
+        }
+
+        @Override
+        public Iterator<Pair<K, V>> iterator() {
+            final Iterator<java.util.Map.Entry<K, V>> entries = this.rep
+                    .entrySet().iterator();
+            return new Iterator<Pair<K, V>>() {
+
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public Pair<K, V> next() {
+                    if (!entries.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    java.util.Map.Entry<K, V> e = entries.next();
+                    return new MapPair<K, V>(e.getKey(), e.getValue());
+                }
+
+            };
+        }
+
+    }
+
+}
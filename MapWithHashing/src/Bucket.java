@@ -0,0 +1,121 @@
+import java.util.function.BiFunction;
+
+import components.map.Map;
+
+/**
+ * {@code Map} used as a bucket of a {@code Map4} hash table, extended with
+ * methods that look a key up and read or update its pair in a single pass over
+ * the bucket, instead of one pass to find the key and more to change it.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+interface Bucket<K, V> extends Map<K, V> {
+
+    /**
+     * Reports the value associated with {@code key}, or {@code defaultValue}
+     * if {@code key} is not in {@code DOMAIN(this)}.
+     *
+     * @param key
+     *            the key whose associated value is to be reported
+     * @param defaultValue
+     *            the value to report if there is none
+     * @return the value associated with key, or defaultValue
+     * @aliases reference returned by {@code getOrDefault}
+     * @requires key /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(this) then
+     *   (key, getOrDefault) is in this
+     * else
+     *   getOrDefault = defaultValue
+     * </pre>
+     */
+    V getOrDefault(K key, V defaultValue);
+
+    /**
+     * Adds the pair ({@code key}, {@code value}) to {@code this} if
+     * {@code key} is not already in {@code DOMAIN(this)}.
+     *
+     * @param key
+     *            the key to be added
+     * @param value
+     *            the associated value to be added
+     * @return the value already associated with {@code key}, or {@code null}
+     *         if there was none
+     * @aliases references {@code key, value}
+     * @updates this
+     * @requires key /= null and value /= null and [key can be added to this]
+     * @ensures <pre>
+     * if key is in DOMAIN(#this) then
+     *   (this = #this  and  (key, putIfAbsent) is in #this)
+     * else
+     *   (this = #this union {(key, value)}  and  putIfAbsent = null)
+     * </pre>
+     */
+    V putIfAbsent(K key, V value);
+
+    /**
+     * If {@code key} is in {@code DOMAIN(this)}, replaces its associated
+     * value with the result of applying {@code remapping} to the key and that
+     * value, removing the pair instead if the result is {@code null}.
+     *
+     * @param key
+     *            the key whose value is to be recomputed
+     * @param remapping
+     *            the function computing the new value
+     * @return the new value associated with {@code key}, or {@code null} if
+     *         there is none
+     * @updates this
+     * @requires key /= null and remapping /= null
+     * @ensures <pre>
+     * if key is not in DOMAIN(#this) then
+     *   (this = #this  and  computeIfPresent = null)
+     * else if [remapping.apply(key, #this(key)) = null] then
+     *   (this = #this \ {(key, #this(key))}  and  computeIfPresent = null)
+     * else
+     *   (computeIfPresent = [remapping.apply(key, #this(key))]  and
+     *    this = (#this \ {(key, #this(key))}) union {(key, computeIfPresent)})
+     * </pre>
+     */
+    V computeIfPresent(K key,
+            BiFunction<? super K, ? super V, ? extends V> remapping);
+
+    /**
+     * Associates {@code value} with {@code key} if {@code key} is not in
+     * {@code DOMAIN(this)}, and otherwise replaces the associated value with
+     * the result of applying {@code remapping} to it and {@code value},
+     * removing the pair instead if the result is {@code null}.
+     *
+     * @param key
+     *            the key whose value is to be merged
+     * @param value
+     *            the value to associate, or to merge with the existing one
+     * @param remapping
+     *            the function combining the existing value with value
+     * @return the new value associated with {@code key}, or {@code null} if
+     *         there is none
+     * @aliases references {@code key, value}
+     * @updates this
+     * @requires <pre>
+     * key /= null  and  value /= null  and  remapping /= null  and
+     * [key can be added to this]
+     * </pre>
+     * @ensures <pre>
+     * if key is not in DOMAIN(#this) then
+     *   (this = #this union {(key, value)}  and  merge = value)
+     * else if [remapping.apply(#this(key), value) = null] then
+     *   (this = #this \ {(key, #this(key))}  and  merge = null)
+     * else
+     *   (merge = [remapping.apply(#this(key), value)]  and
+     *    this = (#this \ {(key, #this(key))}) union {(key, merge)})
+     * </pre>
+     */
+    V merge(K key, V value,
+            BiFunction<? super V, ? super V, ? extends V> remapping);
+
+}
@@ -0,0 +1,397 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiFunction;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as an array of alternating keys and values,
+ * searched linearly, with implementations of primary methods. {@code Map4}
+ * uses it for the buckets of its hash table: unlike a {@code Map2}, it can
+ * find a key and replace or remove its pair in the same pass, and a bucket of
+ * a few pairs costs one small array.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * 0 <= $this.size  and  2 * $this.size <= |$this.entries|  and
+ * [entries in $this.entries[0, 2 * $this.size) are not null]  and
+ * [entries in $this.entries[2 * $this.size, |$this.entries|) are null]  and
+ * [the keys $this.entries[0], $this.entries[2], ...,
+ *  $this.entries[2 * $this.size - 2] are pairwise distinct]
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *   where (there exists i: integer
+ *              (0 <= i  and  i < $this.size  and
+ *               k = $this.entries[2 * i]  and  v = $this.entries[2 * i + 1]))}
+ * </pre>
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+final class ChainBucket<K, V> extends MapSecondary<K, V>
+        implements Bucket<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Number of pairs the array has room for when first created.
+     */
+    private static final int INITIAL_CAPACITY = 2;
+
+    /**
+     * Keys and values: the key of pair {@code i} is at index {@code 2 * i}
+     * and its value at index {@code 2 * i + 1}.
+     */
+    private Object[] entries;
+
+    /**
+     * Number of pairs.
+     */
+    private int size;
+
+    /**
+     * Creator of initial representation.
+     *
+     * @ensures <pre>
+     * $this.size = 0  and  |$this.entries| = 2 * INITIAL_CAPACITY  and
+     * [all entries of $this.entries are null]
+     * </pre>
+     */
+    private void createNewRep() {
+        this.entries = new Object[2 * INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the index of the pair whose key is {@code key}, or -1 if there
+     * is none.
+     *
+     * @param key
+     *            the key to look for
+     * @return the index of the pair with key, or -1
+     * @ensures <pre>
+     * if key is in DOMAIN(this) then
+     *   $this.entries[2 * indexOf] = key
+     * else
+     *   indexOf = -1
+     * </pre>
+     */
+    private int indexOf(Object key) {
+        int i = 0;
+        while (i < this.size && !this.entries[2 * i].equals(key)) {
+            i++;
+        }
+        if (i == this.size) {
+            i = -1;
+        }
+        return i;
+    }
+
+    /**
+     * Appends the pair ({@code key}, {@code value}), doubling the array first
+     * if it is full.
+     *
+     * @param key
+     *            the key to be added
+     * @param value
+     *            the associated value to be added
+     * @updates $this
+     * @requires key is not in DOMAIN(this)
+     * @ensures this = #this union {(key, value)}
+     */
+    private void append(K key, V value) {
+        if (2 * this.size == this.entries.length) {
+            this.entries = Arrays.copyOf(this.entries, 2 * this.entries.length);
+        }
+        this.entries[2 * this.size] = key;
+        this.entries[2 * this.size + 1] = value;
+        this.size++;
+    }
+
+    /**
+     * Removes pair {@code i}, moving the last pair into its place.
+     *
+     * @param i
+     *            the index of the pair to remove
+     * @return the removed pair
+     * @updates $this
+     * @requires 0 <= i < $this.size
+     * @ensures <pre>
+     * removeAt = (#$this.entries[2 * i], #$this.entries[2 * i + 1])  and
+     * this = #this \ {removeAt}
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private Pair<K, V> removeAt(int i) {
+        Pair<K, V> removed = new MapPair<K, V>((K) this.entries[2 * i],
+                (V) this.entries[2 * i + 1]);
+        this.size--;
+        this.entries[2 * i] = this.entries[2 * this.size];
+        this.entries[2 * i + 1] = this.entries[2 * this.size + 1];
+        this.entries[2 * this.size] = null;
+        this.entries[2 * this.size + 1] = null;
+        return removed;
+    }
+
+    /**
+     * Replaces the value of pair {@code i} with {@code value}, or removes the
+     * pair if {@code value} is {@code null}.
+     *
+     * @param i
+     *            the index of the pair
+     * @param value
+     *            the new value, or null
+     * @return value
+     * @updates $this
+     * @requires 0 <= i < $this.size
+     * @ensures <pre>
+     * replaceAt = value  and
+     * if value = null then
+     *   this = #this \ {(#$this.entries[2 * i], #$this.entries[2 * i + 1])}
+     * else
+     *   $this.entries[2 * i + 1] = value  and
+     *   [the other entries of $this.entries are unchanged]
+     * </pre>
+     */
+    private V replaceAt(int i, V value) {
+        if (value == null) {
+            this.removeAt(i);
+        } else {
+            this.entries[2 * i + 1] = value;
+        }
+        return value;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    ChainBucket() {
+        this.createNewRep();
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public Map<K, V> newInstance() {
+        return new ChainBucket<K, V>();
+    }
+
+    @Override
+    public void clear() {
+        /*
+         * Keep the array, so that a bucket emptied and refilled again and
+         * again allocates nothing.
+         */
+        Arrays.fill(this.entries, 0, 2 * this.size, null);
+        this.size = 0;
+    }
+
+    @Override
+    public void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof ChainBucket<?, ?> : ""
+                + "Violation of: source is of dynamic type ChainBucket<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * ChainBucket<?,?>, and the ?,? must be K,V or the call would not have
+         * compiled.
+         */
+        ChainBucket<K, V> localSource = (ChainBucket<K, V>) source;
+        this.entries = localSource.entries;
+        this.size = localSource.size;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert this.indexOf(key) < 0 : ""
+                + "Violation of: key is not in DOMAIN(this)";
+
+        this.append(key, value);
+    }
+
+    @Override
+    public Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int i = this.indexOf(key);
+        assert i >= 0 : "Violation of: key is in DOMAIN(this)";
+
+        return this.removeAt(i);
+    }
+
+    @Override
+    public Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        return this.removeAt(this.size - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V value(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int i = this.indexOf(key);
+        assert i >= 0 : "Violation of: key is in DOMAIN(this)";
+
+        return (V) this.entries[2 * i + 1];
+    }
+
+    @Override
+    public boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public Iterator<Pair<K, V>> iterator() {
+        return new ChainBucketIterator();
+    }
+
+    /*
+     * Single-pass methods ----------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V getOrDefault(K key, V defaultValue) {
+        assert key != null : "Violation of: key is not null";
+
+        int i = this.indexOf(key);
+        V result = defaultValue;
+        if (i >= 0) {
+            result = (V) this.entries[2 * i + 1];
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V putIfAbsent(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        int i = this.indexOf(key);
+        V existing = null;
+        if (i >= 0) {
+            existing = (V) this.entries[2 * i + 1];
+        } else {
+            this.append(key, value);
+        }
+        return existing;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V computeIfPresent(K key,
+            BiFunction<? super K, ? super V, ? extends V> remapping) {
+        assert key != null : "Violation of: key is not null";
+        assert remapping != null : "Violation of: remapping is not null";
+
+        int i = this.indexOf(key);
+        V result = null;
+        if (i >= 0) {
+            result = this.replaceAt(i, remapping.apply(
+                    (K) this.entries[2 * i], (V) this.entries[2 * i + 1]));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V merge(K key, V value,
+            BiFunction<? super V, ? super V, ? extends V> remapping) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert remapping != null : "Violation of: remapping is not null";
+
+        int i = this.indexOf(key);
+        V result = value;
+        if (i >= 0) {
+            result = this.replaceAt(i,
+                    remapping.apply((V) this.entries[2 * i + 1], value));
+        } else {
+            this.append(key, value);
+        }
+        return result;
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code ChainBucket}.
+     */
+    private final class ChainBucketIterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Index of the next pair.
+         */
+        private int next;
+
+        /**
+         * No-argument constructor.
+         */
+        ChainBucketIterator() {
+            this.next = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next < ChainBucket.this.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Object[] entries = ChainBucket.this.entries;
+            int i = this.next;
+            this.next++;
+            return new MapPair<K, V>((K) entries[2 * i],
+                    (V) entries[2 * i + 1]);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,700 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+import components.map.Map;
+import components.map.Map2;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as a hash table using {@code Map}s for the buckets,
+ * like {@code Map4}, whose kernel methods may be called concurrently from
+ * several threads.
+ *
+ * <p>
+ * The buckets are guarded by a fixed number of locks ("stripes"): bucket
+ * {@code i} is guarded by lock {@code i mod |$this.locks|}, so threads working
+ * on different stripes never wait for each other. The size is kept in a
+ * {@code LongAdder} so that updating it does not serialize the threads either.
+ * When the table grows, all the locks are taken and the entries are copied
+ * into a new table; the old buckets are left untouched.
+ *
+ * <p>
+ * Iterators are weakly consistent: they never throw because of concurrent
+ * updates, report each entry at most once, and reflect the state of each
+ * bucket at the time the iterator reaches it. The standard methods
+ * ({@code clear}, {@code newInstance}, {@code transferFrom}), like
+ * {@code equals} and {@code toString}, are not meant to be called while other
+ * threads are updating {@code this}.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * |$this.hashTable| > 0  and  |$this.locks| > 0  and
+ * for all i: integer, pf: PARTIAL_FUNCTION, x: K
+ *     where (0 <= i  and  i < |$this.hashTable|  and
+ *            <pf> = $this.hashTable[i, i+1)  and
+ *            x is in DOMAIN(pf))
+ *   ([computed result of HashSpreader.MURMUR3.spread(x.hashCode())]
+ *      mod |$this.hashTable| = i)  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.hashTable|)
+ *   ([entry at position i in $this.hashTable is not null])  and
+ * [$this.size.sum() = sum i: integer, pf: PARTIAL_FUNCTION
+ *     where (0 <= i  and  i < |$this.hashTable|  and
+ *            <pf> = $this.hashTable[i, i+1))
+ *   (|pf|) whenever no kernel method is in progress]
+ * </pre>
+ * @correspondence <pre>
+ * this = union i: integer, pf: PARTIAL_FUNCTION
+ *            where (0 <= i  and  i < |$this.hashTable|  and
+ *                   <pf> = $this.hashTable[i, i+1))
+ *          (pf)
+ * </pre>
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public class ConcurrentMap4<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default size of hash table.
+     */
+    private static final int DEFAULT_HASH_TABLE_SIZE = 1031;
+
+    /**
+     * Default number of locks.
+     */
+    private static final int DEFAULT_STRIPES = 64;
+
+    /**
+     * Ratio of entries to buckets above which the table grows.
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * Largest hash table size the table will grow to.
+     */
+    private static final int MAXIMUM_HASH_TABLE_SIZE = 1 << 30;
+
+    /**
+     * Buckets for hashing; replaced, never updated in place, when the table
+     * grows.
+     */
+    private volatile Map<K, V>[] hashTable;
+
+    /**
+     * Locks guarding the buckets: bucket {@code i} is guarded by
+     * {@code locks[i % locks.length]}.
+     */
+    private ReentrantLock[] locks;
+
+    /**
+     * Size the table is created with.
+     */
+    private int initialTableSize;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private LongAdder size;
+
+    /**
+     * Bucket at which the next {@code removeAny} starts its search; only a
+     * hint, so updates from different threads may overwrite each other.
+     */
+    private volatile int removeAnyStart;
+
+    /**
+     * Computes {@code a} mod {@code b} as % should have been defined to work.
+     *
+     * @param a
+     *            the number being reduced
+     * @param b
+     *            the modulus
+     * @return the result of a mod b, which satisfies 0 <= {@code mod} < b
+     * @requires b > 0
+     * @ensures <pre>
+     * 0 <= mod  and  mod < b  and
+     * there exists k: integer (a = k * b + mod)
+     * </pre>
+     */
+    private static int mod(int a, int b) {
+        assert b > 0 : "Violation of: b > 0";
+
+        int mod = a % b;
+        if (a < 0 && mod != 0) {
+            mod += b;
+        }
+
+        return mod;
+    }
+
+    /**
+     * Returns the spread hash code of {@code key}.
+     *
+     * @param key
+     *            the key
+     * @return the spread hash code of key
+     * @ensures hash = [computed result of
+     *          HashSpreader.MURMUR3.spread(key.hashCode())]
+     */
+    private static int hash(Object key) {
+        return HashSpreader.MURMUR3.spread(key.hashCode());
+    }
+
+    /**
+     * Returns the smallest prime that is at least {@code n}, capped at
+     * {@code MAXIMUM_HASH_TABLE_SIZE}.
+     *
+     * @param n
+     *            the lower bound
+     * @return the smallest prime >= n, or MAXIMUM_HASH_TABLE_SIZE
+     * @requires n > 1
+     * @ensures <pre>
+     * nextTableSize = min(MAXIMUM_HASH_TABLE_SIZE,
+     *                     [smallest prime p such that p >= n])
+     * </pre>
+     */
+    private static int nextTableSize(int n) {
+        int p = n;
+        boolean prime = false;
+        while (p < MAXIMUM_HASH_TABLE_SIZE && !prime) {
+            prime = true;
+            for (int d = 2; prime && d <= p / d; d++) {
+                prime = p % d != 0;
+            }
+            if (!prime) {
+                p++;
+            }
+        }
+        return Math.min(p, MAXIMUM_HASH_TABLE_SIZE);
+    }
+
+    /**
+     * Returns a new hash table of {@code hashTableSize} empty buckets.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     * @param hashTableSize
+     *            the size of the hash table
+     * @return the new hash table
+     * @requires hashTableSize > 0
+     * @ensures <pre>
+     * |newTable| = hashTableSize  and
+     * for all i: integer
+     *     where (0 <= i  and  i < |newTable|)
+     *   (newTable[i, i+1) = <{}>)
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Map<K, V>[] newTable(int hashTableSize) {
+        /*
+         * With "new Map<K, V>[...]" in place of "new Map[...]" it does not
+         * compile; as shown, it results in a warning about an unchecked
+         * conversion, though it cannot fail.
+         */
+        Map<K, V>[] table = new Map[hashTableSize];
+        for (int i = 0; i < hashTableSize; i++) {
+            table[i] = new Map2<K, V>();
+        }
+        return table;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param hashTableSize
+     *            the size of the hash table
+     * @param stripes
+     *            the number of locks
+     * @requires hashTableSize > 0 and stripes > 0
+     * @ensures <pre>
+     * |$this.hashTable| = hashTableSize  and
+     * for all i: integer
+     *     where (0 <= i  and  i < |$this.hashTable|)
+     *   ($this.hashTable[i, i+1) = <{}>)  and
+     * |$this.locks| = stripes  and
+     * $this.size.sum() = 0
+     * </pre>
+     */
+    private void createNewRep(int hashTableSize, int stripes) {
+
+        this.hashTable = newTable(hashTableSize);
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+        this.size = new LongAdder();
+        this.removeAnyStart = 0;
+
+    }
+
+    /**
+     * Locks the stripe guarding the bucket for {@code h} in the current hash
+     * table, and returns that table; the table cannot be replaced until the
+     * lock is released with {@code unlock(table, h)}.
+     *
+     * @param h
+     *            the spread hash code of a key
+     * @return the hash table in effect while the lock is held
+     * @ensures <pre>
+     * lockFor = $this.hashTable  and
+     * [the current thread holds the lock for bucket h mod |lockFor|]
+     * </pre>
+     */
+    private Map<K, V>[] lockFor(int h) {
+        Map<K, V>[] table = this.hashTable;
+        ReentrantLock lock = this.locks[mod(h, table.length)
+                % this.locks.length];
+        lock.lock();
+        while (table != this.hashTable) {
+            /*
+             * The table grew while this thread was waiting; the bucket, and so
+             * the lock, may be different in the new one.
+             */
+            lock.unlock();
+            table = this.hashTable;
+            lock = this.locks[mod(h, table.length) % this.locks.length];
+            lock.lock();
+        }
+        return table;
+    }
+
+    /**
+     * Unlocks the stripe locked by {@code lockFor(h)}.
+     *
+     * @param table
+     *            the hash table returned by lockFor(h)
+     * @param h
+     *            the spread hash code passed to lockFor
+     * @requires [the current thread holds the lock for bucket h mod |table|]
+     * @ensures [the lock is released]
+     */
+    private void unlock(Map<K, V>[] table, int h) {
+        this.locks[mod(h, table.length) % this.locks.length].unlock();
+    }
+
+    /**
+     * Grows the hash table if {@code this} has become too full for it.
+     *
+     * @param expectedLength
+     *            length of the hash table the caller found too full
+     * @updates $this.hashTable
+     * @ensures this = #this
+     */
+    private void growIfNeeded(int expectedLength) {
+        if (this.size.sum() > LOAD_FACTOR * expectedLength
+                && expectedLength < MAXIMUM_HASH_TABLE_SIZE) {
+            for (ReentrantLock lock : this.locks) {
+                lock.lock();
+            }
+            try {
+                Map<K, V>[] table = this.hashTable;
+                /*
+                 * Another thread may have grown the table already.
+                 */
+                if (table.length == expectedLength) {
+                    Map<K, V>[] grown = newTable(
+                            nextTableSize(2 * table.length));
+                    for (Map<K, V> bucket : table) {
+                        for (Pair<K, V> p : bucket) {
+                            grown[mod(hash(p.key()), grown.length)]
+                                    .add(p.key(), p.value());
+                        }
+                    }
+                    this.hashTable = grown;
+                }
+            } finally {
+                for (ReentrantLock lock : this.locks) {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public ConcurrentMap4() {
+
+        this(DEFAULT_HASH_TABLE_SIZE, DEFAULT_STRIPES);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of initial size
+     * {@code hashTableSize} guarded by {@code stripes} locks.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @param stripes
+     *            number of locks
+     * @requires hashTableSize > 0 and stripes > 0
+     * @ensures this = {}
+     */
+    public ConcurrentMap4(int hashTableSize, int stripes) {
+        assert hashTableSize > 0 : "Violation of: hashTableSize > 0";
+        assert stripes > 0 : "Violation of: stripes > 0";
+
+        this.initialTableSize = hashTableSize;
+        this.createNewRep(hashTableSize, stripes);
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.initialTableSize, this.locks.length);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof ConcurrentMap4<?, ?> : ""
+                + "Violation of: source is of dynamic type ConcurrentMap4<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * ConcurrentMap4<?,?>, and the ?,? must be K,V or the call would not
+         * have compiled.
+         */
+        ConcurrentMap4<K, V> localSource = (ConcurrentMap4<K, V>) source;
+        this.hashTable = localSource.hashTable;
+        this.locks = localSource.locks;
+        this.initialTableSize = localSource.initialTableSize;
+        this.size = localSource.size;
+        localSource.createNewRep(localSource.initialTableSize,
+                localSource.locks.length);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        int h = hash(key);
+        Map<K, V>[] table = this.lockFor(h);
+        try {
+            Map<K, V> bucket = table[mod(h, table.length)];
+            assert !bucket.hasKey(
+                    key) : "Violation of: key is not in DOMAIN(this)";
+            bucket.add(key, value);
+            this.size.increment();
+        } finally {
+            this.unlock(table, h);
+        }
+        this.growIfNeeded(table.length);
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int h = hash(key);
+        Map<K, V>[] table = this.lockFor(h);
+        try {
+            Map<K, V> bucket = table[mod(h, table.length)];
+            assert bucket.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+            Pair<K, V> removed = bucket.remove(key);
+            this.size.decrement();
+            return removed;
+        } finally {
+            this.unlock(table, h);
+        }
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * Other threads may empty buckets while this one searches, so keep
+         * searching while entries remain.
+         */
+        Pair<K, V> removed = null;
+        while (removed == null && this.size.sum() > 0) {
+            Map<K, V>[] table = this.hashTable;
+            int start = mod(this.removeAnyStart, table.length);
+            for (int n = 0; removed == null && n < table.length
+                    && table == this.hashTable; n++) {
+                int i = (start + n) % table.length;
+                /*
+                 * A bucket is not safe to read without its lock, not even its
+                 * size; i is its own bucket index, so lockFor(i) locks bucket
+                 * i of the current table. If the table has been replaced,
+                 * the search starts over on the new one.
+                 */
+                Map<K, V>[] locked = this.lockFor(i);
+                try {
+                    if (locked == table && table[i].size() > 0) {
+                        removed = table[i].removeAny();
+                        this.size.decrement();
+                        this.removeAnyStart = i;
+                    }
+                } finally {
+                    this.unlock(locked, i);
+                }
+            }
+        }
+        if (removed == null) {
+            throw new NoSuchElementException();
+        }
+        return removed;
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int h = hash(key);
+        Map<K, V>[] table = this.lockFor(h);
+        try {
+            Map<K, V> bucket = table[mod(h, table.length)];
+            assert bucket.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+            return bucket.value(key);
+        } finally {
+            this.unlock(table, h);
+        }
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int h = hash(key);
+        Map<K, V>[] table = this.lockFor(h);
+        try {
+            return table[mod(h, table.length)].hasKey(key);
+        } finally {
+            this.unlock(table, h);
+        }
+    }
+
+    @Override
+    public final int size() {
+
+        return this.size.intValue();
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new ConcurrentMap4Iterator();
+    }
+
+    /*
+     * Atomic compound methods ------------------------------------------------
+     */
+
+    @Override
+    public final V replaceValue(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        int h = hash(key);
+        Map<K, V>[] table = this.lockFor(h);
+        try {
+            Map<K, V> bucket = table[mod(h, table.length)];
+            assert bucket.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+            return bucket.replaceValue(key, value);
+        } finally {
+            this.unlock(table, h);
+        }
+    }
+
+    /**
+     * Atomically associates {@code value} with {@code key} if {@code key} is
+     * not in {@code DOMAIN(this)}, and otherwise replaces the associated value
+     * with the result of applying {@code remapping} to it and {@code value},
+     * removing the pair instead if the result is {@code null}. For example,
+     * {@code merge(word, 1, Integer::sum)} counts an occurrence of
+     * {@code word} even when several threads count the same word at once.
+     *
+     * @param key
+     *            the key whose value is to be merged
+     * @param value
+     *            the value to associate, or to merge with the existing one
+     * @param remapping
+     *            the function combining the existing value with value; it is
+     *            called while a lock is held, so it should be short and must
+     *            not use {@code this}
+     * @return the new value associated with {@code key}, or {@code null} if
+     *         there is none
+     * @aliases references {@code key, value}
+     * @updates this
+     * @requires key /= null and value /= null and remapping /= null
+     * @ensures <pre>
+     * if key is not in DOMAIN(#this) then
+     *   (this = #this union {(key, value)}  and  merge = value)
+     * else if [remapping.apply(#this(key), value) = null] then
+     *   (this = #this \ {(key, #this(key))}  and  merge = null)
+     * else
+     *   (merge = [remapping.apply(#this(key), value)]  and
+     *    this = (#this \ {(key, #this(key))}) union {(key, merge)})
+     * </pre>
+     */
+    public final V merge(K key, V value,
+            BiFunction<? super V, ? super V, ? extends V> remapping) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert remapping != null : "Violation of: remapping is not null";
+
+        int h = hash(key);
+        Map<K, V>[] table = this.lockFor(h);
+        V result = value;
+        boolean added = false;
+        try {
+            Map<K, V> bucket = table[mod(h, table.length)];
+            if (bucket.hasKey(key)) {
+                Pair<K, V> old = bucket.remove(key);
+                result = remapping.apply(old.value(), value);
+                if (result != null) {
+                    bucket.add(old.key(), result);
+                } else {
+                    this.size.decrement();
+                }
+            } else {
+                bucket.add(key, value);
+                this.size.increment();
+                added = true;
+            }
+        } finally {
+            this.unlock(table, h);
+        }
+        if (added) {
+            this.growIfNeeded(table.length);
+        }
+        return result;
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for
+     * {@code ConcurrentMap4}.
+     */
+    private final class ConcurrentMap4Iterator
+            implements Iterator<Pair<K, V>> {
+
+        /**
+         * Hash table being iterated over, as of the creation of the iterator.
+         */
+        private final Map<K, V>[] table;
+
+        /**
+         * Next bucket to copy.
+         */
+        private int nextBucket;
+
+        /**
+         * Copy of the entries of the current bucket.
+         */
+        private List<Pair<K, V>> current;
+
+        /**
+         * Position of the next entry in {@code current}.
+         */
+        private int position;
+
+        /**
+         * No-argument constructor.
+         */
+        ConcurrentMap4Iterator() {
+            this.table = ConcurrentMap4.this.hashTable;
+            this.nextBucket = 0;
+            this.current = new ArrayList<>();
+            this.position = 0;
+        }
+
+        /**
+         * Copies buckets, each under its lock, until one with entries is found
+         * or the table is exhausted.
+         */
+        private void fill() {
+            while (this.position == this.current.size()
+                    && this.nextBucket < this.table.length) {
+                int i = this.nextBucket;
+                this.nextBucket++;
+                this.current.clear();
+                this.position = 0;
+                /*
+                 * Once the table has been replaced its buckets never change
+                 * again, so the lock only matters while it is current.
+                 */
+                ReentrantLock lock = ConcurrentMap4.this.locks[i
+                        % ConcurrentMap4.this.locks.length];
+                lock.lock();
+                try {
+                    for (Pair<K, V> p : this.table[i]) {
+                        this.current.add(p);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            this.fill();
+            return this.position < this.current.size();
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Pair<K, V> next = this.current.get(this.position);
+            this.position++;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
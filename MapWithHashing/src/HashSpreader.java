@@ -0,0 +1,58 @@
+/**
+ * Strategy for mixing the bits of a hash code before it is reduced to a bucket
+ * index, so that keys whose {@code hashCode} values differ only in a few bits
+ * (sequential {@code Integer}s, {@code String}s sharing a suffix, ...) still
+ * spread evenly over the buckets.
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+@FunctionalInterface
+public interface HashSpreader {
+
+    /**
+     * Leaves hash codes unchanged.
+     */
+    HashSpreader IDENTITY = h -> h;
+
+    /**
+     * The 32-bit finalizer ("fmix32") of MurmurHash3: every input bit affects
+     * every output bit.
+     */
+    HashSpreader MURMUR3 = h -> {
+        final int c1 = 0x85EBCA6B;
+        final int c2 = 0xC2B2AE35;
+        final int s1 = 16;
+        final int s2 = 13;
+        int x = h;
+        x ^= x >>> s1;
+        x *= c1;
+        x ^= x >>> s2;
+        x *= c2;
+        x ^= x >>> s1;
+        return x;
+    };
+
+    /**
+     * The single-word step of FxHash, a multiplication by 2^32 divided by the
+     * golden ratio, with the well-mixed high half folded into the low half.
+     * Cheaper than {@code MURMUR3}, with somewhat weaker mixing.
+     */
+    HashSpreader FXHASH = h -> {
+        final int multiplier = 0x9E3779B9;
+        final int halfWord = 16;
+        int x = h * multiplier;
+        return x ^ (x >>> halfWord);
+    };
+
+    /**
+     * Returns the spread version of {@code hashCode}.
+     *
+     * @param hashCode
+     *            the hash code to spread
+     * @return the spread hash code
+     * @ensures [spread is a deterministic function of hashCode]
+     */
+    int spread(int hashCode);
+
+}
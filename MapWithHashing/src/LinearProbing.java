@@ -0,0 +1,180 @@
+/**
+ * Slot arithmetic shared by the open-addressing hash tables {@code Map5} and
+ * {@code StringIntHashMap}. Each keeps its keys in an array whose length is a
+ * power of 2, with {@code null} marking an empty slot, and a parallel array
+ * of values whose element type differs ({@code Object} or {@code int}), so
+ * the methods here work on the key array alone and leave moving values to
+ * the caller.
+ *
+ * <p>
+ * The key array {@code keys} passed to every method must satisfy: every key
+ * is in a contiguous run of non-null entries of {@code keys} that starts at,
+ * or wraps around from, its home slot, and the keys are pairwise distinct.
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+final class LinearProbing {
+
+    /**
+     * Largest capacity a key array can grow to.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private LinearProbing() {
+    }
+
+    /**
+     * Returns the smallest power of 2 that is at least {@code n}.
+     *
+     * @param n
+     *            the lower bound
+     * @return the smallest power of 2 >= n
+     * @requires 0 < n <= MAXIMUM_CAPACITY
+     * @ensures <pre>
+     * [powerOfTwoAtLeast is a power of 2]  and
+     * n <= powerOfTwoAtLeast < 2 * n
+     * </pre>
+     */
+    static int powerOfTwoAtLeast(int n) {
+        assert 0 < n : "Violation of: 0 < n";
+        assert n <= MAXIMUM_CAPACITY : "Violation of: n <= MAXIMUM_CAPACITY";
+
+        int power = 1;
+        while (power < n) {
+            power *= 2;
+        }
+        return power;
+    }
+
+    /**
+     * Returns the slot where the probe sequence for {@code key} starts in a
+     * table with {@code capacity} slots. The hash code is spread with
+     * {@code HashSpreader.FXHASH}, as only its low bits select the slot.
+     *
+     * @param key
+     *            the key
+     * @param capacity
+     *            the number of slots
+     * @return the home slot of key
+     * @requires [capacity is a power of 2]
+     * @ensures 0 <= home < capacity
+     */
+    static int home(Object key, int capacity) {
+        return HashSpreader.FXHASH.spread(key.hashCode()) & (capacity - 1);
+    }
+
+    /**
+     * Returns the slot of {@code keys} holding {@code key}, or the empty slot
+     * that ends its probe sequence if {@code key} is not present.
+     *
+     * @param keys
+     *            the key array
+     * @param key
+     *            the key to look for
+     * @return the slot of key, or the first empty slot on its probe sequence
+     * @requires [keys has an empty slot]
+     * @ensures <pre>
+     * (keys[findSlot] = key  or  keys[findSlot] = null)  and
+     * (keys[findSlot] = null  iff  key is not an entry of keys)
+     * </pre>
+     */
+    static int findSlot(Object[] keys, Object key) {
+        int mask = keys.length - 1;
+        int i = home(key, keys.length);
+        Object k = keys[i];
+        while (k != null && !k.equals(key)) {
+            i = (i + 1) & mask;
+            k = keys[i];
+        }
+        return i;
+    }
+
+    /**
+     * Returns the empty slot that ends the probe sequence of {@code key},
+     * without comparing {@code key} with the keys it passes; for re-inserting
+     * keys known to be absent.
+     *
+     * @param keys
+     *            the key array
+     * @param key
+     *            the key to place
+     * @return the first empty slot on the probe sequence of key
+     * @requires [keys has an empty slot]  and  [key is not an entry of keys]
+     * @ensures keys[freeSlot] = null  and  freeSlot = [findSlot(keys, key)]
+     */
+    static int freeSlot(Object[] keys, Object key) {
+        int mask = keys.length - 1;
+        int i = home(key, keys.length);
+        while (keys[i] != null) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the first slot after {@code gap}, in the probe run that follows
+     * it, whose key may move back into {@code gap} without being cut off from
+     * its home slot, or the empty slot that ends the run if there is none. A
+     * deletion empties its slot and then, until this returns an empty slot,
+     * moves the entry at the returned slot into the gap and makes that slot
+     * the new gap, so no tombstones are needed.
+     *
+     * @param keys
+     *            the key array
+     * @param gap
+     *            the slot just emptied
+     * @return the next slot to shift into gap, or the empty slot ending the run
+     * @requires <pre>
+     * 0 <= gap < |keys|  and  [keys has an empty slot other than gap]
+     * </pre>
+     * @ensures <pre>
+     * keys[nextShift] = null  or
+     * [the home slot of keys[nextShift] is not cyclically within
+     *  (gap, nextShift]]
+     * </pre>
+     */
+    static int nextShift(Object[] keys, int gap) {
+        int mask = keys.length - 1;
+        int j = (gap + 1) & mask;
+        Object k = keys[j];
+        /*
+         * The entry at j may move into the gap only if its home slot is not
+         * cyclically within (gap, j].
+         */
+        while (k != null
+                && ((j - home(k, keys.length)) & mask) < ((j - gap) & mask)) {
+            j = (j + 1) & mask;
+            k = keys[j];
+        }
+        return j;
+    }
+
+    /**
+     * Returns the first non-empty slot of {@code keys} at or after
+     * {@code start}, wrapping around to slot 0.
+     *
+     * @param keys
+     *            the key array
+     * @param start
+     *            the slot at which to start looking
+     * @return the first non-empty slot from start on
+     * @requires 0 <= start < |keys|  and  [keys has a non-empty slot]
+     * @ensures <pre>
+     * keys[nextOccupied] /= null  and
+     * [the slots cyclically within [start, nextOccupied) are empty]
+     * </pre>
+     */
+    static int nextOccupied(Object[] keys, int start) {
+        int mask = keys.length - 1;
+        int i = start;
+        while (keys[i] == null) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+}
@@ -1,37 +1,131 @@
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
 
 import components.map.Map;
-import components.map.Map2;
 import components.map.MapSecondary;
 
 /**
  * {@code Map} represented as a hash table using {@code Map}s for the buckets,
  * with implementations of primary methods.
  *
+ * <p>
+ * The hash table grows when the number of entries exceeds the load factor
+ * times the number of buckets, and shrinks when it falls below a quarter of
+ * that. Entries are not moved all at once: while a resize is in progress the
+ * previous table is kept in {@code $this.oldTable}, and each {@code add},
+ * {@code remove}, and {@code removeAny} migrates a few of its buckets, so no
+ * single call pays for a full rehash.
+ *
+ * <p>
+ * Hash codes are passed through a {@link HashSpreader} (MurmurHash3's
+ * finalizer unless another is chosen) before being reduced to a bucket index,
+ * optionally after being XORed with a per-instance random seed so that the
+ * bucket of a key cannot be predicted from outside. The seed only defeats keys
+ * chosen to collide in the bucket index: keys with equal {@code hashCode}
+ * values (such as {@code "Aa"} and {@code "BB"}, and the many strings built
+ * from them) collide under every seed, and only the tree buckets described
+ * below limit their cost. {@link #bucketStats()} reports how evenly the
+ * entries are spread.
+ *
+ * <p>
+ * A bucket is a {@code ChainBucket}, searched linearly, until it holds
+ * {@code TREEIFY_THRESHOLD} entries whose keys all have the same class, either
+ * {@code String} or a boxed primitive type; it is then converted to a
+ * {@code TreeBucket}, searched in logarithmic time, and converted back once it
+ * shrinks to {@code UNTREEIFY_THRESHOLD} entries or is given a key of another
+ * class. So even such keys crafted to collide cost only logarithmic time per
+ * lookup. Other {@code Comparable} classes are not trusted to order their
+ * keys consistently with {@code equals}, so their buckets stay chains.
+ *
+ * <p>
+ * Iterators are fail-fast: once {@code this} is updated, other than through
+ * the iterator, its {@code next} throws
+ * {@code ConcurrentModificationException}. {@link #snapshot()} instead returns
+ * an unchanging view of the current pairs in constant time; the table arrays
+ * are copied on the first update after it, and each bucket only when it is
+ * first updated, so the snapshot can be iterated, by another thread if need
+ * be, while {@code this} continues to change.
+ *
+ * <p>
+ * Buckets are created only when a key is first added to them, so a new or
+ * cleared {@code Map4} costs one array of {@code null}s of the configured
+ * size, which {@code clear} and {@code transferFrom} keep. With
+ * {@link #setRetainStorage(boolean)}, {@code clear} instead empties the
+ * existing buckets in place, and the table never shrinks, so a map that is
+ * repeatedly cleared and refilled to a similar size stops reallocating its
+ * table and buckets.
+ *
  * @param <K>
  *            type of {@code Map} domain (key) entries
  * @param <V>
  *            type of {@code Map} range (associated value) entries
+ * @mathdefinitions <pre>
+ * HASH (
+ *   x: K
+ *  ) : integer is
+ *  [computed result of
+ *   $this.spreader.spread(x.hashCode() XOR $this.seed)]
+ *
+ * IS_HASHED (
+ *   table: string of Map,
+ *   i: integer
+ *  ) : boolean is
+ *  for all pf: PARTIAL_FUNCTION, x: K
+ *      where (<pf> = table[i, i+1)  and  x is in DOMAIN(pf))
+ *    (HASH(x) mod |table| = i)
+ *  [a null entry of table stands for an empty bucket, here and below]
+ *
+ * PENDING (
+ *   table: string of Map
+ *  ) : set of PARTIAL_FUNCTION is
+ *  {pf: PARTIAL_FUNCTION
+ *     where (there exists i: integer
+ *              (0 <= i  and  i < |table|  and  <pf> = table[i, i+1)))}
+ * </pre>
  * @convention <pre>
  * |$this.hashTable| > 0  and
- * for all i: integer, pf: PARTIAL_FUNCTION, x: K
- *     where (0 <= i  and  i < |$this.hashTable|  and
- *            <pf> = $this.hashTable[i, i+1)  and
- *            x is in DOMAIN(pf))
- *   ([computed result of x.hashCode()] mod |$this.hashTable| = i))  and
  * for all i: integer
  *     where (0 <= i  and  i < |$this.hashTable|)
- *   ([entry at position i in $this.hashTable is not null])  and
- * $this.size = sum i: integer, pf: PARTIAL_FUNCTION
- *     where (0 <= i  and  i < |$this.hashTable|  and
- *            <pf> = $this.hashTable[i, i+1))
+ *   IS_HASHED($this.hashTable, i)  and
+ * 0 < $this.loadFactor  and  0 < $this.migrationStep  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.hashTable|)
+ *   ([bit i of $this.occupied is set] =
+ *    [entry at position i in $this.hashTable is not empty])  and
+ * 0 <= $this.removeAnyStart < |$this.hashTable|  and
+ * if $this.oldTable /= null then
+ *   (0 <= $this.migrated <= |$this.oldTable|  and
+ *    for all i: integer
+ *        where (0 <= i  and  i < $this.migrated)
+ *      ([entry at position i in $this.oldTable is null])  and
+ *    for all i: integer
+ *        where (0 <= i  and  i < |$this.oldTable|)
+ *      ([bit i of $this.oldOccupied is set] =
+ *       [entry at position i in $this.oldTable is not null and
+ *        not empty])  and
+ *    for all i: integer
+ *        where (0 <= i  and  i < |$this.oldTable|  and
+ *               [entry at position i in $this.oldTable is not null])
+ *      (IS_HASHED($this.oldTable, i)  and
+ *       for all x: K
+ *           where (HASH(x) mod |$this.oldTable| = i)
+ *         (x is not in DOMAIN(union pf: PARTIAL_FUNCTION
+ *                               where (pf is in PENDING($this.hashTable))
+ *                             (pf)))))  and
+ * $this.size = sum pf: PARTIAL_FUNCTION
+ *     where (pf is in PENDING($this.hashTable)  or
+ *            ($this.oldTable /= null  and  pf is in PENDING($this.oldTable)))
  *   (|pf|)
  * </pre>
  * @correspondence <pre>
- * this = union i: integer, pf: PARTIAL_FUNCTION
- *            where (0 <= i  and  i < |$this.hashTable|  and
- *                   <pf> = $this.hashTable[i, i+1))
+ * this = union pf: PARTIAL_FUNCTION
+ *            where (pf is in PENDING($this.hashTable)  or
+ *                   ($this.oldTable /= null  and
+ *                    pf is in PENDING($this.oldTable)))
  *          (pf)
  * </pre>
  *
@@ -49,16 +143,126 @@ public class Map4<K, V> extends MapSecondary<K, V> {
      */
     private static final int DEFAULT_HASH_TABLE_SIZE = 101;
 
+    /**
+     * Default ratio of entries to buckets above which the table grows.
+     */
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+    /**
+     * Largest hash table size the table will grow to.
+     */
+    private static final int MAXIMUM_HASH_TABLE_SIZE = 1 << 30;
+
+    /**
+     * The table shrinks when it is less than 1/SHRINK_DIVISOR as full as the
+     * load factor allows.
+     */
+    private static final int SHRINK_DIVISOR = 4;
+
+    /**
+     * Number of entries at which a bucket is converted to a
+     * {@code TreeBucket}, if its keys allow.
+     */
+    private static final int TREEIFY_THRESHOLD = 8;
+
+    /**
+     * Number of entries at which a {@code TreeBucket} is converted back to a
+     * {@code ChainBucket}; lower than {@code TREEIFY_THRESHOLD} so that a
+     * bucket whose size goes up and down by one is not converted every time.
+     */
+    private static final int UNTREEIFY_THRESHOLD = 6;
+
     /**
      * Buckets for hashing.
      */
-    private Map<K, V>[] hashTable;
+    private Bucket<K, V>[] hashTable;
+
+    /**
+     * Buckets of the table being migrated into {@code hashTable}, or
+     * {@code null} if no resize is in progress; a bucket is set to
+     * {@code null} once its entries have been moved.
+     */
+    private Bucket<K, V>[] oldTable;
+
+    /**
+     * Bitmap of the non-empty buckets of {@code hashTable}: bit {@code i} is
+     * bit {@code i % 64} of word {@code i / 64}.
+     */
+    private long[] occupied;
+
+    /**
+     * Bitmap of the non-empty buckets of {@code oldTable}, laid out like
+     * {@code occupied}.
+     */
+    private long[] oldOccupied;
+
+    /**
+     * Bucket of {@code hashTable} at which the next {@code removeAny} starts
+     * its search.
+     */
+    private int removeAnyStart;
+
+    /**
+     * Number of leading buckets of {@code oldTable} already migrated.
+     */
+    private int migrated;
+
+    /**
+     * Number of {@code oldTable} buckets migrated by each mutator.
+     */
+    private int migrationStep;
+
+    /**
+     * Ratio of entries to buckets above which the table grows.
+     */
+    private double loadFactor;
+
+    /**
+     * Size the table is created with, below which it never shrinks.
+     */
+    private int minimumTableSize;
+
+    /**
+     * Mixes the bits of hash codes before they are reduced to bucket indices.
+     */
+    private HashSpreader spreader;
+
+    /**
+     * Value XORed with every hash code before it is spread; 0 unless a random
+     * seed was requested.
+     */
+    private int seed;
 
     /**
      * Total size of abstract {@code this}.
      */
     private int size;
 
+    /**
+     * Number of updates so far, checked by iterators to detect updates made
+     * while they are in use.
+     */
+    private int modificationCount;
+
+    /**
+     * Whether the arrays {@code hashTable}, {@code occupied}, {@code oldTable},
+     * and {@code oldOccupied} are shared with a snapshot, and so must be
+     * copied before they are next updated.
+     */
+    private boolean arraysShared;
+
+    /**
+     * Bitmap of the buckets of {@code hashTable} that are not shared with a
+     * snapshot, laid out like {@code occupied}, or {@code null} if none is.
+     */
+    private long[] owned;
+
+    /**
+     * Whether {@code clear} empties the existing buckets in place rather than
+     * creating a new table, and the table never shrinks.
+     */
+    private boolean retainStorage;
+
     /**
      * Computes {@code a} mod {@code b} as % should have been defined to work.
      *
@@ -80,39 +284,704 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         if (a < 0 && mod != 0) {
             mod += b;
         }
-
-        return mod;
+
+        return mod;
+    }
+
+    /**
+     * Returns a bitmap with room for {@code n} bits, all clear.
+     *
+     * @param n
+     *            the number of bits
+     * @return the new bitmap
+     * @requires n >= 0
+     * @ensures |newBitmap| = ceiling(n / 64) and [all bits are clear]
+     */
+    private static long[] newBitmap(int n) {
+        return new long[(n + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    /**
+     * Sets or clears bit {@code i} of {@code bits}.
+     *
+     * @param bits
+     *            the bitmap
+     * @param i
+     *            the bit to update
+     * @param value
+     *            whether the bit should be set
+     * @updates bits
+     * @requires 0 <= i < 64 * |bits|
+     * @ensures <pre>
+     * [bit i of bits is set] = value  and
+     * [the other bits of bits are unchanged]
+     * </pre>
+     */
+    private static void setBit(long[] bits, int i, boolean value) {
+        if (value) {
+            bits[i / Long.SIZE] |= 1L << i;
+        } else {
+            bits[i / Long.SIZE] &= ~(1L << i);
+        }
+    }
+
+    /**
+     * Returns the smallest set bit of {@code bits} at or after {@code from},
+     * or -1 if there is none; whole words of clear bits are skipped at once.
+     *
+     * @param bits
+     *            the bitmap
+     * @param from
+     *            the first bit to consider
+     * @return the next set bit, or -1
+     * @requires 0 <= from
+     * @ensures <pre>
+     * (nextSetBit = -1  and
+     *  [no bit at or after from is set])  or
+     * (from <= nextSetBit  and  [bit nextSetBit of bits is set]  and
+     *  [no bit in [from, nextSetBit) is set])
+     * </pre>
+     */
+    private static int nextSetBit(long[] bits, int from) {
+        int result = -1;
+        int word = from / Long.SIZE;
+        if (word < bits.length) {
+            long w = bits[word] & (-1L << from);
+            while (w == 0 && word + 1 < bits.length) {
+                word++;
+                w = bits[word];
+            }
+            if (w != 0) {
+                result = word * Long.SIZE + Long.numberOfTrailingZeros(w);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether {@code n} is prime.
+     *
+     * @param n
+     *            the number to test
+     * @return true iff n is prime
+     * @ensures isPrime = [n is prime]
+     */
+    private static boolean isPrime(int n) {
+        boolean isPrime = n >= 2;
+        for (int d = 2; isPrime && d <= n / d; d++) {
+            isPrime = n % d != 0;
+        }
+        return isPrime;
+    }
+
+    /**
+     * Returns the smallest prime that is at least {@code n}, capped at
+     * {@code MAXIMUM_HASH_TABLE_SIZE}.
+     *
+     * @param n
+     *            the lower bound
+     * @return the smallest prime >= n, or MAXIMUM_HASH_TABLE_SIZE
+     * @requires n > 0
+     * @ensures <pre>
+     * nextTableSize = min(MAXIMUM_HASH_TABLE_SIZE,
+     *                     [smallest prime p such that p >= n])
+     * </pre>
+     */
+    private static int nextTableSize(int n) {
+        assert n > 0 : "Violation of: n > 0";
+
+        int p = n;
+        while (p < MAXIMUM_HASH_TABLE_SIZE && !isPrime(p)) {
+            p++;
+        }
+        return Math.min(p, MAXIMUM_HASH_TABLE_SIZE);
+    }
+
+    /**
+     * Returns a new hash table of {@code hashTableSize} empty buckets, all
+     * {@code null} until they are first added to.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     * @param hashTableSize
+     *            the size of the hash table
+     * @return the new hash table
+     * @requires hashTableSize > 0
+     * @ensures <pre>
+     * |newTable| = hashTableSize  and
+     * [all entries of newTable are null]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Bucket<K, V>[] newTable(int hashTableSize) {
+        /*
+         * With "new Bucket<K, V>[...]" in place of "new Bucket[...]" it does
+         * not compile; as shown, it results in a warning about an unchecked
+         * conversion, though it cannot fail.
+         */
+        Bucket<K, V>[] table = new Bucket[hashTableSize];
+        return table;
+    }
+
+    /**
+     * Reports whether {@code key} is in {@code bucket}, which may be
+     * {@code null}, standing for an empty bucket.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     * @param bucket
+     *            the bucket, or null
+     * @param key
+     *            the key to look for
+     * @return true iff bucket is not null and key is in DOMAIN(bucket)
+     * @ensures <pre>
+     * contains = (bucket /= null  and  key is in DOMAIN(bucket))
+     * </pre>
+     */
+    private static <K, V> boolean contains(Map<K, V> bucket, K key) {
+        return bucket != null && bucket.hasKey(key);
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param hashTableSize
+     *            the size of the hash table
+     * @requires hashTableSize > 0
+     * @ensures <pre>
+     * |$this.hashTable| = hashTableSize  and
+     * [all entries of $this.hashTable are null]  and
+     * [all bits of $this.occupied are clear]  and
+     * $this.removeAnyStart = 0  and
+     * $this.oldTable = null  and
+     * $this.size = 0
+     * </pre>
+     */
+    private void createNewRep(int hashTableSize) {
+
+        this.hashTable = newTable(hashTableSize);
+        this.occupied = newBitmap(hashTableSize);
+        this.removeAnyStart = 0;
+        this.oldTable = null;
+        this.oldOccupied = null;
+        this.migrated = 0;
+        this.migrationStep = 1;
+        this.arraysShared = false;
+        this.owned = null;
+
+        this.size = 0;
+        this.modificationCount++;
+
+    }
+
+    /**
+     * Returns the spread hash code of {@code key}.
+     *
+     * @param key
+     *            the key
+     * @return the spread hash code of key
+     * @ensures hash = HASH(key)
+     */
+    private int hash(Object key) {
+        return this.spreader.spread(key.hashCode() ^ this.seed);
+    }
+
+    /**
+     * Returns the bucket that holds {@code key} if it is in {@code this}, or
+     * that would hold it if it were.
+     *
+     * @param key
+     *            the key
+     * @return the bucket for key, or null if it is empty
+     * @ensures <pre>
+     * [bucket is the unique bucket of $this.hashTable or $this.oldTable
+     *  in which key is, or would be, found, or null]
+     * </pre>
+     */
+    private Bucket<K, V> bucket(K key) {
+        int h = this.hash(key);
+        if (this.oldTable != null) {
+            Bucket<K, V> old = this.oldTable[mod(h, this.oldTable.length)];
+            if (old != null) {
+                return old;
+            }
+        }
+        return this.hashTable[mod(h, this.hashTable.length)];
+    }
+
+    /**
+     * Moves the entries of bucket {@code i} of {@code $this.oldTable} into
+     * {@code $this.hashTable}.
+     *
+     * @param i
+     *            index of the bucket in $this.oldTable
+     * @updates $this.hashTable, $this.oldTable
+     * @requires <pre>
+     * $this.oldTable /= null  and  0 <= i < |$this.oldTable|
+     * </pre>
+     * @ensures <pre>
+     * [entry at position i in $this.oldTable is null]  and  this = #this
+     * </pre>
+     */
+    private void migrateBucket(int i) {
+        Bucket<K, V> old = this.oldTable[i];
+        if (old != null) {
+            /*
+             * The old bucket is only read, never updated, and then dropped.
+             */
+            for (Pair<K, V> p : old) {
+                int j = mod(this.hash(p.key()), this.hashTable.length);
+                this.addToBucket(j, p.key(), p.value());
+            }
+            this.oldTable[i] = null;
+            setBit(this.oldOccupied, i, false);
+        }
+    }
+
+    /**
+     * Returns the index of the bucket of {@code $this.hashTable} for
+     * {@code key}, first moving the entries that hash to the same
+     * {@code $this.oldTable} bucket as {@code key}, if any, into
+     * {@code $this.hashTable}.
+     *
+     * @param key
+     *            the key about to be updated
+     * @return the index of the bucket in which key is, or would be, found
+     * @updates $this.hashTable, $this.oldTable
+     * @ensures <pre>
+     * writableIndex = [the index of the bucket of $this.hashTable in which
+     *                  key is, or would be, found]  and
+     * this = #this
+     * </pre>
+     */
+    private int writableIndex(K key) {
+        int h = this.hash(key);
+        if (this.oldTable != null) {
+            this.migrateBucket(mod(h, this.oldTable.length));
+        }
+        return mod(h, this.hashTable.length);
+    }
+
+    /**
+     * Replaces bucket {@code i} of {@code $this.hashTable} with
+     * {@code replacement}, copying the entries of the bucket into it; the
+     * bucket itself is only read, as it may be shared with a snapshot.
+     *
+     * @param i
+     *            the index of the bucket
+     * @param replacement
+     *            the new, empty, bucket
+     * @return the new bucket
+     * @updates $this.hashTable
+     * @requires <pre>
+     * 0 <= i < |$this.hashTable|  and  replacement = {}  and
+     * [replacement can hold the keys of bucket i]
+     * </pre>
+     * @ensures <pre>
+     * [entry at position i in $this.hashTable is replacement]  and
+     * rebuildBucket = replacement  and  this = #this
+     * </pre>
+     */
+    private Bucket<K, V> rebuildBucket(int i, Bucket<K, V> replacement) {
+        for (Pair<K, V> p : this.hashTable[i]) {
+            replacement.add(p.key(), p.value());
+        }
+        this.hashTable[i] = replacement;
+        return replacement;
+    }
+
+    /**
+     * Records that {@code this} is about to be updated, so that iterators in
+     * use fail, and copies the table arrays if they are shared with a
+     * snapshot. Every public method that updates the representation calls
+     * this, before it updates any array or bucket shared with a snapshot.
+     *
+     * @updates $this
+     * @ensures <pre>
+     * $this.modificationCount /= #$this.modificationCount  and
+     * not $this.arraysShared  and  this = #this
+     * </pre>
+     */
+    private void beginUpdate() {
+        this.modificationCount++;
+        if (this.arraysShared) {
+            this.hashTable = this.hashTable.clone();
+            this.occupied = this.occupied.clone();
+            if (this.oldTable != null) {
+                this.oldTable = this.oldTable.clone();
+                this.oldOccupied = this.oldOccupied.clone();
+            }
+            this.arraysShared = false;
+        }
+    }
+
+    /**
+     * Returns bucket {@code i} of {@code $this.hashTable}, first creating it
+     * if it is {@code null}, or replacing it with a copy if it is shared with
+     * a snapshot, so that it can be updated.
+     *
+     * @param i
+     *            the index of the bucket
+     * @return the bucket, which may be updated
+     * @updates $this.hashTable, $this.owned
+     * @requires 0 <= i < |$this.hashTable| and not $this.arraysShared
+     * @ensures <pre>
+     * ownBucket = [entry at position i in $this.hashTable]  and
+     * [ownBucket is not shared with a snapshot]  and  this = #this
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private Bucket<K, V> ownBucket(int i) {
+        assert !this.arraysShared : "Violation of: not $this.arraysShared";
+
+        Bucket<K, V> bucket = this.hashTable[i];
+        if (bucket == null) {
+            bucket = new ChainBucket<K, V>();
+            this.hashTable[i] = bucket;
+        } else if (this.owned != null
+                && (this.owned[i / Long.SIZE] & (1L << i)) == 0) {
+            /*
+             * The buckets are all ChainBuckets or TreeBuckets, whose
+             * newInstance returns a bucket of the same class.
+             */
+            bucket = this.rebuildBucket(i, (Bucket<K, V>) bucket.newInstance());
+        }
+        if (this.owned != null) {
+            setBit(this.owned, i, true);
+        }
+        return bucket;
+    }
+
+    /**
+     * Returns bucket {@code i} of {@code $this.hashTable}, ready for
+     * {@code key} to be added to it: owned, as by {@code ownBucket}, and
+     * converted back to a {@code ChainBucket} if it is a {@code TreeBucket}
+     * that cannot hold key.
+     *
+     * @param i
+     *            the index of the bucket
+     * @param key
+     *            the key that may be added
+     * @return the bucket, to which key may be added
+     * @updates $this.hashTable, $this.owned
+     * @requires <pre>
+     * 0 <= i < |$this.hashTable|  and  not $this.arraysShared  and
+     * HASH(key) mod |$this.hashTable| = i
+     * </pre>
+     * @ensures <pre>
+     * addableBucket = [entry at position i in $this.hashTable]  and
+     * [key can be added to addableBucket]  and  this = #this
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private Bucket<K, V> addableBucket(int i, K key) {
+        Bucket<K, V> bucket = this.ownBucket(i);
+        if (bucket instanceof TreeBucket<?, ?>
+                && !((TreeBucket<K, V>) bucket).accepts(key)) {
+            bucket = this.rebuildBucket(i, new ChainBucket<K, V>());
+        }
+        return bucket;
+    }
+
+    /**
+     * Returns the index of the bucket of {@code $this.hashTable} for
+     * {@code key} if that bucket can be updated in place, without
+     * {@code beginUpdate} copying the table arrays, {@code writableIndex}
+     * migrating an old bucket, or {@code addableBucket} creating, copying, or
+     * converting the bucket; returns -1 otherwise. Only the first update of a
+     * bucket after a resize or a snapshot finds no such index.
+     *
+     * @param key
+     *            the key about to be looked up, and maybe added
+     * @return the index of the bucket for key, or -1
+     * @ensures <pre>
+     * if inPlaceIndex >= 0 then
+     *   [inPlaceIndex is the index of the bucket of $this.hashTable in which
+     *    key is, or would be, found]  and
+     *   [that bucket is not null and not shared with a snapshot, and key can
+     *    be added to it]  and
+     *   not $this.arraysShared  and
+     *   [no bucket of $this.oldTable holds keys that hash like key]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private int inPlaceIndex(K key) {
+        int h = this.hash(key);
+        int i = -1;
+        if (!this.arraysShared && (this.oldTable == null
+                || this.oldTable[mod(h, this.oldTable.length)] == null)) {
+            int j = mod(h, this.hashTable.length);
+            Bucket<K, V> bucket = this.hashTable[j];
+            if (bucket != null
+                    && (this.owned == null
+                            || (this.owned[j / Long.SIZE] & (1L << j)) != 0)
+                    && !(bucket instanceof TreeBucket<?, ?>
+                            && !((TreeBucket<K, V>) bucket).accepts(key))) {
+                i = j;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Records in {@code $this.occupied} that bucket {@code i} of
+     * {@code $this.hashTable}, to which an entry has just been added, is not
+     * empty, converting it to a {@code TreeBucket} if it has reached
+     * {@code TREEIFY_THRESHOLD} entries of one treeifiable class.
+     *
+     * @param i
+     *            the index of a bucket that has just grown
+     * @updates $this.hashTable, $this.occupied
+     * @requires <pre>
+     * 0 <= i < |$this.hashTable|  and
+     * [entry at position i in $this.hashTable is not empty]
+     * </pre>
+     * @ensures <pre>
+     * [bit i of $this.occupied is set]  and  this = #this
+     * </pre>
+     */
+    private void bucketGrew(int i) {
+        Bucket<K, V> bucket = this.hashTable[i];
+        if (!(bucket instanceof TreeBucket<?, ?>)
+                && bucket.size() == TREEIFY_THRESHOLD) {
+            Class<?> keyClass = TreeBucket.commonKeyClass(bucket);
+            if (keyClass != null) {
+                this.rebuildBucket(i, new TreeBucket<K, V>(keyClass));
+            }
+        }
+        setBit(this.occupied, i, true);
+    }
+
+    /**
+     * Adds the pair ({@code key}, {@code value}) to bucket {@code i} of
+     * {@code $this.hashTable}, converting the bucket to a {@code TreeBucket}
+     * if it reaches {@code TREEIFY_THRESHOLD} entries of one treeifiable
+     * class, or back to a {@code ChainBucket} if it is a
+     * {@code TreeBucket} and key is of another class, and records in
+     * {@code $this.occupied} that the bucket is not empty.
+     *
+     * @param i
+     *            the index of the bucket
+     * @param key
+     *            the key to be added
+     * @param value
+     *            the associated value to be added
+     * @updates $this.hashTable, $this.occupied
+     * @requires <pre>
+     * 0 <= i < |$this.hashTable|  and
+     * HASH(key) mod |$this.hashTable| = i  and
+     * key is not in DOMAIN(this)
+     * </pre>
+     * @ensures this = #this union {(key, value)}
+     */
+    private void addToBucket(int i, K key, V value) {
+        this.addableBucket(i, key).add(key, value);
+        this.bucketGrew(i);
+    }
+
+    /**
+     * Records in {@code $this.occupied} whether bucket {@code i} of
+     * {@code $this.hashTable}, from which an entry has just been removed, is
+     * now empty, converting it back to a {@code ChainBucket} if it is a
+     * {@code TreeBucket} that has shrunk to {@code UNTREEIFY_THRESHOLD}
+     * entries.
+     *
+     * @param i
+     *            the index of a bucket that has just shrunk
+     * @updates $this.hashTable, $this.occupied
+     * @requires 0 <= i < |$this.hashTable|
+     * @ensures <pre>
+     * [bit i of $this.occupied is set] =
+     *   [entry at position i in $this.hashTable is not empty]  and
+     * this = #this
+     * </pre>
+     */
+    private void bucketShrunk(int i) {
+        Bucket<K, V> bucket = this.hashTable[i];
+        if (bucket instanceof TreeBucket<?, ?>
+                && bucket.size() <= UNTREEIFY_THRESHOLD) {
+            bucket = this.rebuildBucket(i, new ChainBucket<K, V>());
+        }
+        setBit(this.occupied, i, bucket.size() > 0);
+    }
+
+    /**
+     * Migrates the next bucket of {@code $this.oldTable}, dropping the old
+     * table when it has been emptied.
+     *
+     * @updates $this.hashTable, $this.oldTable, $this.migrated
+     * @requires $this.oldTable /= null
+     * @ensures this = #this
+     */
+    private void migrateNext() {
+        this.migrateBucket(this.migrated);
+        this.migrated++;
+        if (this.migrated == this.oldTable.length) {
+            this.oldTable = null;
+            this.oldOccupied = null;
+            this.migrated = 0;
+        }
+    }
+
+    /**
+     * Migrates up to {@code $this.migrationStep} buckets of
+     * {@code $this.oldTable}.
+     *
+     * @updates $this.hashTable, $this.oldTable, $this.migrated
+     * @ensures this = #this
+     */
+    private void advanceMigration() {
+        for (int i = 0; i < this.migrationStep && this.oldTable != null; i++) {
+            this.migrateNext();
+        }
+    }
+
+    /**
+     * Migrates every remaining bucket of {@code $this.oldTable}.
+     *
+     * @updates $this.hashTable, $this.oldTable, $this.migrated
+     * @ensures $this.oldTable = null and this = #this
+     */
+    private void finishMigration() {
+        while (this.oldTable != null) {
+            this.migrateNext();
+        }
+    }
+
+    /**
+     * Starts migrating {@code this} into a new hash table of
+     * {@code hashTableSize} buckets.
+     *
+     * @param hashTableSize
+     *            the size of the new hash table
+     * @updates $this
+     * @requires hashTableSize > 0 and $this.oldTable = null
+     * @ensures <pre>
+     * |$this.hashTable| = hashTableSize  and  this = #this  and
+     * [$this.migrationStep is large enough that the migration ends before
+     *  the next resize is due]
+     * </pre>
+     */
+    private void startResize(int hashTableSize) {
+        assert this.oldTable == null : "Violation of: $this.oldTable = null";
+
+        this.oldTable = this.hashTable;
+        this.oldOccupied = this.occupied;
+        this.migrated = 0;
+        this.hashTable = newTable(hashTableSize);
+        this.occupied = newBitmap(hashTableSize);
+        this.owned = null;
+        this.removeAnyStart = 0;
+
+        /*
+         * Count the mutators that must happen before the new table can reach
+         * either resize threshold, and spread the migration over them.
+         */
+        long growSlack = (long) (this.loadFactor * hashTableSize) - this.size
+                + 1;
+        long shrinkSlack = Long.MAX_VALUE;
+        if (hashTableSize > this.minimumTableSize) {
+            shrinkSlack = this.size - (long) (this.loadFactor
+                    * hashTableSize / SHRINK_DIVISOR) + 1;
+        }
+        long slack = Math.max(1, Math.min(growSlack, shrinkSlack));
+        this.migrationStep = (int) Math.min(this.oldTable.length,
+                (this.oldTable.length + slack - 1) / slack);
+    }
+
+    /**
+     * Starts a resize if {@code this} has become too full or too empty for
+     * the current hash table.
+     *
+     * @updates $this
+     * @ensures this = #this
+     */
+    private void resizeIfNeeded() {
+        int length = this.hashTable.length;
+        int target = length;
+        if (this.size > this.loadFactor * length
+                && length < MAXIMUM_HASH_TABLE_SIZE) {
+            target = nextTableSize(2 * length);
+        } else if (!this.retainStorage && length > this.minimumTableSize
+                && this.size < this.loadFactor * length / SHRINK_DIVISOR) {
+            target = Math.max(this.minimumTableSize,
+                    nextTableSize(length / 2));
+        }
+        if (target != length) {
+            this.finishMigration();
+            this.startResize(target);
+        }
     }
 
     /**
-     * Creator of initial representation.
+     * Immediately rehashes {@code this} into a hash table large enough to
+     * hold {@code n} entries without exceeding the load factor, if the
+     * current one is not.
      *
-     * @param hashTableSize
-     *            the size of the hash table
-     * @requires hashTableSize > 0
+     * @param n
+     *            the number of entries to make room for
+     * @updates $this
      * @ensures <pre>
-     * |$this.hashTable| = hashTableSize  and
-     * for all i: integer
-     *     where (0 <= i  and  i < |$this.hashTable|)
-     *   ($this.hashTable[i, i+1) = <{}>)  and
-     * $this.size = 0
+     * $this.oldTable = null  and  this = #this  and
+     * (n <= $this.loadFactor * |$this.hashTable|  or
+     *  |$this.hashTable| = MAXIMUM_HASH_TABLE_SIZE)
      * </pre>
      */
-    @SuppressWarnings("unchecked")
-    private void createNewRep(int hashTableSize) {
-        /*
-         * With "new Map<K, V>[...]" in place of "new Map[...]" it does not
-         * compile; as shown, it results in a warning about an unchecked
-         * conversion, though it cannot fail.
-         */
-        this.hashTable = new Map[hashTableSize];
-
-        this.size = 0;
-
-        for (int i = 0; i < hashTableSize; i++) {
-            this.hashTable[i] = new Map2<K, V>();
+    private void ensureCapacity(int n) {
+        this.finishMigration();
+        int length = this.hashTable.length;
+        if (n > this.loadFactor * length && length < MAXIMUM_HASH_TABLE_SIZE) {
+            double wanted = Math.ceil(n / this.loadFactor);
+            this.startResize(nextTableSize(
+                    (int) Math.min(wanted, MAXIMUM_HASH_TABLE_SIZE)));
+            this.finishMigration();
         }
+    }
 
+    /**
+     * Adds the pairs in {@code pairs} straight into the buckets, after making
+     * room for {@code expectedSize} entries in all.
+     *
+     * @param pairs
+     *            the pairs to add
+     * @param expectedSize
+     *            the expected size of {@code this} once they are added
+     * @updates this
+     * @requires <pre>
+     * [the keys of pairs are not null, pairwise distinct, and not in
+     *  DOMAIN(this)]  and
+     * [the values of pairs are not null]
+     * </pre>
+     * @ensures this = #this union [the pairs in pairs]
+     */
+    private void addPairs(Iterable<? extends Pair<K, V>> pairs,
+            int expectedSize) {
+        this.beginUpdate();
+        this.ensureCapacity(expectedSize);
+        for (Pair<K, V> p : pairs) {
+            K key = p.key();
+            assert key != null : "Violation of: key is not null";
+            assert p.value() != null : "Violation of: value is not null";
+            /*
+             * No hasKey check here: with assertions enabled, the bucket's own
+             * add checks for a duplicate while scanning only that bucket,
+             * without hashing the key again.
+             */
+            int i = mod(this.hash(key), this.hashTable.length);
+            this.addToBucket(i, key, p.value());
+            this.size++;
+            if (this.size > this.loadFactor * this.hashTable.length) {
+                /*
+                 * More pairs than expected: double rather than grow by one.
+                 */
+                this.ensureCapacity((int) Math.min(2L * this.size,
+                        MAXIMUM_HASH_TABLE_SIZE));
+            }
+        }
     }
 
     /*
@@ -124,7 +993,8 @@ public class Map4<K, V> extends MapSecondary<K, V> {
      */
     public Map4() {
 
-        this.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+        this(DEFAULT_HASH_TABLE_SIZE, DEFAULT_LOAD_FACTOR,
+                HashSpreader.MURMUR3, false);
 
     }
 
@@ -138,10 +1008,99 @@ public class Map4<K, V> extends MapSecondary<K, V> {
      */
     public Map4(int hashTableSize) {
 
+        this(hashTableSize, DEFAULT_LOAD_FACTOR, HashSpreader.MURMUR3, false);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of initial size
+     * {@code hashTableSize} that grows whenever the ratio of entries to
+     * buckets exceeds {@code loadFactor}.
+     *
+     * @param hashTableSize
+     *            initial, and minimum, size of hash table
+     * @param loadFactor
+     *            ratio of entries to buckets above which the table grows
+     * @requires hashTableSize > 0 and loadFactor > 0
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double loadFactor) {
+
+        this(hashTableSize, loadFactor, HashSpreader.MURMUR3, false);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of initial size
+     * {@code hashTableSize} that grows whenever the ratio of entries to
+     * buckets exceeds {@code loadFactor}, and that chooses buckets by
+     * spreading hash codes with {@code spreader}, after XORing them with a
+     * random per-instance seed if {@code randomSeed} is true.
+     *
+     * @param hashTableSize
+     *            initial, and minimum, size of hash table
+     * @param loadFactor
+     *            ratio of entries to buckets above which the table grows
+     * @param spreader
+     *            strategy for mixing hash codes
+     * @param randomSeed
+     *            whether to seed hash codes randomly, which hides the bucket
+     *            index of each key but does not separate keys with equal
+     *            hash codes
+     * @requires <pre>
+     * hashTableSize > 0  and  loadFactor > 0  and  spreader /= null
+     * </pre>
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double loadFactor, HashSpreader spreader,
+            boolean randomSeed) {
+        assert hashTableSize > 0 : "Violation of: hashTableSize > 0";
+        assert loadFactor > 0 : "Violation of: loadFactor > 0";
+        assert spreader != null : "Violation of: spreader is not null";
+
+        this.loadFactor = loadFactor;
+        this.minimumTableSize = hashTableSize;
+        this.spreader = spreader;
+        this.seed = 0;
+        if (randomSeed) {
+            this.seed = ThreadLocalRandom.current().nextInt();
+        }
         this.createNewRep(hashTableSize);
 
     }
 
+    /**
+     * Returns a new {@code Map4} holding the pairs in {@code pairs}, with its
+     * hash table sized up front for {@code expectedSize} entries. This is much
+     * faster than adding the pairs one at a time: the table never has to
+     * grow while loading, and each pair goes straight into its bucket.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     * @param pairs
+     *            the pairs to load
+     * @param expectedSize
+     *            the number of pairs expected
+     * @return the new map
+     * @requires <pre>
+     * expectedSize >= 0  and
+     * [the keys of pairs are not null and pairwise distinct]  and
+     * [the values of pairs are not null]
+     * </pre>
+     * @ensures from = [the pairs in pairs]
+     */
+    public static <K, V> Map4<K, V> from(Iterable<? extends Pair<K, V>> pairs,
+            int expectedSize) {
+        assert pairs != null : "Violation of: pairs is not null";
+        assert expectedSize >= 0 : "Violation of: expectedSize >= 0";
+
+        Map4<K, V> map = new Map4<K, V>();
+        map.addPairs(pairs, expectedSize);
+        return map;
+    }
+
     /*
      * Standard methods -------------------------------------------------------
      */
@@ -159,7 +1118,26 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 
     @Override
     public final void clear() {
-        this.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+        if (this.retainStorage && !this.arraysShared && this.owned == null) {
+            /*
+             * No bucket is shared with a snapshot, so all can be emptied in
+             * place; any table being migrated is simply dropped.
+             */
+            for (int i = nextSetBit(this.occupied, 0); i >= 0; i = nextSetBit(
+                    this.occupied, i + 1)) {
+                this.hashTable[i].clear();
+            }
+            Arrays.fill(this.occupied, 0L);
+            this.removeAnyStart = 0;
+            this.oldTable = null;
+            this.oldOccupied = null;
+            this.migrated = 0;
+            this.migrationStep = 1;
+            this.size = 0;
+            this.modificationCount++;
+        } else {
+            this.createNewRep(this.minimumTableSize);
+        }
     }
 
     @Override
@@ -175,8 +1153,22 @@ public class Map4<K, V> extends MapSecondary<K, V> {
          */
         Map4<K, V> localSource = (Map4<K, V>) source;
         this.hashTable = localSource.hashTable;
+        this.occupied = localSource.occupied;
+        this.removeAnyStart = localSource.removeAnyStart;
+        this.oldTable = localSource.oldTable;
+        this.oldOccupied = localSource.oldOccupied;
+        this.migrated = localSource.migrated;
+        this.migrationStep = localSource.migrationStep;
+        this.loadFactor = localSource.loadFactor;
+        this.minimumTableSize = localSource.minimumTableSize;
+        this.spreader = localSource.spreader;
+        this.seed = localSource.seed;
         this.size = localSource.size;
-        localSource.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+        this.arraysShared = localSource.arraysShared;
+        this.owned = localSource.owned;
+        this.retainStorage = localSource.retainStorage;
+        this.modificationCount++;
+        localSource.createNewRep(localSource.minimumTableSize);
     }
 
     /*
@@ -187,55 +1179,101 @@ public class Map4<K, V> extends MapSecondary<K, V> {
     public final void add(K key, V value) {
         assert key != null : "Violation of: key is not null";
         assert value != null : "Violation of: value is not null";
-        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
 
-        int bucket = mod(key.hashCode(), this.hashTable.length);
-        this.hashTable[bucket].add(key, value);
+        this.beginUpdate();
+        int i = this.writableIndex(key);
+        assert !contains(this.hashTable[i], key) : ""
+                + "Violation of: key is not in DOMAIN(this)";
+
+        this.addToBucket(i, key, value);
 
         this.size++;
+        this.advanceMigration();
+        this.resizeIfNeeded();
 
     }
 
     @Override
     public final Pair<K, V> remove(K key) {
         assert key != null : "Violation of: key is not null";
-        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        this.beginUpdate();
+        int i = this.writableIndex(key);
+        Bucket<K, V> bucket = this.ownBucket(i);
+        assert bucket.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        Pair<K, V> removed = bucket.remove(key);
+        this.bucketShrunk(i);
 
         this.size--;
-        return this.hashTable[mod(key.hashCode(), this.hashTable.length)]
-                .remove(key);
+        this.advanceMigration();
+        this.resizeIfNeeded();
+        return removed;
     }
 
     @Override
     public final Pair<K, V> removeAny() {
         assert this.size() > 0 : "Violation of: this /= empty_set";
 
-        int bucket = 0;
-
-        while (this.hashTable[bucket].size() == 0) {
-            bucket++;
+        this.beginUpdate();
+        /*
+         * While migrating, take the entry from the next non-empty old bucket,
+         * which the migration would have to visit anyway; the empty buckets
+         * before it are migrated on the way.
+         */
+        K key = null;
+        if (this.oldTable != null) {
+            int j = nextSetBit(this.oldOccupied, this.migrated);
+            if (j < 0) {
+                this.finishMigration();
+            } else {
+                while (this.migrated < j) {
+                    this.migrateNext();
+                }
+                key = this.oldTable[j].iterator().next().key();
+            }
         }
 
-        this.size--;
+        Pair<K, V> removed;
+        if (key != null) {
+            removed = this.remove(key);
+        } else {
+            /*
+             * Resuming the search where the previous one stopped, and
+             * skipping 64 empty buckets per bitmap word, makes draining the
+             * map with removeAny linear in the number of bitmap words rather
+             * than quadratic in the number of buckets.
+             */
+            int bucket = nextSetBit(this.occupied, this.removeAnyStart);
+            if (bucket < 0) {
+                bucket = nextSetBit(this.occupied, 0);
+            }
+            this.removeAnyStart = bucket;
+
+            removed = this.ownBucket(bucket).removeAny();
+            this.bucketShrunk(bucket);
+            this.size--;
+            this.resizeIfNeeded();
+        }
 
-        return this.hashTable[bucket].removeAny();
+        return removed;
     }
 
     @Override
     public final V value(K key) {
         assert key != null : "Violation of: key is not null";
-        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
 
-        return this.hashTable[mod(key.hashCode(), this.hashTable.length)]
-                .value(key);
+        Bucket<K, V> bucket = this.bucket(key);
+        assert contains(bucket, key) : "Violation of: key is in DOMAIN(this)";
+
+        return bucket.value(key);
     }
 
     @Override
     public final boolean hasKey(K key) {
         assert key != null : "Violation of: key is not null";
 
-        return this.hashTable[mod(key.hashCode(), this.hashTable.length)]
-                .hasKey(key);
+        return contains(this.bucket(key), key);
     }
 
     @Override
@@ -246,14 +1284,414 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 
     @Override
     public final Iterator<Pair<K, V>> iterator() {
-        return new Map4Iterator();
+        return new Map4Iterator(this.hashTable, this.occupied, this.oldTable,
+                this.oldOccupied, this.size, true);
+    }
+
+    /*
+     * Fused-lookup methods --------------------------------------------------
+     */
+
+    /**
+     * Adds the pair ({@code key}, {@code value}) to {@code this} if
+     * {@code key} is not already in {@code DOMAIN(this)}, hashing it once and
+     * scanning its bucket once.
+     *
+     * @param key
+     *            the key to be added
+     * @param value
+     *            the associated value to be added
+     * @return the value already associated with {@code key}, or {@code null}
+     *         if there was none
+     * @aliases references {@code key, value}
+     * @updates this
+     * @requires key /= null and value /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(#this) then
+     *   (this = #this  and  (key, putIfAbsent) is in #this)
+     * else
+     *   (this = #this union {(key, value)}  and  putIfAbsent = null)
+     * </pre>
+     */
+    public final V putIfAbsent(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        /*
+         * Calling beginUpdate only once the pair is known to be absent leaves
+         * iterators and snapshots undisturbed when nothing changes.
+         */
+        int i = this.inPlaceIndex(key);
+        V existing;
+        if (i >= 0) {
+            existing = this.hashTable[i].putIfAbsent(key, value);
+            if (existing == null) {
+                this.beginUpdate();
+            }
+        } else {
+            existing = this.getOrDefault(key, null);
+            if (existing == null) {
+                this.beginUpdate();
+                i = this.writableIndex(key);
+                this.addableBucket(i, key).add(key, value);
+            }
+        }
+        if (existing == null) {
+            this.bucketGrew(i);
+            this.size++;
+            this.advanceMigration();
+            this.resizeIfNeeded();
+        }
+        return existing;
+    }
+
+    /**
+     * Reports the value associated with {@code key}, or
+     * {@code defaultValue} if {@code key} is not in {@code DOMAIN(this)},
+     * hashing it once and scanning its bucket once.
+     *
+     * @param key
+     *            the key whose associated value is to be reported
+     * @param defaultValue
+     *            the value to report if there is none
+     * @return the value associated with key, or defaultValue
+     * @aliases reference returned by {@code getOrDefault}
+     * @requires key /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(this) then
+     *   (key, getOrDefault) is in this
+     * else
+     *   getOrDefault = defaultValue
+     * </pre>
+     */
+    public final V getOrDefault(K key, V defaultValue) {
+        assert key != null : "Violation of: key is not null";
+
+        Bucket<K, V> bucket = this.bucket(key);
+        V result = defaultValue;
+        if (bucket != null) {
+            result = bucket.getOrDefault(key, defaultValue);
+        }
+        return result;
+    }
+
+    /**
+     * If {@code key} is in {@code DOMAIN(this)}, replaces its associated
+     * value with the result of applying {@code remapping} to the key and that
+     * value, removing the pair instead if the result is {@code null}; hashes
+     * the key once and scans its bucket once.
+     *
+     * @param key
+     *            the key whose value is to be recomputed
+     * @param remapping
+     *            the function computing the new value
+     * @return the new value associated with {@code key}, or {@code null} if
+     *         there is none
+     * @updates this
+     * @requires key /= null and remapping /= null
+     * @ensures <pre>
+     * if key is not in DOMAIN(#this) then
+     *   (this = #this  and  computeIfPresent = null)
+     * else if [remapping.apply(key, #this(key)) = null] then
+     *   (this = #this \ {(key, #this(key))}  and  computeIfPresent = null)
+     * else
+     *   (computeIfPresent = [remapping.apply(key, #this(key))]  and
+     *    this = (#this \ {(key, #this(key))}) union {(key, computeIfPresent)})
+     * </pre>
+     */
+    public final V computeIfPresent(K key,
+            BiFunction<? super K, ? super V, ? extends V> remapping) {
+        assert key != null : "Violation of: key is not null";
+        assert remapping != null : "Violation of: remapping is not null";
+
+        /*
+         * Calling beginUpdate only once the key is known to be present leaves
+         * iterators and snapshots undisturbed when nothing changes.
+         */
+        int i = this.inPlaceIndex(key);
+        V result = null;
+        boolean removed = false;
+        if (i >= 0) {
+            Bucket<K, V> bucket = this.hashTable[i];
+            int before = bucket.size();
+            result = bucket.computeIfPresent(key, remapping);
+            removed = bucket.size() < before;
+            if (result != null || removed) {
+                this.beginUpdate();
+            }
+        } else {
+            V current = this.getOrDefault(key, null);
+            if (current != null) {
+                V computed = remapping.apply(key, current);
+                this.beginUpdate();
+                i = this.writableIndex(key);
+                Bucket<K, V> bucket = this.ownBucket(i);
+                result = bucket.computeIfPresent(key, (k, v) -> computed);
+                removed = computed == null;
+            }
+        }
+        if (removed) {
+            this.bucketShrunk(i);
+            this.size--;
+            this.advanceMigration();
+            this.resizeIfNeeded();
+        }
+        return result;
+    }
+
+    /**
+     * Associates {@code value} with {@code key} if {@code key} is not in
+     * {@code DOMAIN(this)}, and otherwise replaces the associated value with
+     * the result of applying {@code remapping} to it and {@code value},
+     * removing the pair instead if the result is {@code null}; hashes the key
+     * once and scans its bucket once. For example,
+     * {@code merge(word, 1, Integer::sum)} counts an occurrence of
+     * {@code word}.
+     *
+     * @param key
+     *            the key whose value is to be merged
+     * @param value
+     *            the value to associate, or to merge with the existing one
+     * @param remapping
+     *            the function combining the existing value with value
+     * @return the new value associated with {@code key}, or {@code null} if
+     *         there is none
+     * @aliases references {@code key, value}
+     * @updates this
+     * @requires key /= null and value /= null and remapping /= null
+     * @ensures <pre>
+     * if key is not in DOMAIN(#this) then
+     *   (this = #this union {(key, value)}  and  merge = value)
+     * else if [remapping.apply(#this(key), value) = null] then
+     *   (this = #this \ {(key, #this(key))}  and  merge = null)
+     * else
+     *   (merge = [remapping.apply(#this(key), value)]  and
+     *    this = (#this \ {(key, #this(key))}) union {(key, merge)})
+     * </pre>
+     */
+    public final V merge(K key, V value,
+            BiFunction<? super V, ? super V, ? extends V> remapping) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert remapping != null : "Violation of: remapping is not null";
+
+        /*
+         * Unlike putIfAbsent and computeIfPresent, merge always adds, replaces,
+         * or removes a pair, so it has no unchanged path to spare beginUpdate.
+         */
+        this.beginUpdate();
+        int i = this.writableIndex(key);
+        Bucket<K, V> bucket = this.addableBucket(i, key);
+        int before = bucket.size();
+        V result = bucket.merge(key, value, remapping);
+        if (bucket.size() > before) {
+            this.bucketGrew(i);
+            this.size++;
+            this.advanceMigration();
+            this.resizeIfNeeded();
+        } else if (bucket.size() < before) {
+            this.bucketShrunk(i);
+            this.size--;
+            this.advanceMigration();
+            this.resizeIfNeeded();
+        }
+        return result;
+    }
+
+    /*
+     * Bulk methods ----------------------------------------------------------
+     */
+
+    /**
+     * Adds all the pairs of {@code m} to {@code this}, growing the hash table
+     * once up front rather than incrementally.
+     *
+     * @param m
+     *            the map whose pairs are to be added
+     * @updates this
+     * @requires <pre>
+     * m /= this  and
+     * DOMAIN(this) intersection DOMAIN(m) = {}
+     * </pre>
+     * @ensures this = #this union m
+     */
+    public final void addAll(Map<K, V> m) {
+        assert m != null : "Violation of: m is not null";
+        assert m != this : "Violation of: m is not this";
+
+        this.addPairs(m, this.size + m.size());
+    }
+
+    @Override
+    public final void combineWith(Map<K, V> m) {
+        assert m != null : "Violation of: m is not null";
+        assert m != this : "Violation of: m is not this";
+
+        this.addAll(m);
+        m.clear();
+    }
+
+    /*
+     * Storage methods -------------------------------------------------------
+     */
+
+    /**
+     * Sets whether {@code clear} keeps the hash table and its buckets,
+     * emptying them in place, rather than replacing them with a new, lazily
+     * filled, table of the configured size. While storage is retained the
+     * table also never shrinks, so that clearing and refilling {@code this}
+     * to a similar size, again and again, reuses the same table and buckets.
+     *
+     * @param retain
+     *            whether to retain storage
+     * @updates this
+     * @ensures this = #this
+     */
+    public final void setRetainStorage(boolean retain) {
+        this.retainStorage = retain;
+    }
+
+    /*
+     * Snapshot methods ------------------------------------------------------
+     */
+
+    /**
+     * Returns a view of the pairs of {@code this} as they are now, which later
+     * updates of {@code this} do not change, in constant time. The view may be
+     * iterated any number of times, never fails with
+     * {@code ConcurrentModificationException}, and, once safely published,
+     * may be iterated by other threads while the thread that owns
+     * {@code this} goes on updating it. Its cost is paid by those updates: the
+     * first one copies the arrays of the hash table (but no entries), and the
+     * first update of each bucket copies that bucket.
+     *
+     * @return a snapshot of this
+     * @ensures [snapshot iterates over the pairs of #this]
+     */
+    public final Iterable<Pair<K, V>> snapshot() {
+        final Bucket<K, V>[] table = this.hashTable;
+        final long[] tableOccupied = this.occupied;
+        final Bucket<K, V>[] old = this.oldTable;
+        final long[] oldTableOccupied = this.oldOccupied;
+        final int snapshotSize = this.size;
+        this.arraysShared = true;
+        this.owned = newBitmap(table.length);
+        return () -> new Map4Iterator(table, tableOccupied, old,
+                oldTableOccupied, snapshotSize, false);
+    }
+
+    /*
+     * Diagnostic methods ----------------------------------------------------
+     */
+
+    /**
+     * Reports how evenly the entries of {@code this} are spread over the
+     * buckets of its hash table. While a resize is in progress, each entry
+     * still in the previous table is counted in the bucket it will be moved
+     * to, so the statistics describe the table as it will be once the resize
+     * is complete; nothing is moved, and iterators in use are unaffected.
+     *
+     * @return the bucket statistics
+     * @ensures <pre>
+     * bucketStats = [number of buckets, number of entries, number of
+     *                non-empty buckets, largest number of entries in a
+     *                bucket, and chi-square statistic of the bucket sizes
+     *                against a uniform distribution]
+     * </pre>
+     */
+    public final BucketStats bucketStats() {
+        int buckets = this.hashTable.length;
+        int[] chains = new int[buckets];
+        for (int i = nextSetBit(this.occupied, 0); i >= 0; i = nextSetBit(
+                this.occupied, i + 1)) {
+            chains[i] = this.hashTable[i].size();
+        }
+        if (this.oldTable != null) {
+            for (int i = nextSetBit(this.oldOccupied, this.migrated); i >= 0;
+                    i = nextSetBit(this.oldOccupied, i + 1)) {
+                for (Pair<K, V> p : this.oldTable[i]) {
+                    chains[mod(this.hash(p.key()), buckets)]++;
+                }
+            }
+        }
+
+        double expected = (double) this.size / buckets;
+        int nonEmpty = 0;
+        int maxChain = 0;
+        double chiSquare = 0;
+        for (int chain : chains) {
+            if (chain > 0) {
+                nonEmpty++;
+                maxChain = Math.max(maxChain, chain);
+            }
+            double deviation = chain - expected;
+            chiSquare += deviation * deviation;
+        }
+        if (expected > 0) {
+            chiSquare /= expected;
+        }
+        return new BucketStats(buckets, this.size, nonEmpty, maxChain,
+                chiSquare);
+    }
+
+    /**
+     * Returns bucket {@code i} of the hash table of {@code this}, or
+     * {@code null} if that bucket has not been created, so that tests can
+     * check which buckets {@code clear} keeps.
+     *
+     * @param i
+     *            the index of the bucket
+     * @return the bucket, or null
+     * @requires 0 <= i < |$this.hashTable|
+     * @ensures bucketAt = [entry at position i in $this.hashTable]
+     */
+    final Object bucketAt(int i) {
+        return this.hashTable[i];
     }
 
     /**
-     * Implementation of {@code Iterator} interface for {@code Map4}.
+     * Implementation of {@code Iterator} interface for {@code Map4}, over
+     * given table arrays, which are either those of {@code Map4.this} when the
+     * iterator was created, or those of a snapshot.
      */
     private final class Map4Iterator implements Iterator<Pair<K, V>> {
 
+        /**
+         * Buckets of the hash table.
+         */
+        private final Map<K, V>[] table;
+
+        /**
+         * Bitmap of the non-empty buckets of {@code table}.
+         */
+        private final long[] tableOccupied;
+
+        /**
+         * Buckets of the table being migrated, or {@code null}.
+         */
+        private final Map<K, V>[] oldTable;
+
+        /**
+         * Bitmap of the non-empty buckets of {@code oldTable}.
+         */
+        private final long[] oldTableOccupied;
+
+        /**
+         * Number of elements to iterate over.
+         */
+        private final int size;
+
+        /**
+         * Value of {@code Map4.this.modificationCount} when this was created,
+         * if this is to fail once it changes.
+         */
+        private final int expectedModificationCount;
+
+        /**
+         * Whether this is to fail once {@code Map4.this} is updated.
+         */
+        private final boolean failFast;
+
         /**
          * Number of elements seen already (i.e., |~this.seen|).
          */
@@ -264,27 +1702,70 @@ public class Map4<K, V> extends MapSecondary<K, V> {
          */
         private int currentBucket;
 
+        /**
+         * Whether {@code currentBucket} indexes {@code oldTable} rather than
+         * {@code table}.
+         */
+        private boolean inOldTable;
+
         /**
          * Bucket iterator from which next element will come.
          */
         private Iterator<Pair<K, V>> bucketIterator;
 
         /**
-         * No-argument constructor.
+         * Constructor from the table arrays to iterate over.
+         *
+         * @param table
+         *            buckets of the hash table
+         * @param tableOccupied
+         *            bitmap of the non-empty buckets of table
+         * @param oldTable
+         *            buckets of the table being migrated, or null
+         * @param oldTableOccupied
+         *            bitmap of the non-empty buckets of oldTable, or null
+         * @param size
+         *            number of entries in the tables
+         * @param failFast
+         *            whether the iterator is to fail once Map4.this is
+         *            updated
          */
-        Map4Iterator() {
+        Map4Iterator(Map<K, V>[] table, long[] tableOccupied,
+                Map<K, V>[] oldTable, long[] oldTableOccupied, int size,
+                boolean failFast) {
+            this.table = table;
+            this.tableOccupied = tableOccupied;
+            this.oldTable = oldTable;
+            this.oldTableOccupied = oldTableOccupied;
+            this.size = size;
+            this.failFast = failFast;
+            /*
+             * A snapshot iterator may run in another thread, so it must not
+             * read the fields of Map4.this at all.
+             */
+            int expected = 0;
+            if (failFast) {
+                expected = Map4.this.modificationCount;
+            }
+            this.expectedModificationCount = expected;
             this.numberSeen = 0;
-            this.currentBucket = 0;
-            this.bucketIterator = Map4.this.hashTable[0].iterator();
+            this.currentBucket = -1;
+            this.inOldTable = false;
+            this.bucketIterator = null;
         }
 
         @Override
         public boolean hasNext() {
-            return this.numberSeen < Map4.this.size;
+            return this.numberSeen < this.size;
         }
 
         @Override
         public Pair<K, V> next() {
+            if (this.failFast && Map4.this.modificationCount
+                    != this.expectedModificationCount) {
+                throw new ConcurrentModificationException(
+                        "Map4 updated during iteration");
+            }
             assert this.hasNext() : "Violation of: ~this.unseen /= <>";
             if (!this.hasNext()) {
                 /*
@@ -295,10 +1776,27 @@ public class Map4<K, V> extends MapSecondary<K, V> {
                 throw new NoSuchElementException();
             }
             this.numberSeen++;
-            while (!this.bucketIterator.hasNext()) {
-                this.currentBucket++;
-                this.bucketIterator = Map4.this.hashTable[this.currentBucket]
-                        .iterator();
+            /*
+             * Visit only non-empty buckets: those of table first, then those
+             * of oldTable still waiting to be migrated.
+             */
+            while (this.bucketIterator == null
+                    || !this.bucketIterator.hasNext()) {
+                if (!this.inOldTable) {
+                    this.currentBucket = nextSetBit(this.tableOccupied,
+                            this.currentBucket + 1);
+                    if (this.currentBucket < 0) {
+                        this.inOldTable = true;
+                    } else {
+                        this.bucketIterator = this.table[this.currentBucket]
+                                .iterator();
+                    }
+                } else {
+                    this.currentBucket = nextSetBit(this.oldTableOccupied,
+                            this.currentBucket + 1);
+                    this.bucketIterator = this.oldTable[this.currentBucket]
+                            .iterator();
+                }
             }
             return this.bucketIterator.next();
         }
@@ -311,4 +1809,132 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 
     }
 
+    /**
+     * Summary of how the entries of a {@code Map4} are distributed over its
+     * buckets, as reported by {@link Map4#bucketStats()}.
+     */
+    public static final class BucketStats {
+
+        /**
+         * Number of buckets.
+         */
+        private final int buckets;
+
+        /**
+         * Number of entries.
+         */
+        private final int entries;
+
+        /**
+         * Number of non-empty buckets.
+         */
+        private final int nonEmptyBuckets;
+
+        /**
+         * Largest number of entries in one bucket.
+         */
+        private final int maxChainLength;
+
+        /**
+         * Chi-square statistic of the bucket sizes against a uniform
+         * distribution.
+         */
+        private final double chiSquare;
+
+        /**
+         * Constructor from the individual statistics.
+         *
+         * @param buckets
+         *            number of buckets
+         * @param entries
+         *            number of entries
+         * @param nonEmptyBuckets
+         *            number of non-empty buckets
+         * @param maxChainLength
+         *            largest number of entries in one bucket
+         * @param chiSquare
+         *            chi-square statistic of the bucket sizes
+         */
+        BucketStats(int buckets, int entries, int nonEmptyBuckets,
+                int maxChainLength, double chiSquare) {
+            this.buckets = buckets;
+            this.entries = entries;
+            this.nonEmptyBuckets = nonEmptyBuckets;
+            this.maxChainLength = maxChainLength;
+            this.chiSquare = chiSquare;
+        }
+
+        /**
+         * Reports the number of buckets.
+         *
+         * @return the number of buckets
+         */
+        public int buckets() {
+            return this.buckets;
+        }
+
+        /**
+         * Reports the number of entries.
+         *
+         * @return the number of entries
+         */
+        public int entries() {
+            return this.entries;
+        }
+
+        /**
+         * Reports the number of non-empty buckets.
+         *
+         * @return the number of non-empty buckets
+         */
+        public int nonEmptyBuckets() {
+            return this.nonEmptyBuckets;
+        }
+
+        /**
+         * Reports the largest number of entries in one bucket.
+         *
+         * @return the longest chain length
+         */
+        public int maxChainLength() {
+            return this.maxChainLength;
+        }
+
+        /**
+         * Reports the chi-square statistic of the bucket sizes against a
+         * uniform distribution of the entries over the buckets.
+         *
+         * @return the chi-square statistic
+         */
+        public double chiSquare() {
+            return this.chiSquare;
+        }
+
+        /**
+         * Reports the chi-square statistic divided by its degrees of freedom
+         * (the number of buckets minus 1). Well-spread keys give a value close
+         * to 1; values well above 1 indicate a degenerate key set or a poor
+         * {@code hashCode}.
+         *
+         * @return the normalized chi-square statistic
+         */
+        public double uniformity() {
+            double result = 0;
+            if (this.buckets > 1) {
+                result = this.chiSquare / (this.buckets - 1);
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "buckets=" + this.buckets + ", entries=" + this.entries
+                    + ", nonEmptyBuckets=" + this.nonEmptyBuckets
+                    + ", maxChainLength=" + this.maxChainLength
+                    + ", chiSquare=" + this.chiSquare + ", uniformity="
+                    + this.uniformity();
+        }
+
+    }
+
 }
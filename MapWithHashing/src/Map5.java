@@ -0,0 +1,384 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as an open-addressing hash table with linear probing,
+ * using parallel arrays for keys and values, with implementations of primary
+ * methods. The slot arithmetic, shared with {@code StringIntHashMap}, is in
+ * {@code LinearProbing}.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @mathdefinitions <pre>
+ * PROBE_DISTANCE (
+ *   x: K,
+ *   i: integer,
+ *   n: integer
+ *  ) : integer is
+ *  (i - [computed result of LinearProbing.home(x, n)]) mod n
+ * </pre>
+ * @convention <pre>
+ * |$this.keys| = |$this.values|  and
+ * [|$this.keys| is a power of 2]  and
+ * 2 * $this.size <= |$this.keys|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|)
+ *   (($this.keys[i] = null) = ($this.values[i] = null))  and
+ * [the non-null entries of $this.keys are pairwise distinct]  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|  and  $this.keys[i] /= null)
+ *   (for all j: integer
+ *        where (0 <= j  and
+ *               j < PROBE_DISTANCE($this.keys[i], i, |$this.keys|))
+ *      ($this.keys[(i - j) mod |$this.keys|] /= null))  and
+ * $this.size = |{i: integer where (0 <= i  and  i < |$this.keys|  and
+ *                                  $this.keys[i] /= null)}|  and
+ * 0 <= $this.removeAnyStart < |$this.keys|
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *   where (there exists i: integer
+ *              (0 <= i  and  i < |$this.keys|  and
+ *               k = $this.keys[i]  and  v = $this.values[i]))}
+ * </pre>
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public class Map5<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default initial capacity of the slot arrays.
+     */
+    private static final int DEFAULT_CAPACITY = 128;
+
+    /**
+     * Keys, indexed by slot; {@code null} marks an empty slot.
+     */
+    private Object[] keys;
+
+    /**
+     * Values, parallel to {@code keys}.
+     */
+    private Object[] values;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Capacity to use when the representation is created anew.
+     */
+    private int initialCapacity;
+
+    /**
+     * Slot at which the next {@code removeAny} starts its search.
+     */
+    private int removeAnyStart;
+
+    /**
+     * Returns the slot holding {@code key}, or the empty slot that ends its
+     * probe sequence if {@code key} is not present.
+     *
+     * @param key
+     *            the key to look for
+     * @return the slot of key, or the first empty slot on its probe sequence
+     * @ensures <pre>
+     * ($this.keys[findSlot] = key  or  $this.keys[findSlot] = null)  and
+     * ($this.keys[findSlot] = null  iff  key is not in DOMAIN(this))
+     * </pre>
+     */
+    private int findSlot(Object key) {
+        return LinearProbing.findSlot(this.keys, key);
+    }
+
+    /**
+     * Removes the entry in slot {@code i} and closes the gap by shifting later
+     * entries of the same probe run backwards, so no tombstones are needed.
+     *
+     * @param i
+     *            the slot to empty
+     * @updates $this.keys, $this.values
+     * @requires 0 <= i < |$this.keys| and $this.keys[i] /= null
+     * @ensures <pre>
+     * this = #this \ {(#$this.keys[i], #$this.values[i])}
+     * </pre>
+     */
+    private void deleteSlot(int i) {
+        int gap = i;
+        int j = LinearProbing.nextShift(this.keys, gap);
+        while (this.keys[j] != null) {
+            this.keys[gap] = this.keys[j];
+            this.values[gap] = this.values[j];
+            gap = j;
+            j = LinearProbing.nextShift(this.keys, gap);
+        }
+        this.keys[gap] = null;
+        this.values[gap] = null;
+        this.size--;
+    }
+
+    /**
+     * Doubles the capacity of the slot arrays and re-inserts every entry.
+     *
+     * @updates $this.keys, $this.values
+     * @requires 2 * |$this.keys| <= LinearProbing.MAXIMUM_CAPACITY
+     * @ensures |$this.keys| = 2 * |#$this.keys| and this = #this
+     */
+    private void grow() {
+        Object[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new Object[2 * oldKeys.length];
+        this.values = new Object[2 * oldKeys.length];
+        this.removeAnyStart = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            Object k = oldKeys[i];
+            if (k != null) {
+                int j = LinearProbing.freeSlot(this.keys, k);
+                this.keys[j] = k;
+                this.values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param capacity
+     *            the number of slots
+     * @requires [capacity is a power of 2]
+     * @ensures <pre>
+     * |$this.keys| = capacity  and
+     * [all entries of $this.keys and $this.values are null]  and
+     * $this.size = 0  and  $this.removeAnyStart = 0
+     * </pre>
+     */
+    private void createNewRep(int capacity) {
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.size = 0;
+        this.removeAnyStart = 0;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map5() {
+        this.initialCapacity = DEFAULT_CAPACITY;
+        this.createNewRep(this.initialCapacity);
+    }
+
+    /**
+     * Constructor resulting in room for at least {@code expectedSize} entries
+     * before the slot arrays need to grow.
+     *
+     * @param expectedSize
+     *            number of entries expected
+     * @requires 0 < expectedSize <= LinearProbing.MAXIMUM_CAPACITY / 2
+     * @ensures this = {}
+     */
+    public Map5(int expectedSize) {
+        assert 0 < expectedSize : "Violation of: 0 < expectedSize";
+        assert expectedSize <= LinearProbing.MAXIMUM_CAPACITY / 2 : ""
+                + "Violation of: expectedSize <= MAXIMUM_CAPACITY / 2";
+
+        this.initialCapacity = LinearProbing
+                .powerOfTwoAtLeast(2 * expectedSize);
+        this.createNewRep(this.initialCapacity);
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(this.initialCapacity);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map5<?, ?> : ""
+                + "Violation of: source is of dynamic type Map5<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Map5<?,?>, and
+         * the ?,? must be K,V or the call would not have compiled.
+         */
+        Map5<K, V> localSource = (Map5<K, V>) source;
+        this.keys = localSource.keys;
+        this.values = localSource.values;
+        this.size = localSource.size;
+        this.initialCapacity = localSource.initialCapacity;
+        this.removeAnyStart = localSource.removeAnyStart;
+        localSource.createNewRep(localSource.initialCapacity);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        if (2 * (this.size + 1) > this.keys.length) {
+            this.grow();
+        }
+        int i = this.findSlot(key);
+        assert this.keys[i] == null : ""
+                + "Violation of: key is not in DOMAIN(this)";
+
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int i = this.findSlot(key);
+        assert this.keys[i] != null : "Violation of: key is in DOMAIN(this)";
+
+        Pair<K, V> removed = new MapPair<K, V>((K) this.keys[i],
+                (V) this.values[i]);
+        this.deleteSlot(i);
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * Resuming where the previous search stopped makes draining the map
+         * with removeAny linear, rather than quadratic, in the capacity.
+         */
+        int i = LinearProbing.nextOccupied(this.keys, this.removeAnyStart);
+        this.removeAnyStart = i;
+
+        Pair<K, V> removed = new MapPair<K, V>((K) this.keys[i],
+                (V) this.values[i]);
+        this.deleteSlot(i);
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int i = this.findSlot(key);
+        assert this.keys[i] != null : "Violation of: key is in DOMAIN(this)";
+
+        return (V) this.values[i];
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.keys[this.findSlot(key)] != null;
+    }
+
+    @Override
+    public final int size() {
+
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map5Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map5}.
+     */
+    private final class Map5Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Slot to be examined next.
+         */
+        private int currentSlot;
+
+        /**
+         * No-argument constructor.
+         */
+        Map5Iterator() {
+            this.numberSeen = 0;
+            this.currentSlot = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < Map5.this.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            while (Map5.this.keys[this.currentSlot] == null) {
+                this.currentSlot++;
+            }
+            int i = this.currentSlot;
+            this.currentSlot++;
+            return new MapPair<K, V>((K) Map5.this.keys[i],
+                    (V) Map5.this.values[i]);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
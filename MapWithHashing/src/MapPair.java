@@ -0,0 +1,79 @@
+import components.map.Map;
+
+/**
+ * Simple immutable implementation of {@code Map.Pair}, shared by the
+ * {@code Map} implementations in this project that do not keep their entries
+ * in {@code Pair} objects.
+ *
+ * @param <K>
+ *            type of key
+ * @param <V>
+ *            type of value
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+final class MapPair<K, V> implements Map.Pair<K, V> {
+
+    /**
+     * The key.
+     */
+    private final K key;
+
+    /**
+     * The value.
+     */
+    private final V value;
+
+    /**
+     * Constructor from key and value.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @requires key /= null and value /= null
+     * @ensures this = (key, value)
+     */
+    MapPair(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        this.key = key;
+        this.value = value;
+    }
+
+    @Override
+    public K key() {
+        return this.key;
+    }
+
+    @Override
+    public V value() {
+        return this.value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof Map.Pair<?, ?>)) {
+            return false;
+        }
+        Map.Pair<?, ?> other = (Map.Pair<?, ?>) obj;
+        return this.key.equals(other.key()) && this.value.equals(other.value());
+    }
+
+    @Override
+    public int hashCode() {
+        final int a = 37;
+        return a * this.key.hashCode() + this.value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + this.key + "," + this.value + ")";
+    }
+
+}
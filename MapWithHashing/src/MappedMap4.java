@@ -0,0 +1,475 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * Read-only {@code Map<String, String>} whose hash table lives in a
+ * memory-mapped file, so that a large dictionary written once with
+ * {@code write} can be reopened with {@code open} without re-inserting (or
+ * even reading) its entries: pages of the file are brought in by the operating
+ * system as lookups touch them, and none of the table is kept on the Java
+ * heap.
+ *
+ * <p>
+ * The file holds, in order: a header of three {@code int}s (magic number,
+ * size, number of slots); an open-addressing slot table with linear probing,
+ * each slot being the spread hash code of its key and the offset of its record
+ * ({@code 0} for an empty slot); and the records, each the UTF-8 encoding of a
+ * key and of its value, both preceded by their length in bytes.
+ *
+ * <p>
+ * The mutators {@code add}, {@code remove}, {@code removeAny}, {@code clear},
+ * and {@code transferFrom} (and the secondary methods built on them) throw
+ * {@code UnsupportedOperationException}.
+ *
+ * @mathdefinitions <pre>
+ * RECORD_AT (
+ *   b: string of byte,
+ *   p: integer
+ *  ) : (string of character, string of character) is
+ *  [the (key, value) pair decoded from the record starting at offset p of b]
+ * </pre>
+ * @convention <pre>
+ * [$this.buffer holds a table written by write]  and
+ * $this.size = [the size in the header of $this.buffer]  and
+ * $this.slots = [the number of slots in the header of $this.buffer]  and
+ * [$this.slots is a power of 2]  and  2 * $this.size <= $this.slots
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (string of character, string of character)
+ *   where (there exists i: integer
+ *              (0 <= i  and  i < $this.slots  and
+ *               [the offset in slot i of $this.buffer] /= 0  and
+ *               (k, v) = RECORD_AT($this.buffer,
+ *                          [the offset in slot i of $this.buffer])))}
+ * </pre>
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public class MappedMap4 extends MapSecondary<String, String> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * First {@code int} of every file written by {@code write} ("MM4" and a
+     * format version).
+     */
+    private static final int MAGIC = 0x4D4D3401;
+
+    /**
+     * Number of bytes in the header.
+     */
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    /**
+     * Number of bytes in one slot of the slot table.
+     */
+    private static final int SLOT_BYTES = 2 * Integer.BYTES;
+
+    /**
+     * Largest number of slots in a file.
+     */
+    private static final int MAXIMUM_SLOTS = 1 << 27;
+
+    /**
+     * Byte offset of the size in the header.
+     */
+    private static final int SIZE_OFFSET = Integer.BYTES;
+
+    /**
+     * Byte offset of the number of slots in the header.
+     */
+    private static final int SLOTS_OFFSET = 2 * Integer.BYTES;
+
+    /**
+     * The mapped file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private final int size;
+
+    /**
+     * Number of slots in the slot table.
+     */
+    private final int slots;
+
+    /**
+     * Returns the hash code stored for {@code key}; it depends only on the
+     * characters of {@code key}, as {@code String.hashCode} is specified.
+     *
+     * @param key
+     *            the key
+     * @return the spread hash code of key
+     */
+    private static int hash(String key) {
+        return HashSpreader.MURMUR3.spread(key.hashCode());
+    }
+
+    /**
+     * Returns the byte offset of slot {@code i}.
+     *
+     * @param i
+     *            the slot
+     * @return the byte offset of slot i
+     */
+    private static int slotOffset(int i) {
+        return HEADER_BYTES + i * SLOT_BYTES;
+    }
+
+    /**
+     * Returns the offset of the record for {@code key}, or {@code 0} if
+     * {@code key} is not in {@code this}.
+     *
+     * @param key
+     *            the key to look for
+     * @return the offset of the record of key, or 0
+     * @ensures <pre>
+     * (findRecord = 0  iff  key is not in DOMAIN(this))  and
+     * (findRecord /= 0  implies
+     *   key = [the key of RECORD_AT($this.buffer, findRecord)])
+     * </pre>
+     */
+    private int findRecord(String key) {
+        int h = hash(key);
+        int mask = this.slots - 1;
+        byte[] keyBytes = null;
+        int i = h & mask;
+        int record = this.buffer.getInt(slotOffset(i) + Integer.BYTES);
+        while (record != 0) {
+            if (this.buffer.getInt(slotOffset(i)) == h) {
+                /*
+                 * Encode the key only once a hash code matches, and compare
+                 * it with the record in place rather than decoding the record.
+                 */
+                if (keyBytes == null) {
+                    keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                }
+                if (this.bytesEqual(record, keyBytes)) {
+                    return record;
+                }
+            }
+            i = (i + 1) & mask;
+            record = this.buffer.getInt(slotOffset(i) + Integer.BYTES);
+        }
+        return 0;
+    }
+
+    /**
+     * Reports whether the length-prefixed bytes at offset {@code p} of
+     * {@code this.buffer} are {@code bytes}.
+     *
+     * @param p
+     *            the offset of the length
+     * @param bytes
+     *            the bytes to compare with
+     * @return true iff the bytes at p are bytes
+     */
+    private boolean bytesEqual(int p, byte[] bytes) {
+        if (this.buffer.getInt(p) != bytes.length) {
+            return false;
+        }
+        int start = p + Integer.BYTES;
+        for (int j = 0; j < bytes.length; j++) {
+            if (this.buffer.get(start + j) != bytes[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the length-prefixed UTF-8 string at offset {@code p} of
+     * {@code this.buffer}.
+     *
+     * @param p
+     *            the offset of the length
+     * @return the decoded string
+     */
+    private String stringAt(int p) {
+        int length = this.buffer.getInt(p);
+        byte[] bytes = new byte[length];
+        for (int j = 0; j < length; j++) {
+            bytes[j] = this.buffer.get(p + Integer.BYTES + j);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the offset of the value part of the record at offset
+     * {@code record}.
+     *
+     * @param record
+     *            the offset of a record
+     * @return the offset of the value of the record
+     */
+    private int valueOffset(int record) {
+        return record + Integer.BYTES + this.buffer.getInt(record);
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor from a buffer holding a table written by {@code write}.
+     *
+     * @param buffer
+     *            the buffer
+     * @throws IOException
+     *             if buffer does not hold such a table
+     */
+    private MappedMap4(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a MappedMap4 file");
+        }
+        this.buffer = buffer;
+        this.size = buffer.getInt(SIZE_OFFSET);
+        this.slots = buffer.getInt(SLOTS_OFFSET);
+        if (this.slots <= 0 || this.slots > MAXIMUM_SLOTS
+                || Integer.bitCount(this.slots) != 1
+                || 2 * (long) this.size > this.slots
+                || buffer.capacity() < slotOffset(this.slots)) {
+            throw new IOException("Corrupt MappedMap4 file");
+        }
+    }
+
+    /**
+     * Writes the entries of {@code m} to the file at {@code path} in the form
+     * read by {@code open}, replacing any existing file.
+     *
+     * @param path
+     *            the file to write
+     * @param m
+     *            the entries to write
+     * @throws IOException
+     *             if the file cannot be written
+     * @requires <pre>
+     * 2 * |m| <= 2^27  and
+     * [the file to write is smaller than 2^31 bytes]
+     * </pre>
+     * @ensures [the file at path holds m]
+     */
+    public static void write(Path path, Map<String, String> m)
+            throws IOException {
+        assert path != null : "Violation of: path is not null";
+        assert m != null : "Violation of: m is not null";
+
+        int n = m.size();
+        int slots = 2;
+        while (slots < 2 * n) {
+            slots *= 2;
+        }
+        assert slots <= MAXIMUM_SLOTS : "Violation of: 2 * |m| <= 2^27";
+        byte[][] keys = new byte[n][];
+        byte[][] values = new byte[n][];
+        int[] hashes = new int[n];
+        long length = slotOffset(slots);
+        int count = 0;
+        for (Pair<String, String> p : m) {
+            keys[count] = p.key().getBytes(StandardCharsets.UTF_8);
+            values[count] = p.value().getBytes(StandardCharsets.UTF_8);
+            hashes[count] = hash(p.key());
+            length += 2 * Integer.BYTES + keys[count].length
+                    + values[count].length;
+            count++;
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Map too large for a MappedMap4 file");
+        }
+
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE,
+                    0, length);
+            out.putInt(0, MAGIC);
+            out.putInt(SIZE_OFFSET, n);
+            out.putInt(SLOTS_OFFSET, slots);
+            int mask = slots - 1;
+            out.position(slotOffset(slots));
+            for (int j = 0; j < n; j++) {
+                int record = out.position();
+                out.putInt(keys[j].length).put(keys[j]);
+                out.putInt(values[j].length).put(values[j]);
+                int i = hashes[j] & mask;
+                while (out.getInt(slotOffset(i) + Integer.BYTES) != 0) {
+                    i = (i + 1) & mask;
+                }
+                out.putInt(slotOffset(i), hashes[j]);
+                out.putInt(slotOffset(i) + Integer.BYTES, record);
+            }
+            out.force();
+        }
+    }
+
+    /**
+     * Maps the file at {@code path}, written by {@code write}, and returns the
+     * map it holds. Nothing is read from the file until it is used.
+     *
+     * @param path
+     *            the file to map
+     * @return the map held by the file
+     * @throws IOException
+     *             if the file cannot be mapped or was not written by
+     *             {@code write}
+     * @ensures open = [the map held by the file at path]
+     */
+    public static MappedMap4 open(Path path) throws IOException {
+        assert path != null : "Violation of: path is not null";
+
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            /*
+             * The mapping stays valid after the channel is closed.
+             */
+            return new MappedMap4(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()));
+        }
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public final Map<String, String> newInstance() {
+        throw new UnsupportedOperationException(
+                "newInstance operation not supported");
+    }
+
+    @Override
+    public final void clear() {
+        throw new UnsupportedOperationException(
+                "clear operation not supported");
+    }
+
+    @Override
+    public final void transferFrom(Map<String, String> source) {
+        throw new UnsupportedOperationException(
+                "transferFrom operation not supported");
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(String key, String value) {
+        throw new UnsupportedOperationException("add operation not supported");
+    }
+
+    @Override
+    public final Pair<String, String> remove(String key) {
+        throw new UnsupportedOperationException(
+                "remove operation not supported");
+    }
+
+    @Override
+    public final Pair<String, String> removeAny() {
+        throw new UnsupportedOperationException(
+                "removeAny operation not supported");
+    }
+
+    @Override
+    public final String value(String key) {
+        assert key != null : "Violation of: key is not null";
+
+        int record = this.findRecord(key);
+        assert record != 0 : "Violation of: key is in DOMAIN(this)";
+
+        return this.stringAt(this.valueOffset(record));
+    }
+
+    @Override
+    public final boolean hasKey(String key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.findRecord(key) != 0;
+    }
+
+    @Override
+    public final int size() {
+
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<String, String>> iterator() {
+        return new MappedMap4Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code MappedMap4}; it
+     * walks the records, which follow one another after the slot table.
+     */
+    private final class MappedMap4Iterator
+            implements Iterator<Pair<String, String>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Offset of the record to be returned next.
+         */
+        private int nextRecord;
+
+        /**
+         * No-argument constructor.
+         */
+        MappedMap4Iterator() {
+            this.numberSeen = 0;
+            this.nextRecord = slotOffset(MappedMap4.this.slots);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < MappedMap4.this.size;
+        }
+
+        @Override
+        public Pair<String, String> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            int record = this.nextRecord;
+            int value = MappedMap4.this.valueOffset(record);
+            this.nextRecord = value + Integer.BYTES
+                    + MappedMap4.this.buffer.getInt(value);
+            return new MapPair<String, String>(
+                    MappedMap4.this.stringAt(record),
+                    MappedMap4.this.stringAt(value));
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,532 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * Map from {@code String} keys to {@code int} values, represented as an
+ * open-addressing hash table with linear probing over parallel arrays of keys
+ * and primitive values, as in {@code Map5}, with which it shares the probing
+ * code in {@code LinearProbing}. Meant for counting:
+ * {@code increment} updates a count in place, locating its slot once and
+ * creating no {@code Integer}s. {@code asMap} gives a
+ * {@code Map<String, Integer>} view for code written against the components
+ * interface.
+ *
+ * @mathmodel type StringIntHashMap is modeled by finite set of
+ *            (key: string of character, value: integer) exemplar m constraint
+ *            [m is the graph of a partial function]
+ * @convention <pre>
+ * |$this.keys| = |$this.values|  and
+ * [|$this.keys| is a power of 2]  and
+ * 2 * $this.size <= |$this.keys|  and
+ * [the non-null entries of $this.keys are pairwise distinct]  and
+ * [every key is in a contiguous run of non-null entries of $this.keys that
+ *  starts at, or wraps around from, its home slot]  and
+ * $this.size = [number of non-null entries of $this.keys]  and
+ * 0 <= $this.removeAnyStart < |$this.keys|
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (string of character, integer)
+ *   where (there exists i: integer
+ *              (0 <= i  and  i < |$this.keys|  and
+ *               k = $this.keys[i]  and  v = $this.values[i]))}
+ * </pre>
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public class StringIntHashMap {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default initial capacity of the slot arrays.
+     */
+    private static final int DEFAULT_CAPACITY = 128;
+
+    /**
+     * Keys, indexed by slot; {@code null} marks an empty slot.
+     */
+    private String[] keys;
+
+    /**
+     * Values, parallel to {@code keys}.
+     */
+    private int[] values;
+
+    /**
+     * Number of keys.
+     */
+    private int size;
+
+    /**
+     * Capacity to use when the representation is created anew.
+     */
+    private int initialCapacity;
+
+    /**
+     * Slot at which the next {@code removeAny} of the view starts its search.
+     */
+    private int removeAnyStart;
+
+    /**
+     * The {@code Map<String, Integer>} view of {@code this}.
+     */
+    private final MapView view;
+
+    /**
+     * Returns the slot holding {@code key}, or the empty slot that ends its
+     * probe sequence if {@code key} is not present.
+     *
+     * @param key
+     *            the key to look for
+     * @return the slot of key, or the first empty slot on its probe sequence
+     * @ensures <pre>
+     * ($this.keys[findSlot] = key  or  $this.keys[findSlot] = null)  and
+     * ($this.keys[findSlot] = null  iff  key is not in DOMAIN(this))
+     * </pre>
+     */
+    private int findSlot(String key) {
+        return LinearProbing.findSlot(this.keys, key);
+    }
+
+    /**
+     * Stores the new pair ({@code key}, {@code value}) in slot {@code i},
+     * growing the slot arrays afterwards if they have become too full.
+     *
+     * @param i
+     *            the empty slot that ends the probe sequence of key
+     * @param key
+     *            the key to be added
+     * @param value
+     *            the associated value to be added
+     * @updates $this
+     * @requires <pre>
+     * $this.keys[i] = null  and  i = [findSlot(key)]
+     * </pre>
+     * @ensures this = #this union {(key, value)}
+     */
+    private void insertAt(int i, String key, int value) {
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.size++;
+        if (2 * this.size > this.keys.length) {
+            this.grow();
+        }
+    }
+
+    /**
+     * Removes the entry in slot {@code i} and closes the gap by shifting later
+     * entries of the same probe run backwards, so no tombstones are needed.
+     *
+     * @param i
+     *            the slot to empty
+     * @updates $this.keys, $this.values, $this.size
+     * @requires 0 <= i < |$this.keys| and $this.keys[i] /= null
+     * @ensures <pre>
+     * this = #this \ {(#$this.keys[i], #$this.values[i])}
+     * </pre>
+     */
+    private void deleteSlot(int i) {
+        int gap = i;
+        int j = LinearProbing.nextShift(this.keys, gap);
+        while (this.keys[j] != null) {
+            this.keys[gap] = this.keys[j];
+            this.values[gap] = this.values[j];
+            gap = j;
+            j = LinearProbing.nextShift(this.keys, gap);
+        }
+        this.keys[gap] = null;
+        this.values[gap] = 0;
+        this.size--;
+    }
+
+    /**
+     * Doubles the capacity of the slot arrays and re-inserts every entry.
+     *
+     * @updates $this.keys, $this.values
+     * @requires 2 * |$this.keys| <= LinearProbing.MAXIMUM_CAPACITY
+     * @ensures |$this.keys| = 2 * |#$this.keys| and this = #this
+     */
+    private void grow() {
+        String[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = new String[2 * oldKeys.length];
+        this.values = new int[2 * oldKeys.length];
+        this.removeAnyStart = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            String k = oldKeys[i];
+            if (k != null) {
+                int j = LinearProbing.freeSlot(this.keys, k);
+                this.keys[j] = k;
+                this.values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param capacity
+     *            the number of slots
+     * @requires [capacity is a power of 2]
+     * @ensures <pre>
+     * |$this.keys| = capacity  and
+     * [all entries of $this.keys are null]  and
+     * $this.size = 0  and  $this.removeAnyStart = 0
+     * </pre>
+     */
+    private void createNewRep(int capacity) {
+        this.keys = new String[capacity];
+        this.values = new int[capacity];
+        this.size = 0;
+        this.removeAnyStart = 0;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public StringIntHashMap() {
+        this.initialCapacity = DEFAULT_CAPACITY;
+        this.createNewRep(this.initialCapacity);
+        this.view = new MapView();
+    }
+
+    /**
+     * Constructor resulting in room for at least {@code expectedSize} entries
+     * before the slot arrays need to grow.
+     *
+     * @param expectedSize
+     *            number of entries expected
+     * @requires 0 < expectedSize <= LinearProbing.MAXIMUM_CAPACITY / 2
+     * @ensures this = {}
+     */
+    public StringIntHashMap(int expectedSize) {
+        assert 0 < expectedSize : "Violation of: 0 < expectedSize";
+        assert expectedSize <= LinearProbing.MAXIMUM_CAPACITY / 2 : ""
+                + "Violation of: expectedSize <= MAXIMUM_CAPACITY / 2";
+
+        this.initialCapacity = LinearProbing
+                .powerOfTwoAtLeast(2 * expectedSize);
+        this.createNewRep(this.initialCapacity);
+        this.view = new MapView();
+    }
+
+    /*
+     * Primitive methods ------------------------------------------------------
+     */
+
+    /**
+     * Adds {@code delta} to the value associated with {@code key}, first
+     * associating 0 with {@code key} if {@code key} is not in
+     * {@code DOMAIN(this)}; locates the slot of {@code key} only once.
+     *
+     * @param key
+     *            the key whose value is to be incremented
+     * @param delta
+     *            the amount to add
+     * @return the new value associated with key
+     * @updates this
+     * @requires key /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(#this) then
+     *   (increment = #this(key) + delta  and
+     *    this = (#this \ {(key, #this(key))}) union {(key, increment)})
+     * else
+     *   (increment = delta  and  this = #this union {(key, delta)})
+     * </pre>
+     */
+    public final int increment(String key, int delta) {
+        assert key != null : "Violation of: key is not null";
+
+        int i = this.findSlot(key);
+        int result = delta;
+        if (this.keys[i] == null) {
+            this.insertAt(i, key, delta);
+        } else {
+            result += this.values[i];
+            this.values[i] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Adds the pair ({@code key}, {@code value}) to {@code this}.
+     *
+     * @param key
+     *            the key to be added
+     * @param value
+     *            the associated value to be added
+     * @aliases reference {@code key}
+     * @updates this
+     * @requires key /= null and key is not in DOMAIN(this)
+     * @ensures this = #this union {(key, value)}
+     */
+    public final void add(String key, int value) {
+        assert key != null : "Violation of: key is not null";
+
+        int i = this.findSlot(key);
+        assert this.keys[i] == null : ""
+                + "Violation of: key is not in DOMAIN(this)";
+
+        this.insertAt(i, key, value);
+    }
+
+    /**
+     * Removes the pair whose first component is {@code key} and returns its
+     * second component.
+     *
+     * @param key
+     *            the key to be removed
+     * @return the value that was associated with key
+     * @updates this
+     * @requires key /= null and key is in DOMAIN(this)
+     * @ensures <pre>
+     * (key, remove) is in #this  and
+     * this = #this \ {(key, remove)}
+     * </pre>
+     */
+    public final int remove(String key) {
+        assert key != null : "Violation of: key is not null";
+
+        int i = this.findSlot(key);
+        assert this.keys[i] != null : "Violation of: key is in DOMAIN(this)";
+
+        int removed = this.values[i];
+        this.deleteSlot(i);
+        return removed;
+    }
+
+    /**
+     * Reports the value associated with {@code key} in {@code this}.
+     *
+     * @param key
+     *            the key whose associated value is to be reported
+     * @return the value associated with key
+     * @requires key /= null and key is in DOMAIN(this)
+     * @ensures (key, value) is in this
+     */
+    public final int value(String key) {
+        assert key != null : "Violation of: key is not null";
+
+        int i = this.findSlot(key);
+        assert this.keys[i] != null : "Violation of: key is in DOMAIN(this)";
+
+        return this.values[i];
+    }
+
+    /**
+     * Reports whether there is a pair in {@code this} whose first component is
+     * {@code key}.
+     *
+     * @param key
+     *            the key to be checked
+     * @return true iff there is a pair in this whose first component is key
+     * @requires key /= null
+     * @ensures hasKey = (key is in DOMAIN(this))
+     */
+    public final boolean hasKey(String key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.keys[this.findSlot(key)] != null;
+    }
+
+    /**
+     * Reports the size (cardinality) of {@code this}.
+     *
+     * @return the number of pairs in this
+     * @ensures size = |this|
+     */
+    public final int size() {
+        return this.size;
+    }
+
+    /**
+     * Resets {@code this} to an empty map.
+     *
+     * @clears this
+     */
+    public final void clear() {
+        this.createNewRep(this.initialCapacity);
+    }
+
+    /**
+     * Returns a {@code Map<String, Integer>} view of {@code this}: the view
+     * and {@code this} always have the same pairs, and updating either updates
+     * both. Values are boxed only as the view reports them.
+     *
+     * @return the view of this
+     * @aliases reference returned by {@code asMap}
+     * @ensures asMap = this
+     */
+    public final Map<String, Integer> asMap() {
+        return this.view;
+    }
+
+    /**
+     * {@code Map<String, Integer>} view of the enclosing
+     * {@code StringIntHashMap}.
+     */
+    private final class MapView extends MapSecondary<String, Integer> {
+
+        /**
+         * Returns the {@code StringIntHashMap} this is a view of.
+         *
+         * @return the enclosing map
+         */
+        private StringIntHashMap owner() {
+            return StringIntHashMap.this;
+        }
+
+        @Override
+        public Map<String, Integer> newInstance() {
+            return new StringIntHashMap().asMap();
+        }
+
+        @Override
+        public void clear() {
+            StringIntHashMap.this.clear();
+        }
+
+        @Override
+        public void transferFrom(Map<String, Integer> source) {
+            assert source != null : "Violation of: source is not null";
+            assert source != this : "Violation of: source is not this";
+            assert source instanceof StringIntHashMap.MapView : ""
+                    + "Violation of: source is a StringIntHashMap view";
+            /*
+             * This cast cannot fail since the assert above would have stopped
+             * execution in that case.
+             */
+            StringIntHashMap localSource = ((MapView) source).owner();
+            StringIntHashMap.this.keys = localSource.keys;
+            StringIntHashMap.this.values = localSource.values;
+            StringIntHashMap.this.size = localSource.size;
+            StringIntHashMap.this.initialCapacity = localSource.initialCapacity;
+            StringIntHashMap.this.removeAnyStart = localSource.removeAnyStart;
+            localSource.createNewRep(localSource.initialCapacity);
+        }
+
+        @Override
+        public void add(String key, Integer value) {
+            assert value != null : "Violation of: value is not null";
+
+            StringIntHashMap.this.add(key, value);
+        }
+
+        @Override
+        public Pair<String, Integer> remove(String key) {
+            return new MapPair<String, Integer>(key,
+                    StringIntHashMap.this.remove(key));
+        }
+
+        @Override
+        public Pair<String, Integer> removeAny() {
+            assert this.size() > 0 : "Violation of: this /= empty_set";
+
+            /*
+             * Resuming where the previous search stopped makes draining the
+             * map with removeAny linear, rather than quadratic, in the
+             * capacity.
+             */
+            String[] keys = StringIntHashMap.this.keys;
+            int i = LinearProbing.nextOccupied(keys,
+                    StringIntHashMap.this.removeAnyStart);
+            StringIntHashMap.this.removeAnyStart = i;
+
+            Pair<String, Integer> removed = new MapPair<String, Integer>(
+                    keys[i], StringIntHashMap.this.values[i]);
+            StringIntHashMap.this.deleteSlot(i);
+            return removed;
+        }
+
+        @Override
+        public Integer value(String key) {
+            return StringIntHashMap.this.value(key);
+        }
+
+        @Override
+        public boolean hasKey(String key) {
+            return StringIntHashMap.this.hasKey(key);
+        }
+
+        @Override
+        public int size() {
+            return StringIntHashMap.this.size;
+        }
+
+        @Override
+        public Iterator<Pair<String, Integer>> iterator() {
+            return new MapViewIterator();
+        }
+
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for the view of
+     * {@code StringIntHashMap}.
+     */
+    private final class MapViewIterator
+            implements Iterator<Map.Pair<String, Integer>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Slot to be examined next.
+         */
+        private int currentSlot;
+
+        /**
+         * No-argument constructor.
+         */
+        MapViewIterator() {
+            this.numberSeen = 0;
+            this.currentSlot = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < StringIntHashMap.this.size;
+        }
+
+        @Override
+        public Map.Pair<String, Integer> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            while (StringIntHashMap.this.keys[this.currentSlot] == null) {
+                this.currentSlot++;
+            }
+            int i = this.currentSlot;
+            this.currentSlot++;
+            return new MapPair<String, Integer>(StringIntHashMap.this.keys[i],
+                    StringIntHashMap.this.values[i]);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,350 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} whose keys all have the same {@code Comparable} class,
+ * represented as a {@code java.util.TreeMap} ordered by that class's natural
+ * order, with implementations of primary methods. {@code Map4} switches a
+ * bucket to this representation when its chain becomes long, so that looking
+ * up a key in it takes logarithmic rather than linear time.
+ *
+ * <p>
+ * A {@code TreeMap} finds keys with {@code compareTo}, not {@code equals}, so
+ * it only behaves as a {@code Map} if the two agree. Nothing in the type of a
+ * {@code Comparable} class promises that they do ({@code BigDecimal} "1.0"
+ * and "1.00" compare as equal but are not), nor even that its keys can be
+ * compared with each other, so only the classes listed in
+ * {@link #treeifiable(Class)}, whose natural order is known to be consistent
+ * with equals, are kept in a {@code TreeBucket}.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * treeifiable($this.keyClass)  and
+ * [every key of $this.tree has dynamic type $this.keyClass]
+ * </pre>
+ * @correspondence this = [the (key, value) pairs of $this.tree]
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+final class TreeBucket<K, V> extends MapSecondary<K, V>
+        implements Bucket<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * The dynamic type of every key.
+     */
+    private final Class<?> keyClass;
+
+    /**
+     * The pairs, ordered by key.
+     */
+    private TreeMap<K, V> tree;
+
+    /**
+     * Creator of initial representation.
+     *
+     * @ensures $this.tree = {}
+     */
+    private void createNewRep() {
+        this.tree = new TreeMap<K, V>();
+    }
+
+    /**
+     * Reports whether keys of class {@code c} can be kept in a
+     * {@code TreeBucket}.
+     *
+     * @param c
+     *            the class to check
+     * @return true iff c is String or a boxed primitive type
+     * @ensures <pre>
+     * treeifiable = [c is String or a boxed primitive type, which implement
+     *                Comparable consistently with equals]
+     * </pre>
+     */
+    static boolean treeifiable(Class<?> c) {
+        return c == String.class || c == Integer.class || c == Long.class
+                || c == Short.class || c == Byte.class || c == Character.class
+                || c == Boolean.class || c == Double.class
+                || c == Float.class;
+    }
+
+    /**
+     * Returns the class shared by all the keys of {@code m} if it is
+     * treeifiable, so that the keys can be kept in a {@code TreeBucket}, or
+     * {@code null} otherwise.
+     *
+     * @param m
+     *            the map whose keys are examined
+     * @return the common treeifiable class of the keys of m, or null
+     * @requires |m| > 0
+     * @ensures <pre>
+     * if [all keys of m have the same dynamic type c, and
+     *     treeifiable(c)] then
+     *   commonKeyClass = c
+     * else
+     *   commonKeyClass = null
+     * </pre>
+     */
+    static Class<?> commonKeyClass(Map<?, ?> m) {
+        assert m.size() > 0 : "Violation of: |m| > 0";
+
+        Class<?> result = null;
+        for (Map.Pair<?, ?> p : m) {
+            Class<?> c = p.key().getClass();
+            if (result == null) {
+                result = c;
+            }
+            if (c != result) {
+                return null;
+            }
+        }
+        if (!treeifiable(result)) {
+            result = null;
+        }
+        return result;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor for keys of dynamic type {@code keyClass}.
+     *
+     * @param keyClass
+     *            the dynamic type of the keys
+     * @requires treeifiable(keyClass)
+     * @ensures this = {}
+     */
+    TreeBucket(Class<?> keyClass) {
+        assert keyClass != null : "Violation of: keyClass is not null";
+        assert treeifiable(keyClass) : ""
+                + "Violation of: treeifiable(keyClass)";
+
+        this.keyClass = keyClass;
+        this.createNewRep();
+    }
+
+    /**
+     * Reports whether {@code key} is of the dynamic type that the keys of
+     * {@code this} must have.
+     *
+     * @param key
+     *            the key to check
+     * @return true iff key can be a key of this
+     * @ensures accepts = [key has dynamic type $this.keyClass]
+     */
+    boolean accepts(Object key) {
+        return key.getClass() == this.keyClass;
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @Override
+    public Map<K, V> newInstance() {
+        return new TreeBucket<K, V>(this.keyClass);
+    }
+
+    @Override
+    public void clear() {
+        this.tree.clear();
+    }
+
+    @Override
+    public void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof TreeBucket<?, ?> : ""
+                + "Violation of: source is of dynamic type TreeBucket<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * TreeBucket<?,?>, and the ?,? must be K,V or the call would not have
+         * compiled.
+         */
+        TreeBucket<K, V> localSource = (TreeBucket<K, V>) source;
+        assert localSource.keyClass == this.keyClass : ""
+                + "Violation of: source has the same key class as this";
+        this.tree = localSource.tree;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert this.accepts(key) : ""
+                + "Violation of: key has the key class of this";
+        assert !this.tree.containsKey(key) : ""
+                + "Violation of: key is not in DOMAIN(this)";
+
+        this.tree.put(key, value);
+    }
+
+    @Override
+    public Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return new MapPair<K, V>(key, this.tree.remove(key));
+    }
+
+    @Override
+    public Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        java.util.Map.Entry<K, V> first = this.tree.pollFirstEntry();
+        return new MapPair<K, V>(first.getKey(), first.getValue());
+    }
+
+    @Override
+    public V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return this.tree.get(key);
+    }
+
+    @Override
+    public boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        /*
+         * A key of another class cannot be in this, and comparing it with the
+         * keys that are could throw ClassCastException.
+         */
+        return this.accepts(key) && this.tree.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return this.tree.size();
+    }
+
+    @Override
+    public Iterator<Pair<K, V>> iterator() {
+        return new TreeBucketIterator();
+    }
+
+    /*
+     * Single-pass methods ----------------------------------------------------
+     */
+
+    /*
+     * TreeMap overrides the methods below so that each descends the tree only
+     * once.
+     */
+
+    @Override
+    public V getOrDefault(K key, V defaultValue) {
+        assert key != null : "Violation of: key is not null";
+
+        V result = defaultValue;
+        if (this.accepts(key)) {
+            V value = this.tree.get(key);
+            if (value != null) {
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert this.accepts(key) : ""
+                + "Violation of: key has the key class of this";
+
+        return this.tree.putIfAbsent(key, value);
+    }
+
+    @Override
+    public V computeIfPresent(K key,
+            BiFunction<? super K, ? super V, ? extends V> remapping) {
+        assert key != null : "Violation of: key is not null";
+        assert remapping != null : "Violation of: remapping is not null";
+
+        V result = null;
+        if (this.accepts(key)) {
+            result = this.tree.computeIfPresent(key, remapping);
+        }
+        return result;
+    }
+
+    @Override
+    public V merge(K key, V value,
+            BiFunction<? super V, ? super V, ? extends V> remapping) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert remapping != null : "Violation of: remapping is not null";
+        assert this.accepts(key) : ""
+                + "Violation of: key has the key class of this";
+
+        return this.tree.merge(key, value, remapping);
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code TreeBucket}.
+     */
+    private final class TreeBucketIterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Iterator over the entries of the tree.
+         */
+        private final Iterator<java.util.Map.Entry<K, V>> entries;
+
+        /**
+         * No-argument constructor.
+         */
+        TreeBucketIterator() {
+            this.entries = TreeBucket.this.tree.entrySet().iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.entries.hasNext();
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            java.util.Map.Entry<K, V> e = this.entries.next();
+            return new MapPair<K, V>(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code ConcurrentMap4} using default
+ * constructor.
+ */
+public class ConcurrentMap4Test extends MapTest {
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new ConcurrentMap4<String, String>();
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    /**
+     * Test for merge called from several threads at once, on more keys than
+     * the initial table can hold without growing.
+     */
+    @Test
+    public final void testConcurrentMerge() throws InterruptedException {
+        final int threads = 8;
+        final int words = 5000;
+        final int rounds = 4;
+        ConcurrentMap4<String, Integer> s = new ConcurrentMap4<>(11, 4);
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int r = 0; r < rounds; r++) {
+                    for (int w = 0; w < words; w++) {
+                        s.merge("word" + w, 1, Integer::sum);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(words, s.size());
+        int total = 0;
+        for (Map.Pair<String, Integer> p : s) {
+            total += p.value();
+        }
+        assertEquals(threads * rounds * words, total);
+    }
+
+    /**
+     * Test for removeAny called from several threads at once while other
+     * threads add pairs, so that the table grows during the searches.
+     */
+    @Test
+    public final void testConcurrentRemoveAny() throws InterruptedException {
+        final int threads = 4;
+        final int pairs = 5000;
+        ConcurrentMap4<Integer, Integer> s = new ConcurrentMap4<>(11, 4);
+        java.util.Map<Integer, Boolean> seen = new ConcurrentHashMap<>();
+        for (int k = 0; k < threads * pairs; k++) {
+            s.add(k, k);
+        }
+
+        Thread[] workers = new Thread[2 * threads];
+        for (int t = 0; t < threads; t++) {
+            final int base = (threads + t) * pairs;
+            workers[2 * t] = new Thread(() -> {
+                for (int k = 0; k < pairs; k++) {
+                    seen.put(s.removeAny().key(), true);
+                }
+            });
+            workers[2 * t + 1] = new Thread(() -> {
+                for (int k = base; k < base + pairs; k++) {
+                    s.add(k, k);
+                }
+            });
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        /*
+         * A key removed twice would leave fewer than threads * pairs keys in
+         * seen.
+         */
+        assertEquals(threads * pairs, seen.size());
+        assertEquals(threads * pairs, s.size());
+        for (Map.Pair<Integer, Integer> p : s) {
+            assertTrue(!seen.containsKey(p.key()));
+        }
+    }
+
+}
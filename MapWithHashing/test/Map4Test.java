@@ -1,3 +1,15 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+import org.junit.Test;
+
 import components.map.Map;
 import components.map.Map1L;
 
@@ -16,4 +28,607 @@ public class Map4Test extends MapTest {
         return new Map1L<String, String>();
     }
 
+    /**
+     * Test for putIfAbsent.
+     */
+    @Test
+    public final void testPutIfAbsent() {
+        Map4<String, String> s = new Map4<String, String>();
+        Map<String, String> sExpected = this.constructorRef();
+        sExpected.add("Jack", "50");
+
+        String first = s.putIfAbsent("Jack", "50");
+        String second = s.putIfAbsent("Jack", "60");
+
+        assertNull(first);
+        assertEquals("50", second);
+        assertEquals(sExpected, s);
+    }
+
+    /**
+     * Test for getOrDefault.
+     */
+    @Test
+    public final void testGetOrDefault() {
+        Map4<String, String> s = new Map4<String, String>();
+        s.add("Tej", "10");
+
+        assertEquals("10", s.getOrDefault("Tej", "0"));
+        assertEquals("0", s.getOrDefault("Jack", "0"));
+    }
+
+    /**
+     * Test for computeIfPresent, replacing and then removing the value.
+     */
+    @Test
+    public final void testComputeIfPresent() {
+        Map4<String, String> s = new Map4<String, String>();
+        s.add("Tej", "10");
+        Map<String, String> sExpected = this.constructorRef();
+
+        String replaced = s.computeIfPresent("Tej", (k, v) -> k + v);
+        String absent = s.computeIfPresent("Jack", (k, v) -> k + v);
+        assertEquals("Tej10", replaced);
+        assertNull(absent);
+        assertEquals("Tej10", s.value("Tej"));
+
+        s.computeIfPresent("Tej", (k, v) -> null);
+        assertEquals(sExpected, s);
+    }
+
+    /**
+     * Test for merge used as a counter.
+     */
+    @Test
+    public final void testMergeCounts() {
+        Map4<String, Integer> s = new Map4<String, Integer>();
+        final int occurrences = 1000;
+
+        for (int i = 0; i < occurrences; i++) {
+            s.merge("word" + (i % 10), 1, Integer::sum);
+        }
+
+        assertEquals(10, s.size());
+        assertEquals(Integer.valueOf(occurrences / 10), s.value("word3"));
+    }
+
+    /**
+     * Test for putIfAbsent, computeIfPresent, and merge on keys that collide,
+     * so that they work on a chain bucket, then on a tree bucket, and then on
+     * a tree bucket given a key of another class.
+     */
+    @Test
+    public final void testFusedMethodsOnCollidingKeys() {
+        final int tableSize = 64;
+        final int keys = 20;
+        final double noResize = 1000.0;
+        Map4<Object, Integer> s = new Map4<Object, Integer>(tableSize,
+                noResize, HashSpreader.IDENTITY, false);
+        Map<Object, Integer> sExpected = new Map1L<Object, Integer>();
+
+        for (int i = 0; i < keys; i++) {
+            assertNull(s.putIfAbsent(i * tableSize, i));
+            assertEquals(Integer.valueOf(i), s.putIfAbsent(i * tableSize, -1));
+            assertEquals(Integer.valueOf(2 * i),
+                    s.merge(i * tableSize, i, Integer::sum));
+            sExpected.add(i * tableSize, 2 * i);
+        }
+        assertEquals(sExpected, s);
+
+        for (int i = 0; i < keys; i += 2) {
+            assertNull(s.computeIfPresent(i * tableSize, (k, v) -> null));
+            sExpected.remove(i * tableSize);
+        }
+        for (int i = 1; i < keys; i += 2) {
+            assertEquals(Integer.valueOf(-2 * i),
+                    s.computeIfPresent(i * tableSize, (k, v) -> -v));
+            sExpected.replaceValue(i * tableSize, -2 * i);
+        }
+        assertNull(s.computeIfPresent((long) tableSize, (k, v) -> v));
+        assertEquals(Integer.valueOf(1), s.merge((long) tableSize, 1,
+                Integer::sum));
+        sExpected.add((long) tableSize, 1);
+        assertNull(s.merge(tableSize, 0, (v, w) -> null));
+        sExpected.remove(tableSize);
+
+        assertEquals(sExpected, s);
+        assertEquals(Integer.valueOf(-2), s.getOrDefault(0, -2));
+        assertEquals(Integer.valueOf(1), s.getOrDefault((long) tableSize, 0));
+    }
+
+    /**
+     * Test for bucketStats with keys that all collide unless spread.
+     */
+    @Test
+    public final void testBucketStatsSpreading() {
+        final int tableSize = 1024;
+        final int keys = 100;
+        final double noResize = 1000.0;
+        Map4<Integer, Integer> identity = new Map4<Integer, Integer>(tableSize,
+                noResize, HashSpreader.IDENTITY, false);
+        Map4<Integer, Integer> murmur = new Map4<Integer, Integer>(tableSize,
+                noResize, HashSpreader.MURMUR3, false);
+
+        for (int i = 0; i < keys; i++) {
+            identity.add(i * tableSize, i);
+            murmur.add(i * tableSize, i);
+        }
+        Map4.BucketStats identityStats = identity.bucketStats();
+        Map4.BucketStats murmurStats = murmur.bucketStats();
+
+        assertEquals(keys, identityStats.maxChainLength());
+        assertEquals(1, identityStats.nonEmptyBuckets());
+        assertTrue(murmurStats.maxChainLength() < keys / 10);
+        assertTrue(murmurStats.uniformity() < identityStats.uniformity());
+    }
+
+    /**
+     * Test that bucketStats, called while a resize is migrating buckets,
+     * neither moves entries nor disturbs an iterator in use, and reports what
+     * the table holds once the migration is complete.
+     */
+    @Test
+    public final void testBucketStatsDuringResize() {
+        final int tableSize = 101;
+        final int pairs = 76;
+        final int mutators = 200;
+        Map4<Integer, Integer> s = new Map4<Integer, Integer>(tableSize, 0.75);
+        /*
+         * The 76th add takes the size above 0.75 * 101, which starts a resize
+         * whose migration is spread over the following updates.
+         */
+        for (int i = 0; i < pairs; i++) {
+            s.add(i, i);
+        }
+        Iterator<Map.Pair<Integer, Integer>> it = s.iterator();
+        it.next();
+
+        Map4.BucketStats during = s.bucketStats();
+        int seen = 1;
+        while (it.hasNext()) {
+            it.next();
+            seen++;
+        }
+        assertEquals(pairs, seen);
+        for (int i = 0; i < mutators; i++) {
+            s.add(-1, 0);
+            s.remove(-1);
+        }
+        Map4.BucketStats after = s.bucketStats();
+
+        assertTrue(during.buckets() > tableSize);
+        assertEquals(pairs, during.entries());
+        assertEquals(after.toString(), during.toString());
+    }
+
+    /**
+     * Test that a randomly seeded map behaves like any other.
+     */
+    @Test
+    public final void testRandomSeed() {
+        Map4<String, String> s = new Map4<String, String>(101, 0.75,
+                HashSpreader.FXHASH, true);
+        Map<String, String> sExpected = this.constructorRef();
+
+        s.add("Tej", "10");
+        s.add("Jack", "50");
+        sExpected.add("Tej", "10");
+        sExpected.add("Jack", "50");
+
+        assertEquals(sExpected, s);
+        assertEquals(2, s.bucketStats().entries());
+    }
+
+    /**
+     * Test for from with more pairs than expected.
+     */
+    @Test
+    public final void testFrom() {
+        final int pairs = 2000;
+        Map<String, String> source = this.constructorRef();
+        for (int i = 0; i < pairs; i++) {
+            source.add("key" + i, "value" + i);
+        }
+
+        Map4<String, String> s = Map4.from(source, pairs / 4);
+
+        assertEquals(source, s);
+        assertEquals("value1234", s.value("key1234"));
+    }
+
+    /**
+     * Test for addAll into a non-empty map.
+     */
+    @Test
+    public final void testAddAll() {
+        Map4<String, String> s = new Map4<String, String>();
+        s.add("Tej", "10");
+        Map<String, String> m = this.constructorRef();
+        m.add("Jack", "50");
+        m.add("computer", "now");
+        Map<String, String> sExpected = this.constructorRef();
+        sExpected.add("Tej", "10");
+        sExpected.add("Jack", "50");
+        sExpected.add("computer", "now");
+        Map<String, String> mExpected = this.constructorRef();
+        mExpected.add("Jack", "50");
+        mExpected.add("computer", "now");
+
+        s.addAll(m);
+
+        assertEquals(sExpected, s);
+        assertEquals(mExpected, m);
+    }
+
+    /**
+     * Test for a bucket holding many colliding keys, first all of one
+     * Comparable class and then of two classes.
+     */
+    @Test
+    public final void testCollidingKeys() {
+        final int tableSize = 64;
+        final int keys = 40;
+        final double noResize = 1000.0;
+        Map4<Object, Integer> s = new Map4<Object, Integer>(tableSize,
+                noResize, HashSpreader.IDENTITY, false);
+
+        for (int i = 0; i < keys; i++) {
+            s.add(i * tableSize, i);
+        }
+        for (int i = 0; i < keys; i += 2) {
+            assertEquals(Integer.valueOf(i), s.remove(i * tableSize).value());
+        }
+        for (int i = 0; i < keys; i++) {
+            s.add((long) i * tableSize, -i);
+        }
+
+        assertEquals(keys / 2 + keys, s.size());
+        assertEquals(keys / 2 + keys, s.bucketStats().maxChainLength());
+        for (int i = 0; i < keys; i++) {
+            assertEquals(i % 2 == 1, s.hasKey(i * tableSize));
+            assertEquals(Integer.valueOf(-i), s.value((long) i * tableSize));
+        }
+        for (int i = 0; i < keys; i++) {
+            s.remove((long) i * tableSize);
+        }
+        assertFalse(s.hasKey(0L));
+        assertEquals(Integer.valueOf(keys - 1), s.value((keys - 1) * tableSize));
+        assertEquals(keys / 2, s.size());
+    }
+
+    /**
+     * Test for a bucket holding more than TREEIFY_THRESHOLD colliding keys
+     * that compare as equal but are not equal, such as BigDecimal "1.0" and
+     * "1.00", which must stay distinct keys.
+     */
+    @Test
+    public final void testCollidingKeysInconsistentWithEquals() {
+        final int keys = 12;
+        final double noResize = 1000.0;
+        Map4<BigDecimal, Integer> s = new Map4<BigDecimal, Integer>(1,
+                noResize, HashSpreader.IDENTITY, false);
+
+        for (int i = 0; i < keys; i++) {
+            s.add(BigDecimal.ONE.setScale(i), i);
+        }
+
+        assertEquals(keys, s.size());
+        assertEquals(keys, s.bucketStats().maxChainLength());
+        for (int i = 0; i < keys; i++) {
+            assertEquals(Integer.valueOf(i),
+                    s.value(BigDecimal.ONE.setScale(i)));
+        }
+        for (int i = 0; i < keys; i += 2) {
+            assertEquals(Integer.valueOf(i),
+                    s.remove(BigDecimal.ONE.setScale(i)).value());
+        }
+        assertEquals(keys / 2, s.size());
+        for (int i = 0; i < keys; i++) {
+            assertEquals(i % 2 == 1, s.hasKey(BigDecimal.ONE.setScale(i)));
+        }
+    }
+
+    /**
+     * Test for draining a sparse map with removeAny while adding pairs, so
+     * that the search for a non-empty bucket resumes where the previous one
+     * stopped, skips many empty buckets, and wraps around to the first
+     * bucket to find pairs added behind it.
+     */
+    @Test
+    public final void testRemoveAnySparseWrapAround() {
+        final int tableSize = 4099;
+        final int initialPairs = 50;
+        final int addedPairs = 200;
+        Map4<Integer, Integer> s = new Map4<Integer, Integer>(tableSize);
+        Map<Integer, Integer> sExpected = new Map1L<Integer, Integer>();
+        int next = 0;
+        for (; next < initialPairs; next++) {
+            s.add(next, -next);
+            sExpected.add(next, -next);
+        }
+
+        int removals = 0;
+        while (s.size() > 0) {
+            Map.Pair<Integer, Integer> p = s.removeAny();
+            assertEquals(sExpected.remove(p.key()).value(), p.value());
+            assertEquals(sExpected.size(), s.size());
+            removals++;
+            if (next < initialPairs + addedPairs) {
+                s.add(next, -next);
+                sExpected.add(next, -next);
+                next++;
+            }
+        }
+
+        assertEquals(initialPairs + addedPairs, removals);
+        assertEquals(0, sExpected.size());
+        assertEquals(tableSize, s.bucketStats().buckets());
+    }
+
+    /**
+     * Test that an iterator fails once the map is updated.
+     */
+    @Test(expected = ConcurrentModificationException.class)
+    public final void testIteratorFailFast() {
+        Map4<String, String> s = new Map4<String, String>();
+        s.add("Jack", "50");
+        s.add("computer", "now");
+        Iterator<Map.Pair<String, String>> it = s.iterator();
+        it.next();
+
+        s.add("school", "OSU");
+
+        it.next();
+    }
+
+    /**
+     * Test that putIfAbsent of a key already present and computeIfPresent of
+     * an absent key, which change nothing, do not disturb an iterator in use.
+     */
+    @Test
+    public final void testUnchangedFusedMethodsKeepIterator() {
+        Map4<String, String> s = new Map4<String, String>();
+        s.add("Jack", "50");
+        s.add("computer", "now");
+        Iterator<Map.Pair<String, String>> it = s.iterator();
+        it.next();
+
+        assertEquals("50", s.putIfAbsent("Jack", "60"));
+        assertNull(s.computeIfPresent("school", (k, v) -> v + "!"));
+        Iterable<Map.Pair<String, String>> snapshot = s.snapshot();
+        assertEquals("now", s.putIfAbsent("computer", "later"));
+        assertNull(s.computeIfPresent("OSU", (k, v) -> v + "!"));
+
+        it.next();
+        assertFalse(it.hasNext());
+        Map<String, String> seen = this.constructorRef();
+        for (Map.Pair<String, String> p : snapshot) {
+            seen.add(p.key(), p.value());
+        }
+        assertEquals(s, seen);
+    }
+
+    /**
+     * Test that putIfAbsent and computeIfPresent, on the buckets that a
+     * snapshot shares, change the map but not the snapshot.
+     */
+    @Test
+    public final void testFusedMethodsAfterSnapshot() {
+        final int pairs = 100;
+        Map4<String, String> s = new Map4<String, String>();
+        Map<String, String> sExpected = this.constructorRef();
+        for (int i = 0; i < pairs; i++) {
+            s.add("key" + i, "value" + i);
+            sExpected.add("key" + i, "value" + i);
+        }
+
+        Iterable<Map.Pair<String, String>> snapshot = s.snapshot();
+        for (int i = 0; i < pairs; i++) {
+            if (i % 3 == 0) {
+                assertNull(s.computeIfPresent("key" + i, (k, v) -> null));
+            } else {
+                assertEquals("value" + i + "!",
+                        s.computeIfPresent("key" + i, (k, v) -> v + "!"));
+            }
+            assertNull(s.putIfAbsent("new" + i, "x"));
+        }
+
+        Map<String, String> seen = this.constructorRef();
+        for (Map.Pair<String, String> p : snapshot) {
+            seen.add(p.key(), p.value());
+        }
+        assertEquals(sExpected, seen);
+        assertEquals(pairs - (pairs + 2) / 3 + pairs, s.size());
+        assertFalse(s.hasKey("key0"));
+        assertEquals("value1!", s.value("key1"));
+        assertEquals("x", s.value("new0"));
+    }
+
+    /**
+     * Test that a snapshot keeps the pairs it was taken with while the map
+     * is updated, grown, and shrunk.
+     */
+    @Test
+    public final void testSnapshot() {
+        final int pairs = 500;
+        Map4<String, String> s = new Map4<String, String>();
+        Map<String, String> sExpected = this.constructorRef();
+        for (int i = 0; i < pairs; i++) {
+            s.add("key" + i, "value" + i);
+            sExpected.add("key" + i, "value" + i);
+        }
+
+        Iterable<Map.Pair<String, String>> snapshot = s.snapshot();
+        for (int i = 0; i < pairs; i += 2) {
+            s.remove("key" + i);
+        }
+        s.merge("key1", "!", String::concat);
+        for (int i = pairs; i < 2 * pairs; i++) {
+            s.add("key" + i, "value" + i);
+        }
+
+        Map<String, String> seen = this.constructorRef();
+        for (Map.Pair<String, String> p : snapshot) {
+            seen.add(p.key(), p.value());
+        }
+        assertEquals(sExpected, seen);
+        assertEquals("value1!", s.value("key1"));
+        assertFalse(s.hasKey("key0"));
+        assertEquals(pairs / 2 + pairs, s.size());
+    }
+
+    /**
+     * Test that clear and transferFrom keep the configured table size.
+     */
+    @Test
+    public final void testClearKeepsTableSize() {
+        final int tableSize = 1009;
+        Map4<String, String> s = new Map4<String, String>(tableSize);
+        s.add("Jack", "50");
+        Map4<String, String> t = new Map4<String, String>();
+
+        s.clear();
+        assertEquals(tableSize, s.bucketStats().buckets());
+        s.add("Jack", "50");
+        t.transferFrom(s);
+
+        assertEquals(tableSize, s.bucketStats().buckets());
+        assertEquals(0, s.size());
+        assertEquals("50", t.value("Jack"));
+    }
+
+    /**
+     * Test for clearing and refilling a map that retains its storage, with a
+     * snapshot taken before one of the clears. The first clear, which follows
+     * the snapshot, and the adds after it, which grow the new table, may
+     * create buckets; once the table has stopped growing, each round must
+     * reuse the buckets of the round before.
+     */
+    @Test
+    public final void testRetainStorage() {
+        final int pairs = 1000;
+        final int rounds = 4;
+        final int steadyRound = 2;
+        Map4<String, String> s = new Map4<String, String>();
+        s.setRetainStorage(true);
+        int buckets = 0;
+        Object[] kept = null;
+        Iterable<Map.Pair<String, String>> snapshot = null;
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < pairs; i++) {
+                s.add("key" + i, "value" + r);
+            }
+            if (r == 0) {
+                buckets = s.bucketStats().buckets();
+                kept = new Object[buckets];
+                snapshot = s.snapshot();
+            }
+            assertEquals(buckets, s.bucketStats().buckets());
+            for (int i = 0; i < buckets; i++) {
+                if (r > steadyRound) {
+                    assertSame(kept[i], s.bucketAt(i));
+                }
+                kept[i] = s.bucketAt(i);
+            }
+            assertEquals("value" + r, s.value("key" + (pairs - 1)));
+            s.clear();
+            assertEquals(0, s.size());
+            assertFalse(s.hasKey("key0"));
+        }
+
+        int count = 0;
+        for (Map.Pair<String, String> p : snapshot) {
+            assertEquals("value0", p.value());
+            count++;
+        }
+        assertEquals(pairs, count);
+    }
+
+    /**
+     * Test for adds through several resizes, with lookups, removes, and
+     * removeAny calls made while each resize is still migrating buckets.
+     */
+    @Test
+    public final void testIncrementalGrowth() {
+        final int pairs = 5000;
+        final int tableSize = 7;
+        final int removeEvery = 5;
+        final int removeAnyEvery = 11;
+        Map4<Integer, Integer> s = new Map4<Integer, Integer>(tableSize, 0.75);
+        Map<Integer, Integer> sExpected = new Map1L<Integer, Integer>();
+
+        for (int i = 0; i < pairs; i++) {
+            s.add(i, -i);
+            sExpected.add(i, -i);
+            int earlier = i / 2;
+            assertEquals(sExpected.hasKey(earlier), s.hasKey(earlier));
+            if (sExpected.hasKey(earlier)) {
+                assertEquals(sExpected.value(earlier), s.value(earlier));
+                if (i % removeEvery == 0) {
+                    assertEquals(sExpected.remove(earlier), s.remove(earlier));
+                }
+            }
+            if (i % removeAnyEvery == 0 && s.size() > 0) {
+                Map.Pair<Integer, Integer> p = s.removeAny();
+                assertEquals(sExpected.remove(p.key()).value(), p.value());
+            }
+        }
+
+        assertEquals(sExpected, s);
+        int buckets = s.bucketStats().buckets();
+        assertTrue(buckets > tableSize);
+        assertTrue(s.size() <= 0.75 * buckets);
+    }
+
+    /**
+     * Test that removing most of the pairs shrinks the table back to its
+     * configured size, with lookups made while it shrinks.
+     */
+    @Test
+    public final void testShrinkAfterBulkDelete() {
+        final int pairs = 10000;
+        final int kept = 10;
+        final int tableSize = 101;
+        Map4<Integer, Integer> s = new Map4<Integer, Integer>(tableSize, 0.75);
+        for (int i = 0; i < pairs; i++) {
+            s.add(i, -i);
+        }
+        assertTrue(s.bucketStats().buckets() * 0.75 >= pairs);
+
+        for (int i = pairs - 1; i >= kept; i--) {
+            assertEquals(Integer.valueOf(-i), s.remove(i).value());
+            assertFalse(s.hasKey(i));
+            assertEquals(Integer.valueOf(-(i - 1)), s.value(i - 1));
+        }
+
+        assertEquals(kept, s.size());
+        assertEquals(tableSize, s.bucketStats().buckets());
+        for (int i = 0; i < kept; i++) {
+            assertEquals(Integer.valueOf(-i), s.value(i));
+        }
+    }
+
+    /**
+     * Test that the table never shrinks below the size it was constructed
+     * with, even when that size is not prime, over rounds of filling and
+     * draining the map.
+     */
+    @Test
+    public final void testTableNeverBelowMinimum() {
+        final int pairs = 3000;
+        final int rounds = 3;
+        final int tableSize = 100;
+        Map4<Integer, Integer> s = new Map4<Integer, Integer>(tableSize, 0.75);
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < pairs; i++) {
+                s.add(i, r);
+            }
+            while (s.size() > 0) {
+                assertEquals(Integer.valueOf(r), s.removeAny().value());
+                assertTrue(s.bucketStats().buckets() >= tableSize);
+            }
+            assertEquals(tableSize, s.bucketStats().buckets());
+        }
+    }
+
 }
@@ -0,0 +1,191 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map5} using default constructor.
+ */
+public class Map5Test extends MapTest {
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map5<String, String>();
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    /**
+     * Key with a chosen hash code, so that tests can make keys collide.
+     */
+    private static final class Key {
+
+        /**
+         * Identity of the key; keys are equal iff their ids are.
+         */
+        private final int id;
+
+        /**
+         * Hash code of the key.
+         */
+        private final int hash;
+
+        /**
+         * Constructor from id and hash code.
+         *
+         * @param id
+         *            the identity of the key
+         * @param hash
+         *            the hash code of the key
+         */
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key) obj).id == this.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public String toString() {
+            return "Key(" + this.id + ", " + this.hash + ")";
+        }
+
+    }
+
+    /**
+     * Returns a hash code whose home slot is the last slot of every table of
+     * at most {@code capacity} slots, so that the probe runs of keys with it
+     * wrap around to the start of the table.
+     *
+     * @param capacity
+     *            the largest capacity, a power of 2
+     * @return a hash code homed at slot capacity - 1
+     */
+    private static int lastSlotHash(int capacity) {
+        int h = 0;
+        while ((HashSpreader.FXHASH.spread(h) & (capacity - 1)) != capacity
+                - 1) {
+            h++;
+        }
+        return h;
+    }
+
+    /**
+     * Checks that {@code m} and {@code expected} hold the same pairs, looking
+     * up every key of each in the other.
+     *
+     * @param expected
+     *            the reference map
+     * @param m
+     *            the map under test
+     */
+    private static void assertSamePairs(Map<Key, Integer> expected,
+            Map<Key, Integer> m) {
+        assertEquals(expected.size(), m.size());
+        for (Map.Pair<Key, Integer> p : expected) {
+            assertTrue(m.hasKey(p.key()));
+            assertEquals(p.value(), m.value(p.key()));
+        }
+        int count = 0;
+        for (Map.Pair<Key, Integer> p : m) {
+            assertEquals(expected.value(p.key()), p.value());
+            count++;
+        }
+        assertEquals(expected.size(), count);
+    }
+
+    /**
+     * Test for a probe run that wraps around the end of the table, with
+     * removals from its start, middle, and end.
+     */
+    @Test
+    public final void testWrapAroundRun() {
+        final int keys = 10;
+        int hash = lastSlotHash(Short.MAX_VALUE + 1);
+        Map5<Key, Integer> m = new Map5<Key, Integer>();
+        Map<Key, Integer> mExpected = new Map1L<Key, Integer>();
+        for (int i = 0; i < keys; i++) {
+            m.add(new Key(i, hash), i);
+            mExpected.add(new Key(i, hash), i);
+        }
+        /*
+         * A key homed at slot 0, inside the wrapped run, must stay findable
+         * as the run shifts back over it.
+         */
+        m.add(new Key(keys, 0), keys);
+        mExpected.add(new Key(keys, 0), keys);
+
+        for (int i : new int[] { 0, keys / 2, keys - 1 }) {
+            assertEquals(Integer.valueOf(i),
+                    m.remove(new Key(i, hash)).value());
+            mExpected.remove(new Key(i, hash));
+            assertSamePairs(mExpected, m);
+        }
+        assertFalse(m.hasKey(new Key(0, hash)));
+    }
+
+    /**
+     * Test for many random adds, removes, and lookups, through several
+     * resizes, with clustered keys, keys whose runs wrap around, and
+     * well-spread keys, against a reference map.
+     */
+    @Test
+    public final void testRandomAgainstReference() {
+        final int universe = 3000;
+        final int operations = 100000;
+        final int clusters = 8;
+        final int checkEvery = 10000;
+        final Random random = new Random(1L);
+        int hash = lastSlotHash(Short.MAX_VALUE + 1);
+        Map5<Key, Integer> m = new Map5<Key, Integer>();
+        Map<Key, Integer> mExpected = new Map1L<Key, Integer>();
+
+        for (int op = 1; op <= operations; op++) {
+            int id = random.nextInt(universe);
+            Key k;
+            if (id % 3 == 0) {
+                k = new Key(id, hash);
+            } else if (id % 3 == 1) {
+                k = new Key(id, id % clusters);
+            } else {
+                k = new Key(id, id * 31);
+            }
+            assertEquals(mExpected.hasKey(k), m.hasKey(k));
+            if (op % 7 == 0 && m.size() > 0) {
+                Map.Pair<Key, Integer> p = m.removeAny();
+                assertEquals(mExpected.remove(p.key()).value(), p.value());
+            } else if (mExpected.hasKey(k)) {
+                assertEquals(mExpected.remove(k).value(), m.remove(k).value());
+            } else {
+                m.add(k, op);
+                mExpected.add(k, op);
+            }
+            if (op % checkEvery == 0) {
+                assertSamePairs(mExpected, m);
+            }
+        }
+        while (m.size() > 0) {
+            Map.Pair<Key, Integer> p = m.removeAny();
+            assertEquals(mExpected.remove(p.key()).value(), p.value());
+        }
+        assertEquals(0, mExpected.size());
+    }
+
+}
@@ -0,0 +1,142 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import components.map.Map;
+import components.map.Map.Pair;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code MappedMap4}'s {@code write}, {@code open}, and
+ * read-only kernel methods.
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public class MappedMap4Test {
+
+    /**
+     * Folder for the files written by the tests.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Writes {@code m} to a new file and maps it again.
+     *
+     * @param m
+     *            the map to write
+     * @return the mapped copy of m
+     * @throws IOException
+     *             if the file cannot be written or mapped
+     * @ensures writeAndOpen = m
+     */
+    private MappedMap4 writeAndOpen(Map<String, String> m) throws IOException {
+        Path path = this.folder.newFile().toPath();
+        MappedMap4.write(path, m);
+        return MappedMap4.open(path);
+    }
+
+    /**
+     * Test for an empty map.
+     */
+    @Test
+    public final void testEmpty() throws IOException {
+        Map<String, String> m = new Map1L<String, String>();
+
+        MappedMap4 s = this.writeAndOpen(m);
+
+        assertEquals(0, s.size());
+        assertFalse(s.hasKey("Jack"));
+        assertFalse(s.iterator().hasNext());
+    }
+
+    /**
+     * Test for hasKey and value.
+     */
+    @Test
+    public final void testHasKeyAndValue() throws IOException {
+        Map<String, String> m = new Map1L<String, String>();
+        m.add("Jack", "50");
+        m.add("computer", "now");
+        m.add("", "empty key");
+        m.add("Ohio State", "");
+
+        MappedMap4 s = this.writeAndOpen(m);
+
+        assertEquals(4, s.size());
+        assertTrue(s.hasKey("computer"));
+        assertFalse(s.hasKey("Computer"));
+        assertEquals("50", s.value("Jack"));
+        assertEquals("empty key", s.value(""));
+        assertEquals("", s.value("Ohio State"));
+    }
+
+    /**
+     * Test for non-ASCII keys and values.
+     */
+    @Test
+    public final void testUnicode() throws IOException {
+        Map<String, String> m = new Map1L<String, String>();
+        m.add("caf\u00E9", "\u2615");
+        m.add("\u65E5\u672C", "Japan");
+
+        MappedMap4 s = this.writeAndOpen(m);
+
+        assertEquals("\u2615", s.value("caf\u00E9"));
+        assertEquals("Japan", s.value("\u65E5\u672C"));
+        assertFalse(s.hasKey("cafe"));
+    }
+
+    /**
+     * Test that iteration returns every entry, with many entries.
+     */
+    @Test
+    public final void testLarge() throws IOException {
+        final int pairs = 5000;
+        Map<String, String> m = new Map4<String, String>();
+        for (int i = 0; i < pairs; i++) {
+            m.add("key" + i, "value" + i);
+        }
+
+        MappedMap4 s = this.writeAndOpen(m);
+
+        int count = 0;
+        for (Pair<String, String> p : s) {
+            assertEquals(m.value(p.key()), p.value());
+            count++;
+        }
+        assertEquals(pairs, count);
+        assertEquals(m, s);
+    }
+
+    /**
+     * Test that a file not written by write is rejected.
+     */
+    @Test(expected = IOException.class)
+    public final void testOpenNotMapped() throws IOException {
+        Path path = this.folder.newFile().toPath();
+        Files.write(path, "not a table".getBytes("UTF-8"));
+
+        MappedMap4.open(path);
+    }
+
+    /**
+     * Test that mutators are not supported.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public final void testAddUnsupported() throws IOException {
+        MappedMap4 s = this.writeAndOpen(new Map1L<String, String>());
+
+        s.add("Jack", "50");
+    }
+
+}
@@ -0,0 +1,97 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code StringIntHashMap} and its
+ * {@code Map<String, Integer>} view.
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public class StringIntHashMapTest {
+
+    /**
+     * Test for increment of new and existing keys.
+     */
+    @Test
+    public final void testIncrement() {
+        StringIntHashMap s = new StringIntHashMap();
+
+        assertEquals(1, s.increment("Tej", 1));
+        assertEquals(4, s.increment("Tej", 3));
+        assertEquals(-2, s.increment("Jack", -2));
+
+        assertEquals(2, s.size());
+        assertEquals(4, s.value("Tej"));
+        assertEquals(Integer.valueOf(-2), s.asMap().value("Jack"));
+    }
+
+    /**
+     * Test for counting enough words to make the table grow, then draining
+     * the view with removeAny.
+     */
+    @Test
+    public final void testCountAndDrain() {
+        final int words = 1000;
+        final int repeats = 3;
+        StringIntHashMap s = new StringIntHashMap(1);
+        for (int r = 0; r < repeats; r++) {
+            for (int i = 0; i < words; i++) {
+                s.increment("word" + i, 1);
+            }
+        }
+
+        assertEquals(words, s.size());
+        Map<String, Integer> view = s.asMap();
+        int total = 0;
+        while (view.size() > 0) {
+            Map.Pair<String, Integer> p = view.removeAny();
+            assertFalse(s.hasKey(p.key()));
+            total += p.value();
+        }
+        assertEquals(words * repeats, total);
+    }
+
+    /**
+     * Test that the view matches a reference map through add and remove.
+     */
+    @Test
+    public final void testViewAddRemove() {
+        StringIntHashMap s = new StringIntHashMap();
+        Map<String, Integer> view = s.asMap();
+        Map<String, Integer> sExpected = new Map1L<String, Integer>();
+        sExpected.add("computer", 7);
+
+        view.add("Jack", 50);
+        s.add("computer", 7);
+        Map.Pair<String, Integer> removed = view.remove("Jack");
+
+        assertEquals("Jack", removed.key());
+        assertEquals(Integer.valueOf(50), removed.value());
+        assertEquals(sExpected, view);
+        assertEquals(1, s.size());
+    }
+
+    /**
+     * Test for transferFrom between views.
+     */
+    @Test
+    public final void testViewTransferFrom() {
+        StringIntHashMap source = new StringIntHashMap();
+        source.increment("school", 2);
+        StringIntHashMap s = new StringIntHashMap();
+        s.increment("Tej", 1);
+
+        s.asMap().transferFrom(source.asMap());
+
+        assertEquals(0, source.size());
+        assertFalse(s.hasKey("Tej"));
+        assertEquals(2, s.value("school"));
+    }
+
+}
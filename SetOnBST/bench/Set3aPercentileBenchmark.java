@@ -0,0 +1,187 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Compares two ways of reporting percentiles of a growing collection of
+ * samples: keeping the samples in a {@code Set3a} and calling {@code select},
+ * and copying them into an array that is sorted and indexed each time the
+ * percentiles are wanted.
+ *
+ * <p>
+ * The samples are distinct, randomly ordered integers, since a {@code Set}
+ * holds no duplicates and random order keeps the unbalanced tree shallow.
+ * They arrive in {@code ROUNDS} batches, and after each batch the percentiles
+ * in {@code PERCENTILES} are reported.
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public final class Set3aPercentileBenchmark {
+
+    /**
+     * Numbers of samples.
+     */
+    private static final int[] SAMPLE_COUNTS = { 10_000, 100_000, 1_000_000 };
+
+    /**
+     * Number of batches in which the samples arrive.
+     */
+    private static final int ROUNDS = 100;
+
+    /**
+     * Percentiles reported after each batch, in tenths of a percent.
+     */
+    private static final int[] PERCENTILES = { 500, 900, 990, 999 };
+
+    /**
+     * Tenths of a percent in the whole.
+     */
+    private static final int WHOLE = 1000;
+
+    /**
+     * Seed of the random sample order.
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Sink for checksums, so the measured loops cannot be optimized away.
+     */
+    private static volatile long sink;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private Set3aPercentileBenchmark() {
+    }
+
+    /**
+     * Returns the integers 0 through {@code n - 1} in random order.
+     *
+     * @param n
+     *            the number of samples
+     * @return the samples
+     * @requires n >= 0
+     * @ensures [samples is a permutation of 0 through n - 1]
+     */
+    private static int[] samples(int n) {
+        int[] samples = new int[n];
+        for (int i = 0; i < n; i++) {
+            samples[i] = i;
+        }
+        Random random = new Random(SEED);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = samples[i];
+            samples[i] = samples[j];
+            samples[j] = tmp;
+        }
+        return samples;
+    }
+
+    /**
+     * Returns the index of the percentile {@code p} among {@code size}
+     * sorted samples.
+     *
+     * @param p
+     *            the percentile, in tenths of a percent
+     * @param size
+     *            the number of samples
+     * @return the index of the percentile
+     * @requires 0 <= p < WHOLE and size > 0
+     * @ensures index = floor(size * p / WHOLE)
+     */
+    private static int index(int p, int size) {
+        return (int) ((long) size * p / WHOLE);
+    }
+
+    /**
+     * Adds {@code samples} to a {@code Set3a} in batches, selecting the
+     * percentiles after each, and returns a checksum of the percentiles.
+     *
+     * @param samples
+     *            the samples
+     * @return the sum of the reported percentiles
+     */
+    private static long withSelect(int[] samples) {
+        Set3a<Integer> set = new Set3a<>();
+        int batch = samples.length / ROUNDS;
+        long checksum = 0;
+        for (int i = 0; i < samples.length; i++) {
+            set.add(samples[i]);
+            if ((i + 1) % batch == 0) {
+                for (int p : PERCENTILES) {
+                    checksum += set.select(index(p, set.size()));
+                }
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Adds {@code samples} to an array in batches, sorting a copy of it and
+     * indexing the percentiles after each, and returns a checksum of the
+     * percentiles.
+     *
+     * @param samples
+     *            the samples
+     * @return the sum of the reported percentiles
+     */
+    private static long withSort(int[] samples) {
+        int[] seen = new int[samples.length];
+        int batch = samples.length / ROUNDS;
+        long checksum = 0;
+        for (int i = 0; i < samples.length; i++) {
+            seen[i] = samples[i];
+            if ((i + 1) % batch == 0) {
+                int[] sorted = Arrays.copyOf(seen, i + 1);
+                Arrays.sort(sorted);
+                for (int p : PERCENTILES) {
+                    checksum += sorted[index(p, sorted.length)];
+                }
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; unused here
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+
+        out.println("time to add the samples in " + ROUNDS
+                + " batches and report " + PERCENTILES.length
+                + " percentiles after each");
+        out.println("samples    Set3a.select (ms)    sort and index (ms)");
+        for (int n : SAMPLE_COUNTS) {
+            int[] samples = samples(n);
+
+            long start = System.nanoTime();
+            long selectSum = withSelect(samples);
+            long selectTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long sortSum = withSort(samples);
+            long sortTime = System.nanoTime() - start;
+
+            assert selectSum == sortSum : "percentiles differ";
+            sink = selectSum;
+            out.println(String.format("%7d    %17.2f    %19.2f", n,
+                    selectTime / NANOS_PER_MILLI, sortTime / NANOS_PER_MILLI));
+        }
+
+        out.close();
+    }
+
+}
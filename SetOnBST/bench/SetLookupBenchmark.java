@@ -0,0 +1,182 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import components.set.Set;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Measures the throughput of {@code contains} on the ordered {@code Set}
+ * implementations: {@code Set3a} (built balanced with {@code fromSorted}, so
+ * its height is the best a binary search tree can have), the AVL tree
+ * {@code Set4}, and the B-tree {@code Set5}, for sets of {@code Integer}s
+ * from 10^3 elements up to the optional argument (10^6 by default). Half of
+ * the lookups are for elements in the set and half for elements not in it,
+ * in random order, so successive lookups rarely share cached nodes. Each
+ * measurement is the best of {@code REPEATS} runs.
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public final class SetLookupBenchmark {
+
+    /**
+     * Default largest number of elements.
+     */
+    private static final int DEFAULT_MAXIMUM_ELEMENTS = 1_000_000;
+
+    /**
+     * Smallest number of elements; each further count is 10 times the
+     * previous.
+     */
+    private static final int MINIMUM_ELEMENTS = 1_000;
+
+    /**
+     * Factor between successive element counts.
+     */
+    private static final int ELEMENT_COUNT_STEP = 10;
+
+    /**
+     * Number of lookups per measurement.
+     */
+    private static final int LOOKUPS = 1_000_000;
+
+    /**
+     * Number of times each measurement is repeated; the fastest is reported.
+     */
+    private static final int REPEATS = 5;
+
+    /**
+     * Seed of the random lookup order.
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Nanoseconds per microsecond; operations per microsecond are millions of
+     * operations per second.
+     */
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    /**
+     * Sink for results, so the measured loops cannot be optimized away.
+     */
+    private static volatile int sink;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SetLookupBenchmark() {
+    }
+
+    /**
+     * Returns {@code LOOKUPS} random lookup keys, half of them even numbers
+     * below {@code 2 * n}, which are in the set, and half odd, which are not.
+     *
+     * @param n
+     *            the number of elements in the set
+     * @return the lookup keys
+     * @requires n > 0
+     * @ensures |keys| = LOOKUPS
+     */
+    private static Integer[] keys(int n) {
+        Random random = new Random(SEED);
+        Integer[] keys = new Integer[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            keys[i] = 2 * random.nextInt(n) + (i % 2);
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the best time, in nanoseconds, to look up all {@code keys} in
+     * {@code set}.
+     *
+     * @param set
+     *            the set to search
+     * @param keys
+     *            the keys to look up
+     * @return the best time of REPEATS runs
+     */
+    private static long time(Set<Integer> set, Integer[] keys) {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < REPEATS; r++) {
+            int found = 0;
+            long start = System.nanoTime();
+            for (Integer key : keys) {
+                if (set.contains(key)) {
+                    found++;
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+            sink = found;
+        }
+        return best;
+    }
+
+    /**
+     * Returns a {@code Set} of the implementation built by {@code empty}
+     * holding {@code elements}, added one at a time.
+     *
+     * @param empty
+     *            the set to fill
+     * @param elements
+     *            the elements
+     * @return empty, holding elements
+     * @updates empty
+     * @requires empty = {} and [elements are distinct]
+     * @ensures fill = elements
+     */
+    private static Set<Integer> fill(Set<Integer> empty, Integer[] elements) {
+        for (Integer x : elements) {
+            empty.add(x);
+        }
+        return empty;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; the optional first argument is
+     *            the largest number of elements
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        int maximum = DEFAULT_MAXIMUM_ELEMENTS;
+        if (args.length > 0) {
+            maximum = Integer.parseInt(args[0]);
+        }
+
+        List<String> names = Arrays.asList("Set3a", "Set4", "Set5");
+        List<Function<Integer[], Set<Integer>>> builders = Arrays.asList(
+                elements -> Set3a.fromSorted(elements),
+                elements -> fill(new Set4<Integer>(), elements),
+                elements -> fill(new Set5<Integer>(), elements));
+
+        out.println("contains, million operations per second");
+        out.print(String.format("%9s", "elements"));
+        for (String name : names) {
+            out.print(String.format("%10s", name));
+        }
+        out.println();
+        for (int n = MINIMUM_ELEMENTS; n <= maximum; n *= ELEMENT_COUNT_STEP) {
+            Integer[] elements = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                elements[i] = 2 * i;
+            }
+            Integer[] keys = keys(n);
+            out.print(String.format("%9d", n));
+            for (Function<Integer[], Set<Integer>> builder : builders) {
+                long nanos = time(builder.apply(elements), keys);
+                out.print(String.format("%10.1f",
+                        LOOKUPS * NANOS_PER_MICRO / nanos));
+            }
+            out.println();
+        }
+
+        out.close();
+    }
+
+}
@@ -0,0 +1,527 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a persistent AVL tree of immutable nodes, with
+ * implementations of primary methods, for one thread updating the set while
+ * any number of others read it.
+ *
+ * <p>
+ * Nodes are never changed once built: {@code add} and {@code remove} build
+ * new copies of the O(log n) nodes on the path to the change, share every
+ * other subtree with the previous tree, and then publish the new root by
+ * writing it to a {@code volatile} field. A reader that reads the root once
+ * therefore sees one complete version of the set, without locking, however
+ * the writer proceeds. {@code contains}, {@code size}, and {@code iterator}
+ * each read the root once, and {@code snapshot} returns in O(1) time a new
+ * set that shares the current version. Kernel methods that change
+ * {@code this}, and the standard methods, must be called by one thread at a
+ * time.
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions <pre>
+ * IS_AVL(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  [tree satisfies the binary search tree properties as described in the
+ *   slides with the ordering reported by compareTo for T, including that
+ *   it has no duplicate labels]  and
+ *  [for every subtree of tree, the heights of its left and right subtrees
+ *   differ by at most 1]
+ * </pre>
+ * @convention <pre>
+ * IS_AVL([the tree of nodes rooted at $this.root])  and
+ * [the height and size fields of every node are the height and the number
+ *  of nodes of the subtree rooted at that node]
+ * </pre>
+ * @correspondence this = labels([the tree of nodes rooted at $this.root])
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public class PersistentSet4<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Immutable node of the tree.
+     *
+     * @param <T>
+     *            type of labels
+     */
+    private static final class Node<T> {
+
+        /**
+         * The label.
+         */
+        private final T label;
+
+        /**
+         * Root of the left subtree, or {@code null} if it is empty.
+         */
+        private final Node<T> left;
+
+        /**
+         * Root of the right subtree, or {@code null} if it is empty.
+         */
+        private final Node<T> right;
+
+        /**
+         * Height of the subtree rooted at this node.
+         */
+        private final int height;
+
+        /**
+         * Number of nodes in the subtree rooted at this node.
+         */
+        private final int size;
+
+        /**
+         * Constructor from a label and subtrees.
+         *
+         * @param label
+         *            the label
+         * @param left
+         *            the left subtree, or null
+         * @param right
+         *            the right subtree, or null
+         */
+        Node(T label, Node<T> left, Node<T> right) {
+            this.label = label;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+
+    }
+
+    /**
+     * Root of the current version of the tree, or {@code null} if it is
+     * empty.
+     */
+    private volatile Node<T> root;
+
+    /**
+     * Returns the height of the subtree rooted at {@code n}.
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the subtree, or null
+     * @return the height of the subtree
+     * @ensures height = [height of the subtree rooted at n]
+     */
+    private static <T> int height(Node<T> n) {
+        int height = 0;
+        if (n != null) {
+            height = n.height;
+        }
+        return height;
+    }
+
+    /**
+     * Returns the number of nodes in the subtree rooted at {@code n}.
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the subtree, or null
+     * @return the size of the subtree
+     * @ensures size = [number of nodes in the subtree rooted at n]
+     */
+    private static <T> int size(Node<T> n) {
+        int size = 0;
+        if (n != null) {
+            size = n.size;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the root of a new AVL tree with root label {@code label}, and
+     * the labels of {@code left} and {@code right} on either side, making at
+     * most one single or double rotation at the new root. The subtrees are
+     * shared, not copied, except for the nodes that a rotation moves.
+     *
+     * @param <T>
+     *            type of labels
+     * @param label
+     *            the label between the two subtrees
+     * @param left
+     *            the left subtree, or null
+     * @param right
+     *            the right subtree, or null
+     * @return the root of the new tree
+     * @requires <pre>
+     * IS_AVL(left)  and  IS_AVL(right)  and
+     * [every label of left < label < every label of right]  and
+     * |height(left) - height(right)| <= 2
+     * </pre>
+     * @ensures <pre>
+     * IS_AVL(balance)  and
+     * labels(balance) = labels(left) union {label} union labels(right)
+     * </pre>
+     */
+    private static <T> Node<T> balance(T label, Node<T> left,
+            Node<T> right) {
+        Node<T> result;
+        if (height(left) > height(right) + 1) {
+            if (height(left.left) >= height(left.right)) {
+                result = new Node<T>(left.label, left.left,
+                        new Node<T>(label, left.right, right));
+            } else {
+                Node<T> pivot = left.right;
+                result = new Node<T>(pivot.label,
+                        new Node<T>(left.label, left.left, pivot.left),
+                        new Node<T>(label, pivot.right, right));
+            }
+        } else if (height(right) > height(left) + 1) {
+            if (height(right.right) >= height(right.left)) {
+                result = new Node<T>(right.label,
+                        new Node<T>(label, left, right.left), right.right);
+            } else {
+                Node<T> pivot = right.left;
+                result = new Node<T>(pivot.label,
+                        new Node<T>(label, left, pivot.left),
+                        new Node<T>(right.label, pivot.right, right.right));
+            }
+        } else {
+            result = new Node<T>(label, left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the root of a new tree holding the labels of the tree rooted at
+     * {@code n} and {@code x}, which shares all but O(log n) nodes with it.
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the tree, or null
+     * @param x
+     *            the label to be inserted
+     * @return the root of the new tree
+     * @aliases reference {@code x}
+     * @requires IS_AVL(n) and x is not in labels(n)
+     * @ensures <pre>
+     * IS_AVL(insert)  and  labels(insert) = labels(n) union {x}
+     * </pre>
+     */
+    private static <T extends Comparable<T>> Node<T> insert(Node<T> n, T x) {
+        Node<T> result;
+        if (n == null) {
+            result = new Node<T>(x, null, null);
+        } else if (x.compareTo(n.label) < 0) {
+            result = balance(n.label, insert(n.left, x), n.right);
+        } else {
+            result = balance(n.label, n.left, insert(n.right, x));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the root of a new tree holding the labels of the tree rooted at
+     * {@code n} but its smallest, which is reported in {@code removed[0]}.
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the tree
+     * @param removed
+     *            holder for the removed label
+     * @return the root of the new tree
+     * @updates removed
+     * @requires IS_AVL(n) and n /= null and |removed| >= 1
+     * @ensures <pre>
+     * removed[0] = [the smallest label in n]  and
+     * IS_AVL(removeSmallest)  and
+     * labels(removeSmallest) = labels(n) \ {removed[0]}
+     * </pre>
+     */
+    private static <T> Node<T> removeSmallest(Node<T> n, Object[] removed) {
+        Node<T> result;
+        if (n.left == null) {
+            removed[0] = n.label;
+            result = n.right;
+        } else {
+            result = balance(n.label, removeSmallest(n.left, removed),
+                    n.right);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the root of a new tree holding the labels of the tree rooted at
+     * {@code n} but the one equal to {@code x}, which is reported in
+     * {@code removed[0]}.
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the tree
+     * @param x
+     *            the label to be removed
+     * @param removed
+     *            holder for the removed label
+     * @return the root of the new tree
+     * @updates removed
+     * @requires IS_AVL(n) and x is in labels(n) and |removed| >= 1
+     * @ensures <pre>
+     * removed[0] = x  and  IS_AVL(remove)  and
+     * labels(remove) = labels(n) \ {x}
+     * </pre>
+     */
+    private static <T extends Comparable<T>> Node<T> remove(Node<T> n, T x,
+            Object[] removed) {
+        Node<T> result;
+        int cmp = x.compareTo(n.label);
+        if (cmp < 0) {
+            result = balance(n.label, remove(n.left, x, removed), n.right);
+        } else if (cmp > 0) {
+            result = balance(n.label, n.left, remove(n.right, x, removed));
+        } else {
+            removed[0] = n.label;
+            if (n.right == null) {
+                result = n.left;
+            } else {
+                /*
+                 * Replace the label of n with that of its successor, the
+                 * smallest in its right subtree.
+                 */
+                Object[] successor = new Object[1];
+                Node<T> right = removeSmallest(n.right, successor);
+                @SuppressWarnings("unchecked")
+                T successorLabel = (T) successor[0];
+                result = balance(successorLabel, n.left, right);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+
+        this.root = null;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public PersistentSet4() {
+
+        this.createNewRep();
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof PersistentSet4<?> : ""
+                + "Violation of: source is of dynamic type PersistentSet4<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * PersistentSet4<?>, and the ? must be T or the call would not have
+         * compiled.
+         */
+        PersistentSet4<T> localSource = (PersistentSet4<T>) source;
+        this.root = localSource.root;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        this.root = insert(this.root, x);
+
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        Object[] removed = new Object[1];
+        this.root = remove(this.root, x, removed);
+        return (T) removed[0];
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        Object[] removed = new Object[1];
+        this.root = removeSmallest(this.root, removed);
+        return (T) removed[0];
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        Node<T> n = this.root;
+        int cmp = 1;
+        while (n != null && cmp != 0) {
+            cmp = x.compareTo(n.label);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0) {
+                n = n.right;
+            }
+        }
+        return n != null;
+    }
+
+    @Override
+    public final int size() {
+
+        return size(this.root);
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new PersistentSet4Iterator(this.root);
+    }
+
+    /*
+     * Snapshot methods -------------------------------------------------------
+     */
+
+    /**
+     * Returns a new set holding the current elements of {@code this}, in O(1)
+     * time, by sharing the current version of the tree. Later changes to
+     * either set do not affect the other. May be called by any thread while
+     * another is changing {@code this}.
+     *
+     * @return a set equal to this
+     * @ensures snapshot = this
+     */
+    @SuppressWarnings("unchecked")
+    public final PersistentSet4<T> snapshot() {
+        PersistentSet4<T> snapshot = (PersistentSet4<T>) this.newInstance();
+        snapshot.root = this.root;
+        return snapshot;
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code PersistentSet4},
+     * visiting in order the labels of one version of the tree.
+     */
+    private final class PersistentSet4Iterator implements Iterator<T> {
+
+        /**
+         * Nodes whose labels and right subtrees are still to be visited, the
+         * next one on top; at most the height of the tree.
+         */
+        private final Node<T>[] stack;
+
+        /**
+         * Number of nodes in {@code stack}.
+         */
+        private int depth;
+
+        /**
+         * Constructor for the version of the tree rooted at {@code root}.
+         *
+         * @param root
+         *            the root of the version to visit, or null
+         */
+        @SuppressWarnings("unchecked")
+        PersistentSet4Iterator(Node<T> root) {
+            this.stack = new Node[height(root)];
+            this.depth = 0;
+            this.pushLeftSpine(root);
+        }
+
+        /**
+         * Pushes {@code n} and its chain of left descendants on
+         * {@code stack}.
+         *
+         * @param n
+         *            the first node to push, or null
+         */
+        private void pushLeftSpine(Node<T> n) {
+            Node<T> p = n;
+            while (p != null) {
+                this.stack[this.depth] = p;
+                this.depth++;
+                p = p.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.depth > 0;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.depth--;
+            Node<T> n = this.stack[this.depth];
+            this.stack[this.depth] = null;
+            this.pushLeftSpine(n.right);
+            return n.label;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
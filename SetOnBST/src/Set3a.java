@@ -1,13 +1,22 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
 
-import components.binarytree.BinaryTree;
-import components.binarytree.BinaryTree1;
 import components.set.Set;
 import components.set.SetSecondary;
 
 /**
- * {@code Set} represented as a {@code BinaryTree} (maintained as a binary
- * search tree) of elements with implementations of primary methods.
+ * {@code Set} represented as a binary search tree of linked nodes with
+ * implementations of primary methods. Searching the tree walks it iteratively
+ * and never changes it, so {@code contains} allocates nothing and may be
+ * called by several threads at once as long as none changes {@code this}.
+ * Every node also records the size of its subtree, so the rank of an element
+ * and the element of a given rank can be found in time proportional to the
+ * height of the tree.
  *
  * @param <T>
  *            type of {@code Set} elements
@@ -19,8 +28,12 @@ import components.set.SetSecondary;
  *   slides with the ordering reported by compareTo for T, including that
  *   it has no duplicate labels]
  * </pre>
- * @convention IS_BST($this.tree)
- * @correspondence this = labels($this.tree)
+ * @convention <pre>
+ * IS_BST([the tree of nodes rooted at $this.root])  and
+ * [the size field of every node is the number of nodes in the subtree
+ *  rooted at that node]
+ * </pre>
+ * @correspondence this = labels([the tree of nodes rooted at $this.root])
  *
  * @author Keshab Gautam, Tej Patel
  *
@@ -32,161 +45,301 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
      */
 
     /**
-     * Elements included in {@code this}.
+     * Node of the tree.
+     *
+     * @param <T>
+     *            type of labels
+     */
+    private static final class Node<T> {
+
+        /**
+         * The label.
+         */
+        private T label;
+
+        /**
+         * Root of the left subtree, or {@code null} if it is empty.
+         */
+        private Node<T> left;
+
+        /**
+         * Root of the right subtree, or {@code null} if it is empty.
+         */
+        private Node<T> right;
+
+        /**
+         * Number of nodes in the subtree rooted at this node.
+         */
+        private int size;
+
+        /**
+         * Constructor of a leaf.
+         *
+         * @param label
+         *            the label
+         */
+        Node(T label) {
+            this.label = label;
+            this.left = null;
+            this.right = null;
+            this.size = 1;
+        }
+
+    }
+
+    /**
+     * Root of the tree, or {@code null} if it is empty.
      */
-    private BinaryTree<T> tree;
+    private Node<T> root;
 
     /**
-     * Returns whether {@code x} is in {@code t}.
+     * Returns the number of nodes in the subtree rooted at {@code n}.
      *
      * @param <T>
-     *            type of {@code BinaryTree} labels
-     * @param t
-     *            the {@code BinaryTree} to be searched
-     * @param x
-     *            the label to be searched for
-     * @return true if t contains x, false otherwise
-     * @requires IS_BST(t)
-     * @ensures isInTree = (x is in labels(t))
+     *            type of labels
+     * @param n
+     *            root of the subtree, or null
+     * @return the size of the subtree
+     * @ensures size = [number of nodes in the subtree rooted at n]
      */
-    private static <T extends Comparable<T>> boolean isInTree(BinaryTree<T> t,
-            T x) {
-        assert t != null : "Violation of: t is not null";
-        assert x != null : "Violation of: x is not null";
-
-        BinaryTree<T> left = t.newInstance();
-        BinaryTree<T> right = t.newInstance();
-
-        boolean check = false;
-        if (t.size() > 0) {
-            T root = t.disassemble(left, right);
-            if (x.compareTo(root) > 0) {
-                check = isInTree(right, x);
-            } else if (x.compareTo(root) < 0) {
-                check = isInTree(left, x);
-            } else {
-                check = true;
-            }
-            t.assemble(root, left, right);
+    private static <T> int size(Node<T> n) {
+        int size = 0;
+        if (n != null) {
+            size = n.size;
         }
-        return check;
+        return size;
     }
 
     /**
-     * Inserts {@code x} in {@code t}.
+     * Returns the node of the tree rooted at {@code n} whose label is equal to
+     * {@code x}, or {@code null} if there is none.
      *
      * @param <T>
-     *            type of {@code BinaryTree} labels
-     * @param t
-     *            the {@code BinaryTree} to be searched
+     *            type of labels
+     * @param n
+     *            root of the tree to be searched, or null
      * @param x
-     *            the label to be inserted
-     * @aliases reference {@code x}
-     * @updates t
-     * @requires IS_BST(t) and x is not in labels(t)
-     * @ensures IS_BST(t) and labels(t) = labels(#t) union {x}
+     *            the label to be searched for
+     * @return the node labeled x, or null
+     * @requires IS_BST(n)
+     * @ensures <pre>
+     * if x is in labels(n) then findNode.label = x  else  findNode = null
+     * </pre>
      */
-    private static <T extends Comparable<T>> void insertInTree(BinaryTree<T> t,
+    private static <T extends Comparable<T>> Node<T> findNode(Node<T> n,
             T x) {
-        assert t != null : "Violation of: t is not null";
-        assert x != null : "Violation of: x is not null";
+        Node<T> p = n;
+        int cmp = 1;
+        while (p != null && cmp != 0) {
+            cmp = x.compareTo(p.label);
+            if (cmp < 0) {
+                p = p.left;
+            } else if (cmp > 0) {
+                p = p.right;
+            }
+        }
+        return p;
+    }
 
-        BinaryTree<T> left = t.newInstance();
-        BinaryTree<T> right = t.newInstance();
+    /**
+     * Removes {@code n}, which has at most one child, from the tree by linking
+     * its child (or {@code null}) in its place.
+     *
+     * @param n
+     *            the node to unlink
+     * @param parent
+     *            the parent of n, or null if n is $this.root
+     * @updates $this.root
+     * @requires <pre>
+     * n is in the tree rooted at $this.root  and
+     * (n.left = null  or  n.right = null)
+     * </pre>
+     * @ensures <pre>
+     * [the tree rooted at $this.root is #tree with node n removed and its
+     *  child, if any, in its place]
+     * </pre>
+     */
+    private void splice(Node<T> n, Node<T> parent) {
+        Node<T> child = n.left;
+        if (child == null) {
+            child = n.right;
+        }
+        if (parent == null) {
+            this.root = child;
+        } else if (parent.left == n) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
+    }
 
-        if (t.size() > 0) {
-            T root = t.disassemble(left, right);
+    /**
+     * Returns the labels of the tree rooted at {@code n} in increasing order.
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the tree, or null
+     * @return the labels of the tree, in order
+     * @requires IS_BST(n)
+     * @ensures labels = [the labels of n, in increasing order]
+     */
+    private static <T> Object[] labels(Node<T> n) {
+        return labels(n, new Object[size(n)]);
+    }
 
-            if (x.compareTo(root) > 0) {
-                insertInTree(right, x);
-            } else {
-                insertInTree(left, x);
+    /**
+     * Copies the labels of the tree rooted at {@code n} in increasing order
+     * into {@code labels}, and returns it.
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the tree, or null
+     * @param labels
+     *            the array to fill
+     * @return labels
+     * @updates labels
+     * @requires IS_BST(n) and |labels| = size(n)
+     * @ensures labels = [the labels of n, in increasing order]
+     */
+    private static <T> Object[] labels(Node<T> n, Object[] labels) {
+        Deque<Node<T>> stack = new ArrayDeque<Node<T>>();
+        Node<T> p = n;
+        int i = 0;
+        while (p != null || !stack.isEmpty()) {
+            while (p != null) {
+                stack.push(p);
+                p = p.left;
             }
-            t.assemble(root, left, right);
-        } else {
-            t.assemble(x, left, right);
+            p = stack.pop();
+            labels[i] = p.label;
+            i++;
+            p = p.right;
         }
-
+        return labels;
     }
 
     /**
-     * Removes and returns the smallest (left-most) label in {@code t}.
+     * Builds a perfectly balanced tree of new nodes labeled with
+     * {@code labels[lo..hi)} and returns its root. The recursion is only as
+     * deep as the tree, which is about log2(hi - lo).
      *
      * @param <T>
-     *            type of {@code BinaryTree} labels
-     * @param t
-     *            the {@code BinaryTree} from which to remove the label
-     * @return the smallest label in the given {@code BinaryTree}
-     * @updates t
-     * @requires IS_BST(t) and |t| > 0
+     *            type of labels
+     * @param labels
+     *            the labels
+     * @param lo
+     *            index of the first label
+     * @param hi
+     *            index just past the last label
+     * @return the root of the new tree, or null if lo = hi
+     * @requires <pre>
+     * 0 <= lo <= hi <= |labels|  and
+     * [labels[lo..hi) are of type T and strictly increasing]
+     * </pre>
      * @ensures <pre>
-     * IS_BST(t)  and  removeSmallest = [the smallest label in #t]  and
-     *  labels(t) = labels(#t) \ {removeSmallest}
+     * IS_BST(build)  and  labels(build) = labels[lo..hi)  and
+     * [the heights of the subtrees of every node of build differ by at
+     *  most 1]
      * </pre>
      */
-    private static <T> T removeSmallest(BinaryTree<T> t) {
-        assert t != null : "Violation of: t is not null";
-
-        BinaryTree<T> left = t.newInstance();
-        BinaryTree<T> right = t.newInstance();
-
-        T root = t.disassemble(left, right);
-        T smallestLabel;
-        if (left.size() > 0) {
-            smallestLabel = removeSmallest(left);
-            t.assemble(root, left, right);
-        } else {
-            smallestLabel = root;
-            t.transferFrom(right);
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T> build(Object[] labels, int lo, int hi) {
+        Node<T> n = null;
+        if (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            n = new Node<T>((T) labels[mid]);
+            n.left = build(labels, lo, mid);
+            n.right = build(labels, mid + 1, hi);
+            n.size = hi - lo;
         }
-        return smallestLabel;
+        return n;
     }
 
     /**
-     * Finds label {@code x} in {@code t}, removes it from {@code t}, and
-     * returns it.
+     * Merges the increasing sequences {@code a} and {@code b}, keeps the
+     * labels in the parts selected by the flags, and returns the root of a
+     * balanced tree of them. Takes time linear in |a| + |b|.
      *
      * @param <T>
-     *            type of {@code BinaryTree} labels
-     * @param t
-     *            the {@code BinaryTree} from which to remove label {@code x}
-     * @param x
-     *            the label to be removed
-     * @return the removed label
-     * @updates t
-     * @requires IS_BST(t) and x is in labels(t)
+     *            type of labels
+     * @param a
+     *            the first sequence
+     * @param b
+     *            the second sequence
+     * @param onlyA
+     *            whether to keep the labels of a that are not in b
+     * @param both
+     *            whether to keep the labels that are in both a and b
+     * @param onlyB
+     *            whether to keep the labels of b that are not in a
+     * @return the root of the new tree
+     * @requires <pre>
+     * [a and b are strictly increasing sequences of labels of type T]
+     * </pre>
      * @ensures <pre>
-     * IS_BST(t)  and  removeFromTree = x  and
-     *  labels(t) = labels(#t) \ {x}
+     * IS_BST(merge)  and
+     * labels(merge) = [the labels of the parts of a and b selected by the
+     *  flags, taking the label from a when a label is in both]
      * </pre>
      */
-    private static <T extends Comparable<T>> T removeFromTree(BinaryTree<T> t,
-            T x) {
-        assert t != null : "Violation of: t is not null";
-        assert x != null : "Violation of: x is not null";
-
-        BinaryTree<T> left = t.newInstance();
-        BinaryTree<T> right = t.newInstance();
-
-        T root = t.disassemble(left, right);
-        T removeLabel;
-        if (x.compareTo(root) > 0) {
-            removeLabel = removeFromTree(right, x);
-            t.assemble(root, left, right);
-
-        } else if (x.compareTo(root) < 0) {
-            removeLabel = removeFromTree(left, x);
-            t.assemble(root, left, right);
-
-        } else {
-            removeLabel = root;
-            if (right.size() == 0) {
-                t.transferFrom(left);
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> Node<T> merge(Object[] a,
+            Object[] b, boolean onlyA, boolean both, boolean onlyB) {
+        Object[] merged = new Object[a.length + b.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            int cmp;
+            if (i == a.length) {
+                cmp = 1;
+            } else if (j == b.length) {
+                cmp = -1;
+            } else {
+                cmp = ((T) a[i]).compareTo((T) b[j]);
+            }
+            if (cmp < 0) {
+                if (onlyA) {
+                    merged[count] = a[i];
+                    count++;
+                }
+                i++;
+            } else if (cmp > 0) {
+                if (onlyB) {
+                    merged[count] = b[j];
+                    count++;
+                }
+                j++;
             } else {
-                t.assemble(removeSmallest(right), left, right);
+                if (both) {
+                    merged[count] = a[i];
+                    count++;
+                }
+                i++;
+                j++;
             }
         }
-        return removeLabel;
+        return build(merged, 0, count);
+    }
+
+    /**
+     * Reports whether looking {@code k} elements up one at a time in a tree of
+     * {@code n} nodes, about k log2(n) steps in the balanced trees that the
+     * bulk methods build, is cheaper than merging, about n + k steps.
+     *
+     * @param k
+     *            the number of elements to look up
+     * @param n
+     *            the number of nodes in the tree
+     * @return true iff k elements should be handled one at a time
+     * @requires k >= 0 and n >= 0
+     * @ensures fewEnough = [k * [number of bits of n] < n]
+     */
+    private static boolean fewEnough(int k, int n) {
+        int bits = Integer.SIZE - Integer.numberOfLeadingZeros(n);
+        return (long) k * bits < n;
     }
 
     /**
@@ -194,10 +347,38 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
      */
     private void createNewRep() {
 
-        this.tree = new BinaryTree1<T>();
+        this.root = null;
 
     }
 
+    /**
+     * Adds {@code labels[lo..hi)} to {@code this}, the middle one first and
+     * then each half the same way, so that labels falling between the same
+     * two nodes of the tree form a balanced subtree there rather than a chain.
+     *
+     * @param labels
+     *            the labels to add
+     * @param lo
+     *            index of the first label
+     * @param hi
+     *            index just past the last label
+     * @updates this
+     * @requires <pre>
+     * 0 <= lo <= hi <= |labels|  and
+     * [labels[lo..hi) are of type T, strictly increasing, and not in this]
+     * </pre>
+     * @ensures this = #this union [the labels in labels[lo..hi)]
+     */
+    @SuppressWarnings("unchecked")
+    private void addMiddleFirst(Object[] labels, int lo, int hi) {
+        if (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            this.add((T) labels[mid]);
+            this.addMiddleFirst(labels, lo, mid);
+            this.addMiddleFirst(labels, mid + 1, hi);
+        }
+    }
+
     /*
      * Constructors -----------------------------------------------------------
      */
@@ -211,6 +392,93 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
 
     }
 
+    /**
+     * Returns a {@code Set3a} holding {@code elements}, which must already be
+     * in increasing order, as a perfectly balanced tree. Takes linear time and
+     * makes no comparisons (except to check the precondition when assertions
+     * are enabled).
+     *
+     * @param <T>
+     *            type of {@code Set} elements
+     * @param elements
+     *            the elements, in increasing order
+     * @return the new set
+     * @aliases references in {@code elements}
+     * @requires <pre>
+     * [elements has no null entries and is strictly increasing]
+     * </pre>
+     * @ensures fromSorted = elements
+     */
+    public static <T extends Comparable<T>> Set3a<T> fromSorted(T[] elements) {
+        assert elements != null : "Violation of: elements is not null";
+        assert isStrictlyIncreasing(elements) : ""
+                + "Violation of: elements is strictly increasing";
+
+        Set3a<T> set = new Set3a<T>();
+        set.root = build(elements, 0, elements.length);
+        return set;
+    }
+
+    /**
+     * Returns a {@code Set3a} holding the elements of {@code elements}, which
+     * must already be in increasing order, as a perfectly balanced tree. Takes
+     * linear time and makes no comparisons (except to check the precondition
+     * when assertions are enabled).
+     *
+     * @param <T>
+     *            type of {@code Set} elements
+     * @param elements
+     *            the elements, in increasing order
+     * @return the new set
+     * @aliases references in {@code elements}
+     * @requires <pre>
+     * [elements has no null entries and is strictly increasing]
+     * </pre>
+     * @ensures fromSorted = elements
+     */
+    public static <T extends Comparable<T>> Set3a<T> fromSorted(
+            Iterable<T> elements) {
+        assert elements != null : "Violation of: elements is not null";
+
+        List<T> list = new ArrayList<T>();
+        for (T x : elements) {
+            list.add(x);
+        }
+        Object[] array = list.toArray();
+        assert isStrictlyIncreasing(array) : ""
+                + "Violation of: elements is strictly increasing";
+
+        Set3a<T> set = new Set3a<T>();
+        set.root = build(array, 0, array.length);
+        return set;
+    }
+
+    /**
+     * Reports whether {@code elements} is a strictly increasing sequence of
+     * non-null elements of type {@code T}.
+     *
+     * @param <T>
+     *            type of elements
+     * @param elements
+     *            the elements to check
+     * @return true iff elements is strictly increasing
+     * @requires [every entry of elements is null or of type T]
+     * @ensures <pre>
+     * isStrictlyIncreasing = [elements has no null entries and is strictly
+     *  increasing]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> boolean isStrictlyIncreasing(
+            Object[] elements) {
+        boolean increasing = true;
+        for (int i = 0; i < elements.length && increasing; i++) {
+            increasing = elements[i] != null && (i == 0
+                    || ((T) elements[i - 1]).compareTo((T) elements[i]) < 0);
+        }
+        return increasing;
+    }
+
     /*
      * Standard methods -------------------------------------------------------
      */
@@ -236,14 +504,14 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
         assert source != null : "Violation of: source is not null";
         assert source != this : "Violation of: source is not this";
         assert source instanceof Set3a<?> : ""
-                + "Violation of: source is of dynamic type Set3<?>";
+                + "Violation of: source is of dynamic type Set3a<?>";
         /*
          * This cast cannot fail since the assert above would have stopped
          * execution in that case: source must be of dynamic type Set3a<?>, and
          * the ? must be T or the call would not have compiled.
          */
         Set3a<T> localSource = (Set3a<T>) source;
-        this.tree = localSource.tree;
+        this.root = localSource.root;
         localSource.createNewRep();
     }
 
@@ -256,7 +524,31 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
         assert x != null : "Violation of: x is not null";
         assert !this.contains(x) : "Violation of: x is not in this";
 
-        insertInTree(this.tree, x);
+        Node<T> leaf = new Node<T>(x);
+        if (this.root == null) {
+            this.root = leaf;
+        } else {
+            Node<T> p = this.root;
+            boolean placed = false;
+            while (!placed) {
+                p.size++;
+                if (x.compareTo(p.label) < 0) {
+                    if (p.left == null) {
+                        p.left = leaf;
+                        placed = true;
+                    } else {
+                        p = p.left;
+                    }
+                } else {
+                    if (p.right == null) {
+                        p.right = leaf;
+                        placed = true;
+                    } else {
+                        p = p.right;
+                    }
+                }
+            }
+        }
 
     }
 
@@ -265,32 +557,711 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
         assert x != null : "Violation of: x is not null";
         assert this.contains(x) : "Violation of: x is in this";
 
-        return removeFromTree(this.tree, x);
+        Node<T> parent = null;
+        Node<T> n = this.root;
+        int cmp = x.compareTo(n.label);
+        while (cmp != 0) {
+            n.size--;
+            parent = n;
+            if (cmp < 0) {
+                n = n.left;
+            } else {
+                n = n.right;
+            }
+            cmp = x.compareTo(n.label);
+        }
+        T removed = n.label;
+        if (n.left != null && n.right != null) {
+            /*
+             * Move the label of the successor, the smallest node of the right
+             * subtree, into n and unlink the successor, which has no left
+             * child.
+             */
+            n.size--;
+            Node<T> successorParent = n;
+            Node<T> successor = n.right;
+            while (successor.left != null) {
+                successor.size--;
+                successorParent = successor;
+                successor = successor.left;
+            }
+            n.label = successor.label;
+            this.splice(successor, successorParent);
+        } else {
+            this.splice(n, parent);
+        }
+        return removed;
     }
 
     @Override
     public final T removeAny() {
         assert this.size() > 0 : "Violation of: this /= empty_set";
 
-        return removeSmallest(this.tree);
+        Node<T> parent = null;
+        Node<T> n = this.root;
+        while (n.left != null) {
+            n.size--;
+            parent = n;
+            n = n.left;
+        }
+        this.splice(n, parent);
+        return n.label;
     }
 
     @Override
     public final boolean contains(T x) {
         assert x != null : "Violation of: x is not null";
 
-        return isInTree(this.tree, x);
+        return findNode(this.root, x) != null;
     }
 
     @Override
     public final int size() {
 
-        return this.tree.size();
+        return size(this.root);
     }
 
     @Override
     public final Iterator<T> iterator() {
-        return this.tree.iterator();
+        return new Set3aIterator(null, null);
+    }
+
+    /*
+     * Bulk methods -----------------------------------------------------------
+     */
+
+    /**
+     * Returns the elements of {@code this} in increasing order, in a new
+     * array of length |this| made by {@code generator}. Takes linear time.
+     *
+     * @param generator
+     *            makes an array of T of the given length, e.g.,
+     *            {@code String[]::new}
+     * @return the elements of this, in increasing order
+     * @aliases references in the returned array
+     * @ensures <pre>
+     * toSortedArray = [the elements of this, in increasing order]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    public final T[] toSortedArray(IntFunction<T[]> generator) {
+        assert generator != null : "Violation of: generator is not null";
+
+        return (T[]) labels(this.root, generator.apply(this.size()));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final void add(Set<T> s) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+
+        if (s instanceof Set3a<?>) {
+            Set3a<T> localS = (Set3a<T>) s;
+            Object[] b = labels(localS.root);
+            if (fewEnough(b.length, this.size())) {
+                /*
+                 * Add the elements of s that are not in this one at a time;
+                 * the others stay in s.
+                 */
+                Object[] absent = new Object[b.length];
+                int added = 0;
+                int count = 0;
+                for (Object x : b) {
+                    if (findNode(this.root, (T) x) == null) {
+                        absent[added] = x;
+                        added++;
+                    } else {
+                        b[count] = x;
+                        count++;
+                    }
+                }
+                this.addMiddleFirst(absent, 0, added);
+                if (count < b.length) {
+                    localS.root = build(b, 0, count);
+                }
+            } else {
+                /*
+                 * Merge both trees in time linear in |this| + |s| and rebuild
+                 * this balanced; s only needs rebuilding if some of its
+                 * elements were not in this.
+                 */
+                Object[] a = labels(this.root);
+                this.root = merge(a, b, true, true, true);
+                if (size(this.root) > a.length) {
+                    localS.root = merge(a, b, false, true, false);
+                }
+            }
+        } else {
+            super.add(s);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> remove(Set<T> s) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+
+        Set<T> removed;
+        if (s instanceof Set3a<?>) {
+            Set3a<T> localS = (Set3a<T>) s;
+            Set3a<T> localRemoved = (Set3a<T>) this.newInstance();
+            if (fewEnough(localS.size(), this.size())) {
+                /*
+                 * Remove the elements of s from this one at a time.
+                 */
+                Object[] b = labels(localS.root);
+                int count = 0;
+                for (Object x : b) {
+                    if (findNode(this.root, (T) x) != null) {
+                        b[count] = this.remove((T) x);
+                        count++;
+                    }
+                }
+                localRemoved.root = build(b, 0, count);
+            } else if (fewEnough(this.size(), localS.size())) {
+                /*
+                 * Look each element of this up in s, and rebuild both parts.
+                 */
+                Object[] a = labels(this.root);
+                Object[] inS = new Object[a.length];
+                int kept = 0;
+                int count = 0;
+                for (Object x : a) {
+                    if (findNode(localS.root, (T) x) != null) {
+                        inS[count] = x;
+                        count++;
+                    } else {
+                        a[kept] = x;
+                        kept++;
+                    }
+                }
+                this.root = build(a, 0, kept);
+                localRemoved.root = build(inS, 0, count);
+            } else {
+                /*
+                 * Merge both trees in time linear in |this| + |s| and rebuild
+                 * them balanced.
+                 */
+                Object[] a = labels(this.root);
+                Object[] b = labels(localS.root);
+                localRemoved.root = merge(a, b, false, true, false);
+                this.root = merge(a, b, true, false, false);
+            }
+            removed = localRemoved;
+        } else {
+            removed = super.remove(s);
+        }
+        return removed;
+    }
+
+    /**
+     * Removes from {@code this} all elements that are not in {@code s}. If
+     * {@code s} is a {@code Set3a} of about as many elements as {@code this},
+     * both trees are merged in time linear in |this| + |s|; if it is much
+     * smaller, each of its elements is looked up in {@code this}; otherwise
+     * each element of {@code this} is looked up in {@code s}. Either way the
+     * remaining tree is rebuilt balanced.
+     *
+     * @param s
+     *            the {@code Set} whose elements are kept
+     * @updates this
+     * @requires s /= this
+     * @ensures this = #this intersection s
+     */
+    @SuppressWarnings("unchecked")
+    public final void retain(Set<T> s) {
+        assert s != null : "Violation of: s is not null";
+        assert s != this : "Violation of: s is not this";
+
+        Set3a<T> localS = null;
+        if (s instanceof Set3a<?>) {
+            localS = (Set3a<T>) s;
+        }
+        if (localS != null && fewEnough(localS.size(), this.size())) {
+            Object[] b = labels(localS.root);
+            int count = 0;
+            for (Object x : b) {
+                Node<T> n = findNode(this.root, (T) x);
+                if (n != null) {
+                    b[count] = n.label;
+                    count++;
+                }
+            }
+            this.root = build(b, 0, count);
+        } else if (localS != null && !fewEnough(this.size(), localS.size())) {
+            this.root = merge(labels(this.root), labels(localS.root), false,
+                    true, false);
+        } else {
+            Object[] a = labels(this.root);
+            int count = 0;
+            for (Object x : a) {
+                if (s.contains((T) x)) {
+                    a[count] = x;
+                    count++;
+                }
+            }
+            this.root = build(a, 0, count);
+        }
+    }
+
+    /**
+     * Moves the elements of {@code this} greater than {@code x} into
+     * {@code greater}, and drops {@code x} itself if present, by cutting the
+     * tree along the search path for {@code x}. Takes time proportional to the
+     * height of the tree.
+     *
+     * @param x
+     *            the element at which to split
+     * @param greater
+     *            the {@code Set3a} that receives the greater elements
+     * @return true iff x was in this
+     * @updates this
+     * @replaces greater
+     * @requires greater /= this
+     * @ensures <pre>
+     * split = (x is in #this)  and
+     * this = {e: T where (e is in #this and e < x)}  and
+     * greater = {e: T where (e is in #this and e > x)}
+     * </pre>
+     */
+    public final boolean split(T x, Set3a<T> greater) {
+        assert x != null : "Violation of: x is not null";
+        assert greater != null : "Violation of: greater is not null";
+        assert greater != this : "Violation of: greater is not this";
+
+        /*
+         * Nodes less than x are chained through their right links below
+         * lessHook, and nodes greater than x through their left links below
+         * greaterHook; the subtrees hanging off the other side of each node
+         * stay with it. The nodes on the path are kept so their sizes can be
+         * fixed, deepest first, once the split is complete.
+         */
+        Node<T> lessDummy = new Node<T>(null);
+        Node<T> greaterDummy = new Node<T>(null);
+        Node<T> lessHook = lessDummy;
+        Node<T> greaterHook = greaterDummy;
+        Node<T> lessRest = null;
+        Node<T> greaterRest = null;
+        Deque<Node<T>> path = new ArrayDeque<Node<T>>();
+        boolean found = false;
+        Node<T> n = this.root;
+        while (n != null && !found) {
+            int cmp = x.compareTo(n.label);
+            if (cmp > 0) {
+                lessHook.right = n;
+                lessHook = n;
+                path.push(n);
+                n = n.right;
+            } else if (cmp < 0) {
+                greaterHook.left = n;
+                greaterHook = n;
+                path.push(n);
+                n = n.left;
+            } else {
+                lessRest = n.left;
+                greaterRest = n.right;
+                found = true;
+            }
+        }
+        lessHook.right = lessRest;
+        greaterHook.left = greaterRest;
+        while (!path.isEmpty()) {
+            Node<T> p = path.pop();
+            p.size = 1 + size(p.left) + size(p.right);
+        }
+        this.root = lessDummy.right;
+        greater.root = greaterDummy.left;
+        return found;
+    }
+
+    /**
+     * Moves all the elements of {@code greater}, each of which is greater than
+     * every element of {@code this}, into {@code this}. Takes time
+     * proportional to the height of the tree of {@code greater}.
+     *
+     * @param greater
+     *            the {@code Set3a} whose elements are added
+     * @updates this
+     * @clears greater
+     * @requires <pre>
+     * greater /= this  and
+     * [every element of this is less than every element of greater]
+     * </pre>
+     * @ensures this = #this union #greater
+     */
+    public final void join(Set3a<T> greater) {
+        assert greater != null : "Violation of: greater is not null";
+        assert greater != this : "Violation of: greater is not this";
+        assert this.size() == 0 || greater.size() == 0
+                || this.last().compareTo(greater.first()) < 0 : ""
+                        + "Violation of: every element of this is less than"
+                        + " every element of greater";
+
+        if (this.root == null) {
+            this.root = greater.root;
+        } else if (greater.root != null) {
+            /*
+             * The smallest element of greater becomes the root, with the two
+             * trees as its subtrees.
+             */
+            Node<T> pivot = new Node<T>(greater.removeAny());
+            pivot.left = this.root;
+            pivot.right = greater.root;
+            pivot.size = 1 + size(pivot.left) + size(pivot.right);
+            this.root = pivot;
+        }
+        greater.createNewRep();
+    }
+
+    /*
+     * Ordered set methods ----------------------------------------------------
+     */
+
+    /**
+     * Reports the smallest element of {@code this}.
+     *
+     * @return the smallest element of this
+     * @requires this /= empty_set
+     * @ensures first is in this and [first <= every element of this]
+     */
+    public final T first() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        Node<T> n = this.root;
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n.label;
+    }
+
+    /**
+     * Reports the largest element of {@code this}.
+     *
+     * @return the largest element of this
+     * @requires this /= empty_set
+     * @ensures last is in this and [last >= every element of this]
+     */
+    public final T last() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        Node<T> n = this.root;
+        while (n.right != null) {
+            n = n.right;
+        }
+        return n.label;
+    }
+
+    /**
+     * Reports the largest element of {@code this} that is not greater than
+     * {@code x}, or {@code null} if there is none.
+     *
+     * @param x
+     *            the bound
+     * @return the largest element of this <= x, or null
+     * @ensures <pre>
+     * if [there is an element of this <= x] then
+     *   floor = [the largest element of this <= x]
+     * else
+     *   floor = null
+     * </pre>
+     */
+    public final T floor(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        T result = null;
+        Node<T> n = this.root;
+        while (n != null) {
+            int cmp = x.compareTo(n.label);
+            if (cmp < 0) {
+                n = n.left;
+            } else {
+                result = n.label;
+                if (cmp == 0) {
+                    n = null;
+                } else {
+                    n = n.right;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports the smallest element of {@code this} that is not less than
+     * {@code x}, or {@code null} if there is none.
+     *
+     * @param x
+     *            the bound
+     * @return the smallest element of this >= x, or null
+     * @ensures <pre>
+     * if [there is an element of this >= x] then
+     *   ceiling = [the smallest element of this >= x]
+     * else
+     *   ceiling = null
+     * </pre>
+     */
+    public final T ceiling(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        T result = null;
+        Node<T> n = this.root;
+        while (n != null) {
+            int cmp = x.compareTo(n.label);
+            if (cmp > 0) {
+                n = n.right;
+            } else {
+                result = n.label;
+                if (cmp == 0) {
+                    n = null;
+                } else {
+                    n = n.left;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports the number of elements of {@code this} that are less than
+     * {@code x}, in time proportional to the height of the tree.
+     *
+     * @param x
+     *            the element whose rank is reported
+     * @return the number of elements of this less than x
+     * @ensures rank = |{e: T where (e is in this and e < x)}|
+     */
+    public final int rank(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        int rank = 0;
+        Node<T> n = this.root;
+        while (n != null) {
+            int cmp = x.compareTo(n.label);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0) {
+                rank += size(n.left) + 1;
+                n = n.right;
+            } else {
+                rank += size(n.left);
+                n = null;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Reports the element of {@code this} that has exactly {@code k} smaller
+     * elements, in time proportional to the height of the tree; for example,
+     * {@code select(size() / 2)} is an upper median.
+     *
+     * @param k
+     *            the rank of the element to report
+     * @return the element of rank k
+     * @requires 0 <= k < |this|
+     * @ensures select is in this and rank(select) = k
+     */
+    public final T select(int k) {
+        assert 0 <= k && k < this.size() : "Violation of: 0 <= k < |this|";
+
+        Node<T> n = this.root;
+        int remaining = k;
+        int leftSize = size(n.left);
+        while (remaining != leftSize) {
+            if (remaining < leftSize) {
+                n = n.left;
+            } else {
+                remaining -= leftSize + 1;
+                n = n.right;
+            }
+            leftSize = size(n.left);
+        }
+        return n.label;
+    }
+
+    /**
+     * Returns an iterator over the elements of {@code this} that are at least
+     * {@code from} and less than {@code to}, in increasing order. Creating it
+     * takes time proportional to the height of the tree, and each call to
+     * {@code next} amortized constant time, so visiting k elements takes
+     * O(height + k).
+     *
+     * @param from
+     *            the inclusive lower bound, or null for no lower bound
+     * @param to
+     *            the exclusive upper bound, or null for no upper bound
+     * @return an iterator over the elements in the range
+     * @requires <pre>
+     * from = null  or  to = null  or  from <= to
+     * </pre>
+     * @ensures <pre>
+     * [rangeIterator visits, in increasing order, exactly the elements e of
+     *  this with (from = null or from <= e) and (to = null or e < to)]
+     * </pre>
+     */
+    public final Iterator<T> rangeIterator(T from, T to) {
+        assert from == null || to == null || from.compareTo(to) <= 0 : ""
+                + "Violation of: from = null or to = null or from <= to";
+
+        return new Set3aIterator(from, to);
+    }
+
+    /**
+     * Returns a view of the elements of {@code this} that are at least
+     * {@code from} and less than {@code to}. The view is backed by
+     * {@code this}: each iteration over it reflects the elements of
+     * {@code this} at the time the iteration starts.
+     *
+     * @param from
+     *            the inclusive lower bound
+     * @param to
+     *            the exclusive upper bound
+     * @return the elements in [from, to), in increasing order
+     * @requires from <= to
+     * @ensures <pre>
+     * subSet = [view of the elements e of this with from <= e < to, in
+     *  increasing order]
+     * </pre>
+     */
+    public final Iterable<T> subSet(T from, T to) {
+        assert from != null : "Violation of: from is not null";
+        assert to != null : "Violation of: to is not null";
+        assert from.compareTo(to) <= 0 : "Violation of: from <= to";
+
+        return () -> this.rangeIterator(from, to);
+    }
+
+    /**
+     * Returns a view of the elements of {@code this} that are less than
+     * {@code to}. The view is backed by {@code this}: each iteration over it
+     * reflects the elements of {@code this} at the time the iteration starts.
+     *
+     * @param to
+     *            the exclusive upper bound
+     * @return the elements less than to, in increasing order
+     * @ensures <pre>
+     * headSet = [view of the elements e of this with e < to, in increasing
+     *  order]
+     * </pre>
+     */
+    public final Iterable<T> headSet(T to) {
+        assert to != null : "Violation of: to is not null";
+
+        return () -> this.rangeIterator(null, to);
+    }
+
+    /**
+     * Returns a view of the elements of {@code this} that are at least
+     * {@code from}. The view is backed by {@code this}: each iteration over it
+     * reflects the elements of {@code this} at the time the iteration starts.
+     *
+     * @param from
+     *            the inclusive lower bound
+     * @return the elements not less than from, in increasing order
+     * @ensures <pre>
+     * tailSet = [view of the elements e of this with from <= e, in increasing
+     *  order]
+     * </pre>
+     */
+    public final Iterable<T> tailSet(T from) {
+        assert from != null : "Violation of: from is not null";
+
+        return () -> this.rangeIterator(from, null);
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Set3a}, visiting
+     * in order the labels within optional bounds.
+     */
+    private final class Set3aIterator implements Iterator<T> {
+
+        /**
+         * Nodes whose labels and right subtrees are still to be visited, the
+         * next one on top; every label in it is at least the lower bound.
+         */
+        private final Deque<Node<T>> stack;
+
+        /**
+         * The exclusive upper bound, or {@code null} if there is none.
+         */
+        private final T to;
+
+        /**
+         * Constructor from bounds.
+         *
+         * @param from
+         *            the inclusive lower bound, or null for no lower bound
+         * @param to
+         *            the exclusive upper bound, or null for no upper bound
+         */
+        Set3aIterator(T from, T to) {
+            this.stack = new ArrayDeque<Node<T>>();
+            this.to = to;
+            if (from == null) {
+                this.pushLeftSpine(Set3a.this.root);
+            } else {
+                /*
+                 * Push the nodes on the search path for from that are not
+                 * less than it; together with their right subtrees they hold
+                 * exactly the labels not less than from.
+                 */
+                Node<T> n = Set3a.this.root;
+                while (n != null) {
+                    if (n.label.compareTo(from) < 0) {
+                        n = n.right;
+                    } else {
+                        this.stack.push(n);
+                        n = n.left;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Pushes {@code n} and its chain of left descendants on
+         * {@code stack}.
+         *
+         * @param n
+         *            the first node to push, or null
+         */
+        private void pushLeftSpine(Node<T> n) {
+            Node<T> p = n;
+            while (p != null) {
+                this.stack.push(p);
+                p = p.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !this.stack.isEmpty() && (this.to == null
+                    || this.stack.peek().label.compareTo(this.to) < 0);
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Node<T> n = this.stack.pop();
+            this.pushLeftSpine(n.right);
+            return n.label;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
     }
 
 }
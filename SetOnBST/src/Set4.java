@@ -0,0 +1,539 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as an AVL tree (a binary search tree in which the
+ * heights of the two subtrees of every node differ by at most one) of
+ * elements, with implementations of primary methods. Unlike {@code Set3a},
+ * whose tree degenerates into a list when elements are added in order,
+ * {@code add}, {@code remove}, and {@code contains} take O(log n) time for any
+ * order of additions.
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions <pre>
+ * IS_BST(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  [tree satisfies the binary search tree properties as described in the
+ *   slides with the ordering reported by compareTo for T, including that
+ *   it has no duplicate labels]
+ *
+ * IS_AVL(
+ *   tree: binary tree of T
+ *  ): boolean satisfies
+ *  IS_BST(tree)  and
+ *  [for every subtree of tree, the heights of its left and right subtrees
+ *   differ by at most 1]
+ * </pre>
+ * @convention <pre>
+ * IS_AVL([the tree of nodes rooted at $this.root])  and
+ * [the height field of every node is the height of the subtree rooted at
+ *  that node]  and
+ * $this.size = [number of nodes in the tree rooted at $this.root]
+ * </pre>
+ * @correspondence this = labels([the tree of nodes rooted at $this.root])
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public class Set4<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Node of the tree.
+     *
+     * @param <T>
+     *            type of labels
+     */
+    private static final class Node<T> {
+
+        /**
+         * The label.
+         */
+        private T label;
+
+        /**
+         * Root of the left subtree, or {@code null} if it is empty.
+         */
+        private Node<T> left;
+
+        /**
+         * Root of the right subtree, or {@code null} if it is empty.
+         */
+        private Node<T> right;
+
+        /**
+         * Height of the subtree rooted at this node.
+         */
+        private int height;
+
+        /**
+         * Constructor of a leaf.
+         *
+         * @param label
+         *            the label
+         */
+        Node(T label) {
+            this.label = label;
+            this.left = null;
+            this.right = null;
+            this.height = 1;
+        }
+
+    }
+
+    /**
+     * Root of the tree, or {@code null} if it is empty.
+     */
+    private Node<T> root;
+
+    /**
+     * Number of nodes in the tree.
+     */
+    private int size;
+
+    /**
+     * Returns the height of the subtree rooted at {@code n}.
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the subtree, or null
+     * @return the height of the subtree
+     * @ensures height = [height of the subtree rooted at n]
+     */
+    private static <T> int height(Node<T> n) {
+        int height = 0;
+        if (n != null) {
+            height = n.height;
+        }
+        return height;
+    }
+
+    /**
+     * Recomputes the height of {@code n} from those of its children.
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            the node
+     * @updates n.height
+     * @requires n /= null and [the heights of the children of n are correct]
+     * @ensures [the height of n is correct]
+     */
+    private static <T> void updateHeight(Node<T> n) {
+        n.height = 1 + Math.max(height(n.left), height(n.right));
+    }
+
+    /**
+     * Rotates the subtree rooted at {@code n} to the right, and returns its
+     * new root (the former left child of {@code n}).
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the subtree
+     * @return the new root of the subtree
+     * @updates n
+     * @requires n /= null and n.left /= null
+     * @ensures <pre>
+     * [rotateRight is the root of a subtree with the same labels, in the same
+     *  order, and with correct heights]
+     * </pre>
+     */
+    private static <T> Node<T> rotateRight(Node<T> n) {
+        Node<T> pivot = n.left;
+        n.left = pivot.right;
+        pivot.right = n;
+        updateHeight(n);
+        updateHeight(pivot);
+        return pivot;
+    }
+
+    /**
+     * Rotates the subtree rooted at {@code n} to the left, and returns its
+     * new root (the former right child of {@code n}).
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the subtree
+     * @return the new root of the subtree
+     * @updates n
+     * @requires n /= null and n.right /= null
+     * @ensures <pre>
+     * [rotateLeft is the root of a subtree with the same labels, in the same
+     *  order, and with correct heights]
+     * </pre>
+     */
+    private static <T> Node<T> rotateLeft(Node<T> n) {
+        Node<T> pivot = n.right;
+        n.right = pivot.left;
+        pivot.left = n;
+        updateHeight(n);
+        updateHeight(pivot);
+        return pivot;
+    }
+
+    /**
+     * Restores the AVL balance at {@code n}, whose subtrees are AVL trees
+     * whose heights differ by at most 2, and returns the new root of the
+     * subtree.
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the subtree
+     * @return the new root of the subtree
+     * @updates n
+     * @requires <pre>
+     * n /= null  and  [both subtrees of n are AVL trees]  and
+     * |height(n.left) - height(n.right)| <= 2
+     * </pre>
+     * @ensures <pre>
+     * [rebalance is the root of an AVL tree with the same labels as #n]
+     * </pre>
+     */
+    private static <T> Node<T> rebalance(Node<T> n) {
+        Node<T> result = n;
+        int balance = height(n.left) - height(n.right);
+        if (balance > 1) {
+            if (height(n.left.left) < height(n.left.right)) {
+                n.left = rotateLeft(n.left);
+            }
+            result = rotateRight(n);
+        } else if (balance < -1) {
+            if (height(n.right.right) < height(n.right.left)) {
+                n.right = rotateRight(n.right);
+            }
+            result = rotateLeft(n);
+        } else {
+            updateHeight(n);
+        }
+        return result;
+    }
+
+    /**
+     * Inserts {@code x} in the subtree rooted at {@code n}, and returns the
+     * new root of the subtree.
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the subtree, or null
+     * @param x
+     *            the label to be inserted
+     * @return the new root of the subtree
+     * @aliases reference {@code x}
+     * @updates n
+     * @requires IS_AVL(n) and x is not in labels(n)
+     * @ensures <pre>
+     * IS_AVL(insert)  and  labels(insert) = labels(#n) union {x}
+     * </pre>
+     */
+    private static <T extends Comparable<T>> Node<T> insert(Node<T> n, T x) {
+        Node<T> result;
+        if (n == null) {
+            result = new Node<T>(x);
+        } else {
+            if (x.compareTo(n.label) < 0) {
+                n.left = insert(n.left, x);
+            } else {
+                n.right = insert(n.right, x);
+            }
+            result = rebalance(n);
+        }
+        return result;
+    }
+
+    /**
+     * Removes the node with the smallest label from the subtree rooted at
+     * {@code n}, reports that node in {@code removed[0]}, and returns the new
+     * root of the subtree.
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the subtree
+     * @param removed
+     *            holder for the removed node
+     * @return the new root of the subtree
+     * @updates n, removed
+     * @requires IS_AVL(n) and n /= null and |removed| >= 1
+     * @ensures <pre>
+     * removed[0].label = [the smallest label in #n]  and
+     * IS_AVL(removeSmallest)  and
+     * labels(removeSmallest) = labels(#n) \ {removed[0].label}
+     * </pre>
+     */
+    private static <T> Node<T> removeSmallest(Node<T> n, Node<T>[] removed) {
+        Node<T> result;
+        if (n.left == null) {
+            removed[0] = n;
+            result = n.right;
+        } else {
+            n.left = removeSmallest(n.left, removed);
+            result = rebalance(n);
+        }
+        return result;
+    }
+
+    /**
+     * Removes the label equal to {@code x} from the subtree rooted at
+     * {@code n}, reports it in {@code removed[0]}, and returns the new root
+     * of the subtree.
+     *
+     * @param <T>
+     *            type of labels
+     * @param n
+     *            root of the subtree
+     * @param x
+     *            the label to be removed
+     * @param removed
+     *            holder for the node that held the removed label
+     * @return the new root of the subtree
+     * @updates n, removed
+     * @requires IS_AVL(n) and x is in labels(n) and |removed| >= 1
+     * @ensures <pre>
+     * removed[0].label = x  and  IS_AVL(remove)  and
+     * labels(remove) = labels(#n) \ {x}
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> Node<T> remove(Node<T> n, T x,
+            Node<T>[] removed) {
+        Node<T> result;
+        int cmp = x.compareTo(n.label);
+        if (cmp < 0) {
+            n.left = remove(n.left, x, removed);
+            result = rebalance(n);
+        } else if (cmp > 0) {
+            n.right = remove(n.right, x, removed);
+            result = rebalance(n);
+        } else {
+            removed[0] = n;
+            if (n.right == null) {
+                result = n.left;
+            } else {
+                /*
+                 * Replace n with its successor, the smallest node of its
+                 * right subtree.
+                 */
+                Node<T>[] successor = new Node[1];
+                Node<T> right = removeSmallest(n.right, successor);
+                result = successor[0];
+                result.left = n.left;
+                result.right = right;
+                result = rebalance(result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+
+        this.root = null;
+        this.size = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set4() {
+
+        this.createNewRep();
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Set4<?> : ""
+                + "Violation of: source is of dynamic type Set4<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Set4<?>, and
+         * the ? must be T or the call would not have compiled.
+         */
+        Set4<T> localSource = (Set4<T>) source;
+        this.root = localSource.root;
+        this.size = localSource.size;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        this.root = insert(this.root, x);
+        this.size++;
+
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        Node<T>[] removed = new Node[1];
+        this.root = remove(this.root, x, removed);
+        this.size--;
+        return removed[0].label;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        Node<T>[] removed = new Node[1];
+        this.root = removeSmallest(this.root, removed);
+        this.size--;
+        return removed[0].label;
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        Node<T> n = this.root;
+        int cmp = 1;
+        while (n != null && cmp != 0) {
+            cmp = x.compareTo(n.label);
+            if (cmp < 0) {
+                n = n.left;
+            } else if (cmp > 0) {
+                n = n.right;
+            }
+        }
+        return n != null;
+    }
+
+    @Override
+    public final int size() {
+
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new Set4Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Set4}, visiting
+     * the labels in order.
+     */
+    private final class Set4Iterator implements Iterator<T> {
+
+        /**
+         * Nodes whose labels and right subtrees are still to be visited, the
+         * next one on top; at most the height of the tree.
+         */
+        private final Node<T>[] stack;
+
+        /**
+         * Number of nodes in {@code stack}.
+         */
+        private int depth;
+
+        /**
+         * No-argument constructor.
+         */
+        @SuppressWarnings("unchecked")
+        Set4Iterator() {
+            this.stack = new Node[height(Set4.this.root)];
+            this.depth = 0;
+            this.pushLeftSpine(Set4.this.root);
+        }
+
+        /**
+         * Pushes {@code n} and its chain of left descendants on
+         * {@code stack}.
+         *
+         * @param n
+         *            the first node to push, or null
+         */
+        private void pushLeftSpine(Node<T> n) {
+            Node<T> p = n;
+            while (p != null) {
+                this.stack[this.depth] = p;
+                this.depth++;
+                p = p.left;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.depth > 0;
+        }
+
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.depth--;
+            Node<T> n = this.stack[this.depth];
+            this.stack[this.depth] = null;
+            this.pushLeftSpine(n.right);
+            return n.label;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -0,0 +1,701 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a B-tree of elements with implementations of
+ * primary methods. Each node holds up to {@code MAX_KEYS} elements in a sorted
+ * array, which is binary searched, so a lookup touches about log_32(n) nodes
+ * instead of the log2(n) nodes of a binary search tree, and most of its
+ * comparisons read one contiguous array.
+ *
+ * @param <T>
+ *            type of {@code Set} elements
+ * @mathdefinitions <pre>
+ * IS_B_TREE(
+ *   n: node,
+ *   t: integer
+ *  ): boolean satisfies
+ *  [the keys[0, count) of every node of the tree rooted at n are strictly
+ *   increasing in the ordering reported by compareTo for T]  and
+ *  [every node other than n has at least t - 1 and at most 2t - 1 keys, and
+ *   n has at most 2t - 1]  and
+ *  [every node is a leaf (children = null) or has count + 1 children, and
+ *   all the keys in children[i] are between keys[i - 1] and keys[i]]  and
+ *  [all leaves are at the same depth]
+ * </pre>
+ * @convention <pre>
+ * IS_B_TREE($this.root, MIN_DEGREE)  and
+ * $this.size = [number of keys in the tree rooted at $this.root]
+ * </pre>
+ * @correspondence this = [the keys in the tree rooted at $this.root]
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public class Set5<T extends Comparable<T>> extends SetSecondary<T> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Minimum degree of the B-tree: every node but the root has at least
+     * {@code MIN_DEGREE - 1} keys.
+     */
+    private static final int MIN_DEGREE = 32;
+
+    /**
+     * Largest number of keys in a node.
+     */
+    private static final int MAX_KEYS = 2 * MIN_DEGREE - 1;
+
+    /**
+     * Node of the B-tree.
+     */
+    private static final class Node {
+
+        /**
+         * The keys, in increasing order in {@code keys[0, count)}; the other
+         * entries are null.
+         */
+        private final Object[] keys;
+
+        /**
+         * The children, in {@code children[0, count]}, or {@code null} if this
+         * is a leaf.
+         */
+        private final Node[] children;
+
+        /**
+         * Number of keys.
+         */
+        private int count;
+
+        /**
+         * Constructor of an empty node.
+         *
+         * @param leaf
+         *            whether the node is a leaf
+         */
+        Node(boolean leaf) {
+            this.keys = new Object[MAX_KEYS];
+            if (leaf) {
+                this.children = null;
+            } else {
+                this.children = new Node[MAX_KEYS + 1];
+            }
+            this.count = 0;
+        }
+
+        /**
+         * Reports whether this is a leaf.
+         *
+         * @return true iff this has no children
+         */
+        boolean isLeaf() {
+            return this.children == null;
+        }
+
+    }
+
+    /**
+     * Root of the B-tree.
+     */
+    private Node root;
+
+    /**
+     * Number of keys in the B-tree.
+     */
+    private int size;
+
+    /**
+     * Searches the keys of {@code n} for {@code x}.
+     *
+     * @param <T>
+     *            type of keys
+     * @param n
+     *            the node to search
+     * @param x
+     *            the key to search for
+     * @return the index of x in n.keys if found, otherwise (-(insertion
+     *         point) - 1)
+     * @ensures <pre>
+     * if x is in n.keys[0, n.count) then
+     *   n.keys[search] = x
+     * else
+     *   [-search - 1 is the index of the first key of n greater than x, or
+     *    n.count if there is none]
+     * </pre>
+     */
+    private static <T extends Comparable<T>> int search(Node n, T x) {
+        return Arrays.binarySearch(n.keys, 0, n.count, x);
+    }
+
+    /**
+     * Splits the full child {@code i} of {@code parent} in two, moving its
+     * median key up into {@code parent}.
+     *
+     * @param parent
+     *            the node whose child is split
+     * @param i
+     *            the index of the child
+     * @updates parent
+     * @requires <pre>
+     * parent.count < MAX_KEYS  and  parent.children[i].count = MAX_KEYS
+     * </pre>
+     * @ensures <pre>
+     * [parent.children[i] and parent.children[i + 1] each hold
+     *  MIN_DEGREE - 1 of the keys of #parent.children[i], and its median
+     *  key is parent.keys[i]]
+     * </pre>
+     */
+    private static void splitChild(Node parent, int i) {
+        Node y = parent.children[i];
+        Node z = new Node(y.isLeaf());
+        System.arraycopy(y.keys, MIN_DEGREE, z.keys, 0, MIN_DEGREE - 1);
+        if (!y.isLeaf()) {
+            System.arraycopy(y.children, MIN_DEGREE, z.children, 0,
+                    MIN_DEGREE);
+            Arrays.fill(y.children, MIN_DEGREE, MAX_KEYS + 1, null);
+        }
+        z.count = MIN_DEGREE - 1;
+
+        System.arraycopy(parent.keys, i, parent.keys, i + 1,
+                parent.count - i);
+        System.arraycopy(parent.children, i + 1, parent.children, i + 2,
+                parent.count - i);
+        parent.keys[i] = y.keys[MIN_DEGREE - 1];
+        parent.children[i + 1] = z;
+        parent.count++;
+
+        Arrays.fill(y.keys, MIN_DEGREE - 1, MAX_KEYS, null);
+        y.count = MIN_DEGREE - 1;
+    }
+
+    /**
+     * Merges child {@code i + 1} of {@code parent}, and the key between them,
+     * into child {@code i}.
+     *
+     * @param parent
+     *            the node whose children are merged
+     * @param i
+     *            the index of the left child
+     * @updates parent
+     * @requires <pre>
+     * 0 <= i < parent.count  and
+     * parent.children[i].count + parent.children[i + 1].count < MAX_KEYS
+     * </pre>
+     * @ensures <pre>
+     * [parent.children[i] holds the keys of #parent.children[i], then
+     *  #parent.keys[i], then the keys of #parent.children[i + 1]; and
+     *  #parent.keys[i] and #parent.children[i + 1] are removed from parent]
+     * </pre>
+     */
+    private static void merge(Node parent, int i) {
+        Node y = parent.children[i];
+        Node z = parent.children[i + 1];
+        y.keys[y.count] = parent.keys[i];
+        System.arraycopy(z.keys, 0, y.keys, y.count + 1, z.count);
+        if (!y.isLeaf()) {
+            System.arraycopy(z.children, 0, y.children, y.count + 1,
+                    z.count + 1);
+        }
+        y.count += 1 + z.count;
+
+        System.arraycopy(parent.keys, i + 1, parent.keys, i,
+                parent.count - i - 1);
+        System.arraycopy(parent.children, i + 2, parent.children, i + 1,
+                parent.count - i - 1);
+        parent.count--;
+        parent.keys[parent.count] = null;
+        parent.children[parent.count + 1] = null;
+    }
+
+    /**
+     * Moves the last key of child {@code i - 1} of {@code parent} up into
+     * {@code parent}, and the key between the two children down into child
+     * {@code i}, together with the last child of child {@code i - 1}.
+     *
+     * @param parent
+     *            the node whose children are rebalanced
+     * @param i
+     *            the index of the child that receives a key
+     * @updates parent
+     * @requires <pre>
+     * 0 < i <= parent.count  and  parent.children[i - 1].count >= MIN_DEGREE
+     * </pre>
+     * @ensures <pre>
+     * [parent.children[i] has one more key, parent.children[i - 1] one
+     *  fewer, and the keys are in the same order]
+     * </pre>
+     */
+    private static void rotateFromLeft(Node parent, int i) {
+        Node child = parent.children[i];
+        Node left = parent.children[i - 1];
+        System.arraycopy(child.keys, 0, child.keys, 1, child.count);
+        child.keys[0] = parent.keys[i - 1];
+        if (!child.isLeaf()) {
+            System.arraycopy(child.children, 0, child.children, 1,
+                    child.count + 1);
+            child.children[0] = left.children[left.count];
+            left.children[left.count] = null;
+        }
+        child.count++;
+
+        left.count--;
+        parent.keys[i - 1] = left.keys[left.count];
+        left.keys[left.count] = null;
+    }
+
+    /**
+     * Moves the first key of child {@code i + 1} of {@code parent} up into
+     * {@code parent}, and the key between the two children down into child
+     * {@code i}, together with the first child of child {@code i + 1}.
+     *
+     * @param parent
+     *            the node whose children are rebalanced
+     * @param i
+     *            the index of the child that receives a key
+     * @updates parent
+     * @requires <pre>
+     * 0 <= i < parent.count  and  parent.children[i + 1].count >= MIN_DEGREE
+     * </pre>
+     * @ensures <pre>
+     * [parent.children[i] has one more key, parent.children[i + 1] one
+     *  fewer, and the keys are in the same order]
+     * </pre>
+     */
+    private static void rotateFromRight(Node parent, int i) {
+        Node child = parent.children[i];
+        Node right = parent.children[i + 1];
+        child.keys[child.count] = parent.keys[i];
+        if (!child.isLeaf()) {
+            child.children[child.count + 1] = right.children[0];
+            System.arraycopy(right.children, 1, right.children, 0,
+                    right.count);
+            right.children[right.count] = null;
+        }
+        child.count++;
+
+        parent.keys[i] = right.keys[0];
+        System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+        right.count--;
+        right.keys[right.count] = null;
+    }
+
+    /**
+     * Makes sure child {@code i} of {@code n} has at least {@code MIN_DEGREE}
+     * keys, so one can be removed from it, by taking a key from a sibling or
+     * merging it with one, and returns the index of the child that now holds
+     * the keys that child {@code i} held.
+     *
+     * @param n
+     *            the parent node
+     * @param i
+     *            the index of the child
+     * @return the index of the child holding the keys of #n.children[i]
+     * @updates n
+     * @requires <pre>
+     * [n is not a leaf]  and  0 <= i <= n.count  and
+     * (n = $this.root  or  n.count >= MIN_DEGREE)
+     * </pre>
+     * @ensures <pre>
+     * n.children[ensureRoom].count >= MIN_DEGREE  and
+     * [the keys of #n.children[i] are in n.children[ensureRoom]]
+     * </pre>
+     */
+    private static int ensureRoom(Node n, int i) {
+        int result = i;
+        if (n.children[i].count < MIN_DEGREE) {
+            if (i > 0 && n.children[i - 1].count >= MIN_DEGREE) {
+                rotateFromLeft(n, i);
+            } else if (i < n.count
+                    && n.children[i + 1].count >= MIN_DEGREE) {
+                rotateFromRight(n, i);
+            } else if (i < n.count) {
+                merge(n, i);
+            } else {
+                merge(n, i - 1);
+                result = i - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes and returns the smallest key of the tree rooted at {@code n}.
+     *
+     * @param n
+     *            root of the subtree
+     * @return the smallest key
+     * @updates n
+     * @requires <pre>
+     * n.count > 0  and  (n = $this.root  or  n.count >= MIN_DEGREE)
+     * </pre>
+     * @ensures <pre>
+     * removeFirst = [the smallest key of #n]  and
+     * [the tree rooted at n holds the other keys of #n]
+     * </pre>
+     */
+    private static Object removeFirst(Node n) {
+        Object first;
+        if (n.isLeaf()) {
+            first = n.keys[0];
+            System.arraycopy(n.keys, 1, n.keys, 0, n.count - 1);
+            n.count--;
+            n.keys[n.count] = null;
+        } else {
+            first = removeFirst(n.children[ensureRoom(n, 0)]);
+        }
+        return first;
+    }
+
+    /**
+     * Removes and returns the largest key of the tree rooted at {@code n}.
+     *
+     * @param n
+     *            root of the subtree
+     * @return the largest key
+     * @updates n
+     * @requires <pre>
+     * n.count > 0  and  (n = $this.root  or  n.count >= MIN_DEGREE)
+     * </pre>
+     * @ensures <pre>
+     * removeLast = [the largest key of #n]  and
+     * [the tree rooted at n holds the other keys of #n]
+     * </pre>
+     */
+    private static Object removeLast(Node n) {
+        Object last;
+        if (n.isLeaf()) {
+            n.count--;
+            last = n.keys[n.count];
+            n.keys[n.count] = null;
+        } else {
+            last = removeLast(n.children[ensureRoom(n, n.count)]);
+        }
+        return last;
+    }
+
+    /**
+     * Removes the key equal to {@code x} from the tree rooted at {@code n},
+     * and returns it. Every node the removal descends into is first given at
+     * least {@code MIN_DEGREE} keys, so the removal never leaves a node with
+     * too few.
+     *
+     * @param <T>
+     *            type of keys
+     * @param n
+     *            root of the subtree
+     * @param x
+     *            the key to be removed
+     * @return the removed key
+     * @updates n
+     * @requires <pre>
+     * x is in [the keys of n]  and
+     * (n = $this.root  or  n.count >= MIN_DEGREE)
+     * </pre>
+     * @ensures <pre>
+     * remove = x  and  [the tree rooted at n holds the other keys of #n]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> T remove(Node n, T x) {
+        T removed;
+        int i = search(n, x);
+        if (i >= 0) {
+            removed = (T) n.keys[i];
+            if (n.isLeaf()) {
+                System.arraycopy(n.keys, i + 1, n.keys, i, n.count - i - 1);
+                n.count--;
+                n.keys[n.count] = null;
+            } else if (n.children[i].count >= MIN_DEGREE) {
+                n.keys[i] = removeLast(n.children[i]);
+            } else if (n.children[i + 1].count >= MIN_DEGREE) {
+                n.keys[i] = removeFirst(n.children[i + 1]);
+            } else {
+                merge(n, i);
+                remove(n.children[i], x);
+            }
+        } else {
+            removed = remove(n.children[ensureRoom(n, -i - 1)], x);
+        }
+        return removed;
+    }
+
+    /**
+     * Replaces the root by its only child if a removal has emptied it.
+     *
+     * @updates $this.root
+     * @ensures <pre>
+     * [$this.root is a leaf or has at least one key, and the tree holds the
+     *  same keys as before]
+     * </pre>
+     */
+    private void shrinkRoot() {
+        if (this.root.count == 0 && !this.root.isLeaf()) {
+            this.root = this.root.children[0];
+        }
+    }
+
+    /**
+     * Reports the number of levels of nodes in the tree of {@code this}, one
+     * for a tree that is a single leaf.
+     *
+     * @return the height of the tree rooted at $this.root
+     * @ensures height = [the number of nodes on every path from $this.root to
+     *                    a leaf]
+     */
+    final int height() {
+        int height = 1;
+        Node n = this.root;
+        while (!n.isLeaf()) {
+            height++;
+            n = n.children[0];
+        }
+        return height;
+    }
+
+    /**
+     * Creator of initial representation.
+     */
+    private void createNewRep() {
+
+        this.root = new Node(true);
+        this.size = 0;
+
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Set5() {
+
+        this.createNewRep();
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Set<T> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep();
+    }
+
+    @Override
+    public final void transferFrom(Set<T> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Set5<?> : ""
+                + "Violation of: source is of dynamic type Set5<?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Set5<?>, and
+         * the ? must be T or the call would not have compiled.
+         */
+        Set5<T> localSource = (Set5<T>) source;
+        this.root = localSource.root;
+        this.size = localSource.size;
+        localSource.createNewRep();
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final void add(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert !this.contains(x) : "Violation of: x is not in this";
+
+        if (this.root.count == MAX_KEYS) {
+            Node newRoot = new Node(false);
+            newRoot.children[0] = this.root;
+            splitChild(newRoot, 0);
+            this.root = newRoot;
+        }
+        /*
+         * Full nodes are split on the way down, so the leaf that receives x
+         * has room for it.
+         */
+        Node n = this.root;
+        int i = -search(n, x) - 1;
+        while (!n.isLeaf()) {
+            if (n.children[i].count == MAX_KEYS) {
+                splitChild(n, i);
+                if (x.compareTo((T) n.keys[i]) > 0) {
+                    i++;
+                }
+            }
+            n = n.children[i];
+            i = -search(n, x) - 1;
+        }
+        System.arraycopy(n.keys, i, n.keys, i + 1, n.count - i);
+        n.keys[i] = x;
+        n.count++;
+        this.size++;
+
+    }
+
+    @Override
+    public final T remove(T x) {
+        assert x != null : "Violation of: x is not null";
+        assert this.contains(x) : "Violation of: x is in this";
+
+        T removed = remove(this.root, x);
+        this.shrinkRoot();
+        this.size--;
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final T removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        T removed = (T) removeFirst(this.root);
+        this.shrinkRoot();
+        this.size--;
+        return removed;
+    }
+
+    @Override
+    public final boolean contains(T x) {
+        assert x != null : "Violation of: x is not null";
+
+        Node n = this.root;
+        int i = search(n, x);
+        while (i < 0 && !n.isLeaf()) {
+            n = n.children[-i - 1];
+            i = search(n, x);
+        }
+        return i >= 0;
+    }
+
+    @Override
+    public final int size() {
+
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<T> iterator() {
+        return new Set5Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Set5}, visiting
+     * the keys in order.
+     */
+    private final class Set5Iterator implements Iterator<T> {
+
+        /**
+         * Nodes on the path to the next key, the deepest on top, each with
+         * keys still to be visited.
+         */
+        private final Node[] nodes;
+
+        /**
+         * For each node in {@code nodes}, the index of its next key to visit.
+         */
+        private final int[] indexes;
+
+        /**
+         * Number of nodes in {@code nodes}.
+         */
+        private int depth;
+
+        /**
+         * No-argument constructor.
+         */
+        Set5Iterator() {
+            int height = Set5.this.height();
+            this.nodes = new Node[height];
+            this.indexes = new int[height];
+            this.depth = 0;
+            if (Set5.this.root.count > 0) {
+                this.pushLeftSpine(Set5.this.root);
+            }
+        }
+
+        /**
+         * Pushes {@code n} and its chain of first descendants on the stack.
+         *
+         * @param n
+         *            the first node to push, or null
+         */
+        private void pushLeftSpine(Node n) {
+            Node p = n;
+            while (p != null) {
+                this.nodes[this.depth] = p;
+                this.indexes[this.depth] = 0;
+                this.depth++;
+                if (p.isLeaf()) {
+                    p = null;
+                } else {
+                    p = p.children[0];
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.depth > 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Node n = this.nodes[this.depth - 1];
+            int i = this.indexes[this.depth - 1];
+            this.indexes[this.depth - 1] = i + 1;
+            if (i + 1 == n.count) {
+                this.depth--;
+                this.nodes[this.depth] = null;
+            }
+            if (!n.isLeaf()) {
+                this.pushLeftSpine(n.children[i + 1]);
+            }
+            return (T) n.keys[i];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
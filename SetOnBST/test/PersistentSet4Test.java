@@ -0,0 +1,92 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code PersistentSet4}.
+ */
+public class PersistentSet4Test extends SetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new PersistentSet4<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Test for snapshot, which must not see later changes to the original,
+     * nor the original see changes to the snapshot.
+     */
+    @Test
+    public final void testSnapshot() {
+        PersistentSet4<Integer> s = new PersistentSet4<>();
+        for (int i = 0; i < 100; i++) {
+            s.add(i);
+        }
+        PersistentSet4<Integer> snapshot = s.snapshot();
+        for (int i = 0; i < 100; i += 2) {
+            s.remove(i);
+        }
+        s.add(1000);
+        snapshot.add(-1);
+        assertEquals(101, snapshot.size());
+        assertTrue(snapshot.contains(0));
+        assertFalse(snapshot.contains(1000));
+        assertEquals(51, s.size());
+        assertFalse(s.contains(-1));
+        int expected = -1;
+        for (int x : snapshot) {
+            assertEquals(expected, x);
+            expected++;
+        }
+        assertEquals(100, expected);
+    }
+
+    /**
+     * Test for one thread reading snapshots while another changes the set:
+     * every snapshot must be a complete version, holding a run of
+     * consecutive integers.
+     */
+    @Test
+    public final void testConcurrentReader() throws InterruptedException {
+        final int n = 20_000;
+        PersistentSet4<Integer> s = new PersistentSet4<>();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            int seen = 0;
+            while (seen < n && failure.get() == null) {
+                PersistentSet4<Integer> snapshot = s.snapshot();
+                int count = 0;
+                for (int x : snapshot) {
+                    if (x != count) {
+                        failure.set("saw " + x + " at position " + count);
+                    }
+                    count++;
+                }
+                if (count != snapshot.size()) {
+                    failure.set("size " + snapshot.size() + " but saw "
+                            + count);
+                }
+                seen = count;
+            }
+        });
+        reader.start();
+        for (int i = 0; i < n; i++) {
+            s.add(i);
+        }
+        reader.join();
+        assertEquals(null, failure.get());
+    }
+
+}
@@ -1,3 +1,15 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
 import components.set.Set;
 import components.set.Set1L;
 
@@ -16,4 +28,298 @@ public class Set3aTest extends SetTest {
         return new Set1L<String>();
     }
 
+    /**
+     * Test for add, contains, and remove on a tree made a single path deep
+     * enough to overflow the stack in recursive searches, by adding elements
+     * in increasing order.
+     */
+    @Test
+    public final void testDegenerateTree() {
+        final int n = 20_000;
+        Set3a<Integer> s = new Set3a<>();
+        for (int i = 0; i < n; i++) {
+            s.add(i);
+        }
+        assertTrue(s.contains(n - 1));
+        assertEquals(Integer.valueOf(n - 1), s.remove(n - 1));
+        assertEquals(Integer.valueOf(0), s.removeAny());
+        assertEquals(n - 2, s.size());
+        int expected = 1;
+        for (int x : s) {
+            assertEquals(expected, x);
+            expected++;
+        }
+    }
+
+    /**
+     * Creates a {@code Set3a<Integer>} holding the even numbers 0 through 18,
+     * added in an order that makes the tree bushy.
+     *
+     * @return the new set
+     */
+    private static Set3a<Integer> evens() {
+        Set3a<Integer> s = new Set3a<>();
+        for (int x : new int[] { 8, 4, 14, 2, 6, 10, 16, 0, 12, 18 }) {
+            s.add(x);
+        }
+        return s;
+    }
+
+    /**
+     * Returns the elements of {@code elements} in iteration order.
+     *
+     * @param elements
+     *            the elements
+     * @return the list of the elements
+     */
+    private static List<Integer> toList(Iterable<Integer> elements) {
+        List<Integer> list = new ArrayList<>();
+        for (int x : elements) {
+            list.add(x);
+        }
+        return list;
+    }
+
+    /**
+     * Test for first, last, floor, and ceiling.
+     */
+    @Test
+    public final void testFloorCeiling() {
+        Set3a<Integer> s = evens();
+        assertEquals(Integer.valueOf(0), s.first());
+        assertEquals(Integer.valueOf(18), s.last());
+        assertEquals(Integer.valueOf(6), s.floor(7));
+        assertEquals(Integer.valueOf(6), s.floor(6));
+        assertNull(s.floor(-1));
+        assertEquals(Integer.valueOf(18), s.floor(100));
+        assertEquals(Integer.valueOf(8), s.ceiling(7));
+        assertEquals(Integer.valueOf(8), s.ceiling(8));
+        assertNull(s.ceiling(19));
+        assertEquals(Integer.valueOf(0), s.ceiling(-100));
+        assertEquals(10, s.size());
+    }
+
+    /**
+     * Test for subSet, headSet, and tailSet, including that they reflect
+     * later changes.
+     */
+    @Test
+    public final void testRangeViews() {
+        Set3a<Integer> s = evens();
+        Iterable<Integer> sub = s.subSet(5, 13);
+        assertEquals(Arrays.asList(6, 8, 10, 12), toList(sub));
+        assertEquals(Arrays.asList(0, 2, 4), toList(s.headSet(6)));
+        assertEquals(Arrays.asList(14, 16, 18), toList(s.tailSet(13)));
+        assertEquals(Arrays.asList(), toList(s.subSet(7, 8)));
+        assertEquals(Arrays.asList(), toList(s.tailSet(19)));
+        s.add(7);
+        s.remove(10);
+        assertEquals(Arrays.asList(6, 7, 8, 12), toList(sub));
+    }
+
+    /**
+     * Test for rangeIterator with and without bounds.
+     */
+    @Test
+    public final void testRangeIterator() {
+        Set3a<Integer> s = evens();
+        Iterator<Integer> it = s.rangeIterator(4, 9);
+        assertEquals(Integer.valueOf(4), it.next());
+        assertEquals(Integer.valueOf(6), it.next());
+        assertEquals(Integer.valueOf(8), it.next());
+        assertFalse(it.hasNext());
+        List<Integer> all = new ArrayList<>();
+        s.rangeIterator(null, null).forEachRemaining(all::add);
+        assertEquals(toList(s), all);
+    }
+
+    /**
+     * Test for rank and select, including after removals.
+     */
+    @Test
+    public final void testRankSelect() {
+        Set3a<Integer> s = evens();
+        for (int k = 0; k < s.size(); k++) {
+            assertEquals(Integer.valueOf(2 * k), s.select(k));
+            assertEquals(k, s.rank(2 * k));
+            assertEquals(k + 1, s.rank(2 * k + 1));
+        }
+        assertEquals(0, s.rank(-5));
+        s.remove(8);
+        s.removeAny();
+        assertEquals(Integer.valueOf(6), s.select(2));
+        assertEquals(Integer.valueOf(10), s.select(3));
+        assertEquals(3, s.rank(9));
+        assertEquals(8, s.size());
+    }
+
+    /**
+     * Creates a {@code Set3a<Integer>} holding the multiples of {@code step}
+     * from 0 up to, but not including, {@code end}.
+     *
+     * @param step
+     *            the step between elements
+     * @param end
+     *            the exclusive bound
+     * @return the new set
+     */
+    private static Set3a<Integer> multiples(int step, int end) {
+        Set3a<Integer> s = new Set3a<>();
+        for (int x = 0; x < end; x += step) {
+            s.add(x);
+        }
+        return s;
+    }
+
+    /**
+     * Test for add(Set), remove(Set), and retain with {@code Set3a}
+     * arguments.
+     */
+    @Test
+    public final void testSetAlgebra() {
+        Set3a<Integer> twos = multiples(2, 20);
+        Set3a<Integer> threes = multiples(3, 20);
+        twos.add(threes);
+        assertEquals(13, twos.size());
+        assertEquals(Arrays.asList(0, 6, 12, 18), toList(threes));
+        assertEquals(Arrays.asList(0, 2, 3, 4, 6, 8, 9, 10, 12, 14, 15, 16,
+                18), toList(twos));
+
+        Set3a<Integer> evens = multiples(2, 20);
+        Set<Integer> removed = evens.remove(multiples(3, 20));
+        assertEquals(Arrays.asList(0, 6, 12, 18), toList(removed));
+        assertEquals(Arrays.asList(2, 4, 8, 10, 14, 16), toList(evens));
+
+        Set3a<Integer> fours = multiples(4, 20);
+        fours.retain(multiples(2, 10));
+        assertEquals(Arrays.asList(0, 4, 8), toList(fours));
+        assertEquals(Integer.valueOf(4), fours.select(1));
+    }
+
+    /**
+     * Creates a {@code Set3a<Integer>} holding the multiples of 1000 from 0
+     * through 1000000, and one holding 0, 1000, 2000, and the 50 numbers from
+     * 500, all of which fall between the same two elements of the first.
+     *
+     * @return the large set and the small set
+     */
+    @SuppressWarnings("unchecked")
+    private static Set3a<Integer>[] largeAndSmall() {
+        final int step = 1000;
+        final int count = 1001;
+        final int gapStart = 500;
+        final int gapCount = 50;
+        Integer[] large = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            large[i] = i * step;
+        }
+        Set3a<Integer> small = new Set3a<>();
+        for (int i = 0; i < gapCount; i++) {
+            small.add(gapStart + i);
+        }
+        for (int i = 0; i < 3; i++) {
+            small.add(i * step);
+        }
+        return new Set3a[] { Set3a.fromSorted(large), small };
+    }
+
+    /**
+     * Test for add(Set), remove(Set), and retain between a large and a small
+     * {@code Set3a}, in both directions.
+     */
+    @Test
+    public final void testSetAlgebraLargeAndSmall() {
+        final List<Integer> common = Arrays.asList(0, 1000, 2000);
+
+        Set3a<Integer>[] sets = largeAndSmall();
+        List<Integer> small = toList(sets[1]);
+        sets[0].add(sets[1]);
+        assertEquals(1001 + 50, sets[0].size());
+        assertEquals(common, toList(sets[1]));
+        assertEquals(Integer.valueOf(549), sets[0].select(50));
+        assertEquals(51, sets[0].rank(1000));
+
+        sets = largeAndSmall();
+        Set<Integer> removed = sets[0].remove(sets[1]);
+        assertEquals(common, toList(removed));
+        assertEquals(1001 - 3, sets[0].size());
+        assertEquals(Integer.valueOf(3000), sets[0].first());
+        assertEquals(small, toList(sets[1]));
+
+        sets = largeAndSmall();
+        removed = sets[1].remove(sets[0]);
+        assertEquals(common, toList(removed));
+        assertEquals(small.subList(1, 51), toList(sets[1]));
+        assertEquals(1001, sets[0].size());
+
+        sets = largeAndSmall();
+        sets[0].retain(sets[1]);
+        assertEquals(common, toList(sets[0]));
+
+        sets = largeAndSmall();
+        sets[1].retain(sets[0]);
+        assertEquals(common, toList(sets[1]));
+    }
+
+    /**
+     * Test for retain with an argument that is not a {@code Set3a}.
+     */
+    @Test
+    public final void testRetainOtherSet() {
+        Set<Integer> odds = new Set1L<>();
+        for (int x = 1; x < 20; x += 2) {
+            odds.add(x);
+        }
+        Set3a<Integer> threes = multiples(3, 20);
+        threes.retain(odds);
+        assertEquals(Arrays.asList(3, 9, 15), toList(threes));
+        assertEquals(10, odds.size());
+    }
+
+    /**
+     * Test for split and join, which must restore the original set.
+     */
+    @Test
+    public final void testSplitJoin() {
+        Set3a<Integer> s = evens();
+        Set3a<Integer> greater = new Set3a<>();
+        assertFalse(s.split(9, greater));
+        assertEquals(Arrays.asList(0, 2, 4, 6, 8), toList(s));
+        assertEquals(Arrays.asList(10, 12, 14, 16, 18), toList(greater));
+        assertEquals(2, greater.rank(14));
+        s.join(greater);
+        assertEquals(0, greater.size());
+        assertEquals(toList(evens()), toList(s));
+        assertTrue(s.split(10, greater));
+        assertEquals(Integer.valueOf(8), s.last());
+        assertEquals(Integer.valueOf(12), greater.first());
+        assertEquals(9, s.size() + greater.size());
+    }
+
+    /**
+     * Test for fromSorted, from an array and from an {@code Iterable}, and
+     * for toSortedArray.
+     */
+    @Test
+    public final void testFromSorted() {
+        final int n = 100_000;
+        Integer[] elements = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            elements[i] = 2 * i;
+        }
+        Set3a<Integer> s = Set3a.fromSorted(elements);
+        assertEquals(n, s.size());
+        assertTrue(s.contains(2 * (n - 1)));
+        assertFalse(s.contains(1));
+        assertEquals(Integer.valueOf(2 * 12_345), s.select(12_345));
+        assertEquals(Arrays.asList(elements), toList(s));
+        assertTrue(Arrays.equals(elements, s.toSortedArray(Integer[]::new)));
+
+        Set3a<String> t = Set3a.fromSorted(Arrays.asList("a", "b", "c"));
+        t.add("ab");
+        assertTrue(Arrays.equals(new String[] { "a", "ab", "b", "c" },
+                t.toSortedArray(String[]::new)));
+        assertEquals(0, Set3a.fromSorted(new String[0]).size());
+    }
+
 }
@@ -0,0 +1,73 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set4}.
+ */
+public class Set4Test extends SetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set4<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Test for add, in increasing order, of more elements than an unbalanced
+     * tree could hold without overflowing the stack in its recursive methods;
+     * then iterating must visit them in order, and removing every other one
+     * must leave the rest.
+     */
+    @Test
+    public final void testSortedAdds() {
+        final int n = 100_000;
+        Set4<Integer> s = new Set4<>();
+        for (int i = 0; i < n; i++) {
+            s.add(i);
+        }
+        assertEquals(n, s.size());
+        int expected = 0;
+        for (int x : s) {
+            assertEquals(expected, x);
+            expected++;
+        }
+        assertEquals(n, expected);
+        for (int i = 0; i < n; i += 2) {
+            assertEquals(Integer.valueOf(i), s.remove(i));
+        }
+        assertEquals(n / 2, s.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(i % 2 == 1, s.contains(i));
+        }
+    }
+
+    /**
+     * Test for removeAny until empty, which must report the elements in
+     * increasing order.
+     */
+    @Test
+    public final void testRemoveAnyUntilEmpty() {
+        final int n = 1_000;
+        Set4<Integer> s = new Set4<>();
+        for (int i = n - 1; i >= 0; i--) {
+            s.add(i);
+        }
+        for (int i = 0; i < n; i++) {
+            assertTrue(s.contains(i));
+            assertEquals(Integer.valueOf(i), s.removeAny());
+            assertFalse(s.contains(i));
+        }
+        assertEquals(0, s.size());
+    }
+
+}
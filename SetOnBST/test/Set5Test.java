@@ -0,0 +1,223 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set5}.
+ */
+public class Set5Test extends SetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set5<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Number of keys in a full node of a {@code Set5}.
+     */
+    private static final int MAX_KEYS = 63;
+
+    /**
+     * Fewest keys in a node of a {@code Set5} other than the root.
+     */
+    private static final int MIN_KEYS = 31;
+
+    /**
+     * Creates a {@code Set5<Integer>} holding the integers from {@code lo}
+     * through {@code hi - 1}, added in increasing order.
+     *
+     * @param lo
+     *            the smallest element
+     * @param hi
+     *            one more than the largest element
+     * @return the new set
+     */
+    private static Set5<Integer> range(int lo, int hi) {
+        Set5<Integer> s = new Set5<>();
+        for (int i = lo; i < hi; i++) {
+            s.add(i);
+        }
+        return s;
+    }
+
+    /**
+     * Returns a {@code TreeSet<Integer>} holding the integers from {@code lo}
+     * through {@code hi - 1}.
+     *
+     * @param lo
+     *            the smallest element
+     * @param hi
+     *            one more than the largest element
+     * @return the new set
+     */
+    private static TreeSet<Integer> expectedRange(int lo, int hi) {
+        TreeSet<Integer> s = new TreeSet<>();
+        for (int i = lo; i < hi; i++) {
+            s.add(i);
+        }
+        return s;
+    }
+
+    /**
+     * Checks that iterating over {@code s} visits exactly the elements of
+     * {@code expected}, in increasing order.
+     *
+     * @param expected
+     *            the reference set
+     * @param s
+     *            the set under test
+     */
+    private static void assertInOrder(TreeSet<Integer> expected,
+            Set5<Integer> s) {
+        assertEquals(expected.size(), s.size());
+        Iterator<Integer> it = expected.iterator();
+        for (int x : s) {
+            assertEquals(it.next(), Integer.valueOf(x));
+        }
+        assertFalse(it.hasNext());
+    }
+
+    /**
+     * Test that the root holds up to MAX_KEYS keys as a single leaf, and is
+     * split into a root with two children on the next add.
+     */
+    @Test
+    public final void testRootSplit() {
+        Set5<Integer> s = range(0, MAX_KEYS);
+        assertEquals(1, s.height());
+
+        s.add(MAX_KEYS);
+        assertEquals(2, s.height());
+        assertEquals(MAX_KEYS + 1, s.size());
+        assertInOrder(expectedRange(0, MAX_KEYS + 1), s);
+    }
+
+    /**
+     * Test for removing from a child left with MIN_KEYS keys whose sibling
+     * has more, which must borrow a key from the sibling through the parent.
+     */
+    @Test
+    public final void testBorrowFromSibling() {
+        /*
+         * Splitting the full root leaves MIN_KEYS keys in each child; the
+         * keys added after it go to the right child.
+         */
+        Set5<Integer> s = range(0, MAX_KEYS + 2);
+        assertEquals(2, s.height());
+
+        assertEquals(Integer.valueOf(0), s.remove(0));
+        assertEquals(2, s.height());
+        assertEquals(Integer.valueOf(1), s.removeAny());
+        assertEquals(2, s.height());
+        assertInOrder(expectedRange(2, MAX_KEYS + 2), s);
+
+        /*
+         * The two borrowed keys have left the right child with MIN_KEYS keys
+         * too, so the next removal merges the children.
+         */
+        assertEquals(Integer.valueOf(2), s.remove(2));
+        assertEquals(1, s.height());
+        assertInOrder(expectedRange(3, MAX_KEYS + 2), s);
+    }
+
+    /**
+     * Test for removing from a child left with MIN_KEYS keys whose sibling
+     * also has MIN_KEYS, which must merge the two with the key between them;
+     * merging the only two children of the root makes the tree one level
+     * shorter.
+     */
+    @Test
+    public final void testMergeWithSibling() {
+        Set5<Integer> s = range(0, MAX_KEYS + 1);
+        assertEquals(Integer.valueOf(MAX_KEYS), s.remove(MAX_KEYS));
+        assertEquals(2, s.height());
+
+        assertEquals(Integer.valueOf(0), s.remove(0));
+        assertEquals(1, s.height());
+        assertInOrder(expectedRange(1, MAX_KEYS), s);
+        assertEquals(2 * MIN_KEYS, s.size());
+    }
+
+    /**
+     * Test for removing keys of an internal node: replaced by the predecessor
+     * when the left child can spare a key, by the successor when the right
+     * child can, and merged down into its children otherwise.
+     */
+    @Test
+    public final void testRemoveFromInternalNode() {
+        final int median = MIN_KEYS;
+
+        Set5<Integer> s = range(0, MAX_KEYS + 1);
+        s.add(-1);
+        assertEquals(Integer.valueOf(median), s.remove(median));
+        assertEquals(2, s.height());
+        TreeSet<Integer> expected = expectedRange(-1, MAX_KEYS + 1);
+        expected.remove(median);
+        assertInOrder(expected, s);
+
+        s = range(0, MAX_KEYS + 2);
+        assertEquals(Integer.valueOf(median), s.remove(median));
+        assertEquals(2, s.height());
+        expected = expectedRange(0, MAX_KEYS + 2);
+        expected.remove(median);
+        assertInOrder(expected, s);
+
+        s = range(0, MAX_KEYS + 1);
+        s.remove(MAX_KEYS);
+        assertEquals(Integer.valueOf(median), s.remove(median));
+        assertEquals(1, s.height());
+        expected = expectedRange(0, MAX_KEYS);
+        expected.remove(median);
+        assertInOrder(expected, s);
+    }
+
+    /**
+     * Test for iterating over, and removing from, a tree of four levels,
+     * built from keys added in random order and then thinned out by random
+     * removals that make nodes throughout the tree borrow and merge.
+     */
+    @Test
+    public final void testManyLevels() {
+        final int n = 200_000;
+        final int levels = 4;
+        final Random random = new Random(1L);
+        Set5<Integer> s = new Set5<>();
+        TreeSet<Integer> expected = new TreeSet<>();
+        while (expected.size() < n) {
+            int x = random.nextInt(2 * n);
+            if (expected.add(x)) {
+                s.add(x);
+            }
+        }
+        assertEquals(levels, s.height());
+        assertInOrder(expected, s);
+
+        while (expected.size() > n / levels) {
+            int x = random.nextInt(2 * n);
+            if (expected.remove(x)) {
+                assertEquals(Integer.valueOf(x), s.remove(x));
+            } else {
+                assertFalse(s.contains(x));
+            }
+        }
+        assertInOrder(expected, s);
+        while (s.size() > 0) {
+            assertEquals(expected.pollFirst(), s.removeAny());
+        }
+        assertEquals(1, s.height());
+    }
+
+}
@@ -0,0 +1,178 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Compares the time to sort random {@code Integer}s with
+ * {@code SortingMachine5a}, with {@code SortingMachine1L}, and with
+ * {@code Arrays.sort}: for the sorting machines, adding all the entries,
+ * calling {@code changeToExtractionMode}, and then removing every entry with
+ * {@code removeFirst}; for {@code Arrays.sort}, copying the entries into an
+ * array and sorting it.
+ *
+ * <p>
+ * The optional argument is the largest number of entries (10^7 by default).
+ * {@code SortingMachine1L} is only measured up to {@code REFERENCE_LIMIT}
+ * entries, since its operations may take time linear in its size. Each
+ * measurement is the best of {@code REPEATS} runs. Run without {@code -ea},
+ * so that the times do not include the assertion checks, which in
+ * {@code SortingMachine5a} revisit part of the heap after every operation.
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public final class SortingMachineBenchmark {
+
+    /**
+     * Default largest number of entries.
+     */
+    private static final int DEFAULT_MAXIMUM_ENTRIES = 10_000_000;
+
+    /**
+     * Smallest number of entries; each further count is 10 times the
+     * previous.
+     */
+    private static final int MINIMUM_ENTRIES = 1_000;
+
+    /**
+     * Factor between successive entry counts.
+     */
+    private static final int ENTRY_COUNT_STEP = 10;
+
+    /**
+     * Largest number of entries for {@code SortingMachine1L}.
+     */
+    private static final int REFERENCE_LIMIT = 100_000;
+
+    /**
+     * Number of times each measurement is repeated; the fastest is reported.
+     */
+    private static final int REPEATS = 3;
+
+    /**
+     * Seed of the random entries.
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Sink for checksums, so the measured loops cannot be optimized away.
+     */
+    private static volatile long sink;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SortingMachineBenchmark() {
+    }
+
+    /**
+     * Returns the best time, in nanoseconds, to sort {@code entries} with
+     * machines like {@code empty}.
+     *
+     * @param empty
+     *            an empty machine in insertion mode, of the implementation
+     *            to measure
+     * @param entries
+     *            the entries to sort
+     * @return the best time of REPEATS runs
+     */
+    private static long timeMachine(SortingMachine<Integer> empty,
+            Integer[] entries) {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < REPEATS; r++) {
+            SortingMachine<Integer> machine = empty.newInstance();
+            long start = System.nanoTime();
+            for (Integer x : entries) {
+                machine.add(x);
+            }
+            machine.changeToExtractionMode();
+            long checksum = 0;
+            int previous = Integer.MIN_VALUE;
+            while (machine.size() > 0) {
+                int x = machine.removeFirst();
+                assert previous <= x : "entries out of order";
+                previous = x;
+                checksum += x;
+            }
+            best = Math.min(best, System.nanoTime() - start);
+            sink = checksum;
+        }
+        return best;
+    }
+
+    /**
+     * Returns the best time, in nanoseconds, to copy {@code entries} into an
+     * array and sort it with {@code Arrays.sort}.
+     *
+     * @param entries
+     *            the entries to sort
+     * @param order
+     *            the order to sort them in
+     * @return the best time of REPEATS runs
+     */
+    private static long timeArraysSort(Integer[] entries,
+            Comparator<Integer> order) {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < REPEATS; r++) {
+            long start = System.nanoTime();
+            Integer[] sorted = Arrays.copyOf(entries, entries.length);
+            Arrays.sort(sorted, order);
+            best = Math.min(best, System.nanoTime() - start);
+            sink = sorted[0];
+        }
+        return best;
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            the command line arguments; the optional first argument is
+     *            the largest number of entries
+     */
+    public static void main(String[] args) {
+        SimpleWriter out = new SimpleWriter1L();
+        int maximum = DEFAULT_MAXIMUM_ENTRIES;
+        if (args.length > 0) {
+            maximum = Integer.parseInt(args[0]);
+        }
+        Comparator<Integer> order = Integer::compare;
+
+        out.println("time to sort random Integers (ms); best of " + REPEATS
+                + " runs");
+        out.println(" entries    SortingMachine5a    SortingMachine1L"
+                + "    Arrays.sort");
+        Random random = new Random(SEED);
+        for (int n = MINIMUM_ENTRIES; n <= maximum; n *= ENTRY_COUNT_STEP) {
+            Integer[] entries = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                entries[i] = random.nextInt();
+            }
+            long heap = timeMachine(new SortingMachine5a<Integer>(order),
+                    entries);
+            String reference = "-";
+            if (n <= REFERENCE_LIMIT) {
+                reference = String.format("%.2f",
+                        timeMachine(new SortingMachine1L<Integer>(order),
+                                entries) / NANOS_PER_MILLI);
+            }
+            long arrays = timeArraysSort(entries, order);
+            out.println(String.format("%8d    %16.2f    %16s    %11.2f", n,
+                    heap / NANOS_PER_MILLI, reference,
+                    arrays / NANOS_PER_MILLI));
+        }
+
+        out.close();
+    }
+
+}
@@ -1,16 +1,31 @@
 import java.lang.reflect.Constructor;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
-import components.queue.Queue;
-import components.queue.Queue1L;
 import components.sortingmachine.SortingMachine;
 import components.sortingmachine.SortingMachineSecondary;
 
 /**
- * {@code SortingMachine} represented as a {@code Queue} and an array (using an
- * embedding of heap sort), with implementations of primary methods.
+ * {@code SortingMachine} represented as an array (using an embedding of heap
+ * sort), with implementations of primary methods.
+ *
+ * <p>
+ * In insertion mode the entries are appended to a growable array, which
+ * {@code changeToExtractionMode} then turns into a heap in place, so no entry
+ * is ever copied out of a staging buffer. A machine made by
+ * {@code withExpectedSize} starts with room for the given number of entries
+ * and does not grow the array until more than that are added.
+ *
+ * <p>
+ * A machine constructed with a {@code limit} keeps only the {@code limit}
+ * entries that come first in its order (ties broken arbitrarily): in insertion
+ * mode it holds them in a heap of at most {@code limit} entries, with the
+ * entry that comes last at the root, and {@code add} discards whichever entry
+ * would be the {@code (limit + 1)}-th. Taking the top k of n entries this way
+ * needs O(k) space and O(n log k) time, and {@code changeToExtractionMode}
+ * O(k) time.
  *
  * @param <T>
  *            type of {@code SortingMachine} entries
@@ -43,22 +58,22 @@ import components.sortingmachine.SortingMachineSecondary;
  * </pre>
  * @convention <pre>
  * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * $this.reversedOrder = [the reverse of $this.machineOrder]  and
+ * ($this.limit = NO_LIMIT  or  0 <= $this.limit)  and
+ * 0 <= $this.heapSize <= |$this.heap|  and
+ * [entries in $this.heap[0, $this.heapSize) are not null]  and
  * if $this.insertionMode then
- *   $this.heapSize = 0
+ *   $this.heapSize <= $this.limit  and
+ *   if $this.limit /= NO_LIMIT then
+ *     SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+ *       [relation computed by $this.reversedOrder.compare method])
  * else
- *   $this.entries = <>  and
- *   for all i: integer
- *       where (0 <= i  and  i < |$this.heap|)
- *     ([entry at position i in $this.heap is not null])  and
  *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
- *     [relation computed by $this.machineOrder.compare method])  and
- *   0 <= $this.heapSize <= |$this.heap|
+ *     [relation computed by $this.machineOrder.compare method])
  * </pre>
  * @correspondence <pre>
- * if $this.insertionMode then
- *   this = (true, $this.machineOrder, multiset_entries($this.entries))
- * else
- *   this = (false, $this.machineOrder, multiset_entries($this.heap[0, $this.heapSize)))
+ * this = ($this.insertionMode, $this.machineOrder,
+ *         multiset_entries($this.heap[0, $this.heapSize)))
  * </pre>
  *
  * @author Keshab Gautam, Tej Patel
@@ -70,20 +85,37 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * Private members --------------------------------------------------------
      */
 
+    /**
+     * Value of {@code limit} for a machine that keeps all its entries.
+     */
+    private static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    /**
+     * Initial capacity of the heap, unless a smaller limit or an expected size
+     * is given.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
     /**
      * Order.
      */
     private Comparator<T> machineOrder;
 
     /**
-     * Insertion mode.
+     * Reverse of the order, for the heap of a machine with a limit in
+     * insertion mode.
      */
-    private boolean insertionMode;
+    private Comparator<T> reversedOrder;
 
     /**
-     * Entries.
+     * Largest number of entries kept, or {@code NO_LIMIT}.
      */
-    private Queue<T> entries;
+    private int limit;
+
+    /**
+     * Insertion mode.
+     */
+    private boolean insertionMode;
 
     /**
      * Heap.
@@ -95,35 +127,16 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      */
     private int heapSize;
 
-    /**
-     * Exchanges entries at indices {@code i} and {@code j} of {@code array}.
-     *
-     * @param <T>
-     *            type of array entries
-     * @param array
-     *            the array whose entries are to be exchanged
-     * @param i
-     *            one index
-     * @param j
-     *            the other index
-     * @updates array
-     * @requires 0 <= i < |array| and 0 <= j < |array|
-     * @ensures array = [#array with entries at indices i and j exchanged]
-     */
-    private static <T> void exchangeEntries(T[] array, int i, int j) {
-        if (i != j) {
-            T tmp = array[i];
-            array[i] = array[j];
-            array[j] = tmp;
-        }
-
-    }
-
     /**
      * Given an array that represents a complete binary tree and an index
      * referring to the root of a subtree that would be a heap except for its
      * root, sifts the root down to turn that whole subtree into a heap.
      *
+     * <p>
+     * The root entry is lifted out, leaving a "hole" that moves down the path
+     * of smaller children until the root entry fits there; each level costs
+     * two comparisons and one write, instead of an exchange.
+     *
      * @param <T>
      *            type of array entries
      * @param array
@@ -134,12 +147,11 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      *            the index of the last entry in the heap
      * @param order
      *            total preorder for sorting
+     * @return the index at which the entry at {@code top} comes to rest
      * @updates array
      * @requires <pre>
-     * 0 <= top  and  last < |array|  and
-     * for all i: integer
-     *     where (0 <= i  and  i < |array|)
-     *   ([entry at position i in array is not null])  and
+     * 0 <= top  and  top < |array|  and  last < |array|  and
+     * [entries in array[top, last] are not null]  and
      * [subtree rooted at {@code top} is a complete binary tree]  and
      * SUBTREE_IS_HEAP(array, 2 * top + 1, last,
      *     [relation computed by order.compare method])  and
@@ -153,153 +165,143 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * perms(array, #array)  and
      * SUBTREE_ARRAY_ENTRIES(array, top, last) =
      *  SUBTREE_ARRAY_ENTRIES(#array, top, last)  and
-     * [the other entries in array are the same as in #array]
+     * array[siftDown] = #array[top]  and
+     * [the entries that differ from #array are on the path from top to
+     *  siftDown]
      * </pre>
      */
-    private static <T> void siftDown(T[] array, int top, int last,
+    private static <T> int siftDown(T[] array, int top, int last,
             Comparator<T> order) {
         assert array != null : "Violation of: array is not null";
         assert order != null : "Violation of: order is not null";
         assert 0 <= top : "Violation of: 0 <= top";
+        assert top < array.length : "Violation of: top < |array|";
         assert last < array.length : "Violation of: last < |array|";
-        for (int i = 0; i < array.length; i++) {
-            assert array[i] != null : ""
-                    + "Violation of: all entries in array are not null";
-        }
-        assert isHeap(array, 2 * top + 1, last, order) : ""
-                + "Violation of: SUBTREE_IS_HEAP(array, 2 * top + 1, last,"
-                + " [relation computed by order.compare method])";
-        assert isHeap(array, 2 * top + 2, last, order) : ""
-                + "Violation of: SUBTREE_IS_HEAP(array, 2 * top + 2, last,"
-                + " [relation computed by order.compare method])";
         /*
-         * Impractical to check last requires clause; no need to check the other
-         * requires clause, because it must be true when using the array
-         * representation for a complete binary tree.
+         * Checking that the subtrees are heaps, or that the entries are not
+         * null, would take time linear in |array| on every call, and so
+         * quadratic time to build a heap; the convention check in the kernel
+         * methods covers them. No need to check the other requires clause,
+         * because it must be true when using the array representation for a
+         * complete binary tree.
          */
 
-        int left = 2 * top + 1;
-        int right = 2 * top + 2;
-        if (left <= last) {
-            if (order.compare(array[top], array[left]) > 0) {
-                exchangeEntries(array, top, left);
-                siftDown(array, top, last, order);
+        T entry = array[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+        boolean placed = false;
+        while (child <= last && !placed) {
+            int right = child + 1;
+            if (right <= last
+                    && order.compare(array[right], array[child]) < 0) {
+                child = right;
             }
-        }
-
-        else if (right <= last) {
-            if (order.compare(array[left], array[right]) <= 0) {
-                if (order.compare(array[top], array[left]) > 0) {
-                    exchangeEntries(array, top, left);
-                    siftDown(array, top, last, order);
-                }
+            if (order.compare(array[child], entry) < 0) {
+                array[hole] = array[child];
+                hole = child;
+                child = 2 * hole + 1;
             } else {
-                if (order.compare(array[top], array[right]) > 0) {
-                    exchangeEntries(array, top, right);
-                    siftDown(array, top, last, order);
-                }
+                placed = true;
             }
-
         }
+        array[hole] = entry;
+        return hole;
 
     }
 
     /**
-     * Heapifies the subtree of the given array rooted at the given {@code top}.
+     * Given an array that represents a complete binary tree and the index of
+     * its last entry, which is the only entry that may violate the heap
+     * ordering, sifts that entry up to turn the whole tree into a heap.
      *
      * @param <T>
      *            type of array entries
      * @param array
      *            the complete binary tree
-     * @param top
-     *            the index of the root of the "subtree" to heapify
+     * @param last
+     *            the index of the last entry in the heap
      * @param order
-     *            the total preorder for sorting
+     *            total preorder for sorting
+     * @return the index at which the entry at {@code last} comes to rest
      * @updates array
      * @requires <pre>
-     * 0 <= top  and
-     * for all i: integer
-     *     where (0 <= i  and  i < |array|)
-     *   ([entry at position i in array is not null])  and
-     * [subtree rooted at {@code top} is a complete binary tree]  and
+     * 0 <= last  and  last < |array|  and
+     * [entries in array[0, last] are not null]  and
+     * SUBTREE_IS_HEAP(array, 0, last - 1,
+     *     [relation computed by order.compare method])  and
      * IS_TOTAL_PREORDER([relation computed by order.compare method])
      * </pre>
      * @ensures <pre>
-     * SUBTREE_IS_HEAP(array, top, |array| - 1,
+     * SUBTREE_IS_HEAP(array, 0, last,
      *     [relation computed by order.compare method])  and
-     * perms(array, #array)
+     * perms(array, #array)  and
+     * array[siftUp] = #array[last]  and
+     * [the entries that differ from #array are on the path from siftUp to
+     *  last]
      * </pre>
      */
-    private static <T> void heapify(T[] array, int top, Comparator<T> order) {
+    private static <T> int siftUp(T[] array, int last, Comparator<T> order) {
         assert array != null : "Violation of: array is not null";
         assert order != null : "Violation of: order is not null";
-        assert 0 <= top : "Violation of: 0 <= top";
-        for (int i = 0; i < array.length; i++) {
-            assert array[i] != null : ""
-                    + "Violation of: all entries in array are not null";
-        }
+        assert 0 <= last : "Violation of: 0 <= last";
+        assert last < array.length : "Violation of: last < |array|";
         /*
-         * Impractical to check last requires clause; no need to check the other
-         * requires clause, because it must be true when using the array
-         * representation for a complete binary tree.
+         * Impractical to check the other requires clauses.
          */
 
-        int left = 2 * top + 1;
-        int right = 2 * top + 2;
-        if (left < array.length) {
-            heapify(array, left, order);
-        } else if (right < array.length) {
-            heapify(array, left, order);
-            heapify(array, right, order);
-        }
-
-        if (array.length > 0) {
-            siftDown(array, top, array.length - 1, order);
+        T entry = array[last];
+        int hole = last;
+        int parent = (hole - 1) / 2;
+        while (hole > 0 && order.compare(entry, array[parent]) < 0) {
+            array[hole] = array[parent];
+            hole = parent;
+            parent = (hole - 1) / 2;
         }
+        array[hole] = entry;
+        return hole;
 
     }
 
     /**
-     * Constructs and returns an array representing a heap with the entries from
-     * the given {@code Queue}.
+     * Rearranges the entries of the given array through {@code last} into a
+     * heap, bottom-up: every subtree rooted at an inner node, from the last
+     * one back to the root, is sifted down once its two subtrees are heaps.
+     * This takes linear time and no extra space.
      *
      * @param <T>
-     *            type of {@code Queue} and array entries
-     * @param q
-     *            the {@code Queue} with the entries for the heap
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param last
+     *            the index of the last entry in the heap
      * @param order
      *            the total preorder for sorting
-     * @return the array representation of a heap
-     * @clears q
-     * @requires IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * @updates array
+     * @requires <pre>
+     * -1 <= last  and  last < |array|  and
+     * [entries in array[0, last] are not null]  and
+     * IS_TOTAL_PREORDER([relation computed by order.compare method])
+     * </pre>
      * @ensures <pre>
-     * SUBTREE_IS_HEAP(buildHeap, 0, |buildHeap| - 1)  and
-     * perms(buildHeap, #q)  and
-     * for all i: integer
-     *     where (0 <= i  and  i < |buildHeap|)
-     *   ([entry at position i in buildHeap is not null])  and
+     * SUBTREE_IS_HEAP(array, 0, last,
+     *     [relation computed by order.compare method])  and
+     * perms(array, #array)  and
+     * [the entries after last in array are the same as in #array]
      * </pre>
      */
-    @SuppressWarnings("unchecked")
-    private static <T> T[] buildHeap(Queue<T> q, Comparator<T> order) {
-        assert q != null : "Violation of: q is not null";
+    private static <T> void heapify(T[] array, int last, Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
         assert order != null : "Violation of: order is not null";
+        assert -1 <= last : "Violation of: -1 <= last";
+        assert last < array.length : "Violation of: last < |array|";
         /*
-         * Impractical to check the requires clause.
-         */
-        /*
-         * With "new T[...]" in place of "new Object[...]" it does not compile;
-         * as shown, it results in a warning about an unchecked cast, though it
-         * cannot fail.
+         * Impractical to check the other requires clauses.
          */
-        T[] heap = (T[]) (new Object[q.length()]);
-        int i = 0;
-        while (q.length() > 0) {
-            heap[i] = q.dequeue();
-            i++;
+
+        for (int top = (last + 1) / 2 - 1; top >= 0; top--) {
+            siftDown(array, top, last, order);
         }
-        heapify(heap, 0, order);
-        return heap;
+
     }
 
     /**
@@ -320,9 +322,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      *         given {@code top} is a heap; false otherwise
      * @requires <pre>
      * 0 <= top  and  last < |array|  and
-     * for all i: integer
-     *     where (0 <= i  and  i < |array|)
-     *   ([entry at position i in array is not null])  and
+     * [entries in array[top, last] are not null]  and
      * [subtree rooted at {@code top} is a complete binary tree]
      * </pre>
      * @ensures <pre>
@@ -335,11 +335,8 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         assert array != null : "Violation of: array is not null";
         assert 0 <= top : "Violation of: 0 <= top";
         assert last < array.length : "Violation of: last < |array|";
-        for (int i = 0; i < array.length; i++) {
-            assert array[i] != null : ""
-                    + "Violation of: all entries in array are not null";
-        }
         /*
+         * The entries through last are not null if comparing them succeeds.
          * No need to check the other requires clause, because it must be true
          * when using the Array representation for a complete binary tree.
          */
@@ -357,49 +354,86 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         return isHeap;
     }
 
+    /**
+     * Checks the heap ordering around the path from the root to {@code end}:
+     * that every entry on the path comes no later in {@code order} than its
+     * children. After {@code siftUp} or {@code siftDown} changes only entries
+     * on that path, this shows that the whole tree is a heap again, in time
+     * proportional to its height.
+     *
+     * @param <T>
+     *            type of array entries
+     * @param array
+     *            the complete binary tree
+     * @param end
+     *            the index of the last entry on the path
+     * @param last
+     *            the index of the last entry in the heap
+     * @param order
+     *            total preorder for sorting
+     * @return true if the entries on the path are in heap order with their
+     *         children; false otherwise
+     * @requires <pre>
+     * 0 <= end  and  last < |array|  and
+     * [entries in array[0, last] are not null]
+     * </pre>
+     * @ensures <pre>
+     * pathIsHeap = [for every entry on the path from index 0 to index end
+     *  whose index is at most last, each of its children through last does
+     *  not come before it in order]
+     * </pre>
+     */
+    private static <T> boolean pathIsHeap(T[] array, int end, int last,
+            Comparator<T> order) {
+        assert array != null : "Violation of: array is not null";
+        assert 0 <= end : "Violation of: 0 <= end";
+        assert last < array.length : "Violation of: last < |array|";
+
+        boolean isHeap = true;
+        int i = end;
+        boolean done = false;
+        while (isHeap && !done) {
+            if (i <= last) {
+                int left = 2 * i + 1;
+                if (left <= last) {
+                    isHeap = order.compare(array[i], array[left]) <= 0;
+                }
+                if (isHeap && left + 1 <= last) {
+                    isHeap = order.compare(array[i], array[left + 1]) <= 0;
+                }
+            }
+            done = i == 0;
+            i = (i - 1) / 2;
+        }
+        return isHeap;
+    }
+
     /**
      * Checks that the part of the convention repeated below holds for the
-     * current representation.
+     * current representation. The heap ordering is not checked here, since
+     * that takes time linear in the size of the heap; instead, the methods
+     * that change it check it where they change it: {@code add} and
+     * {@code removeFirst} along the path they changed, with
+     * {@code pathIsHeap}, and {@code changeToExtractionMode}, which already
+     * takes linear time, over the whole heap.
      *
      * @return true if the convention holds (or if assertion checking is off);
      *         otherwise reports a violated assertion
      * @convention <pre>
+     * ($this.limit = NO_LIMIT  or  0 <= $this.limit)  and
+     * 0 <= $this.heapSize <= |$this.heap|  and
      * if $this.insertionMode then
-     *   $this.heapSize = 0
-     * else
-     *   $this.entries = <>  and
-     *   for all i: integer
-     *       where (0 <= i  and  i < |$this.heap|)
-     *     ([entry at position i in $this.heap is not null])  and
-     *   SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
-     *     [relation computed by $this.machineOrder.compare method])  and
-     *   0 <= $this.heapSize <= |$this.heap|
+     *   $this.heapSize <= $this.limit
      * </pre>
      */
     private boolean conventionHolds() {
-        if (this.insertionMode) {
-            assert this.heapSize == 0 : ""
-                    + "Violation of: if $this.insertionMode then $this.heapSize = 0";
-        } else {
-            assert this.entries.length() == 0 : ""
-                    + "Violation of: if not $this.insertionMode then $this.entries = <>";
-            assert 0 <= this.heapSize : ""
-                    + "Violation of: if not $this.insertionMode then 0 <= $this.heapSize";
-            assert this.heapSize <= this.heap.length : ""
-                    + "Violation of: if not $this.insertionMode then"
-                    + " $this.heapSize <= |$this.heap|";
-            for (int i = 0; i < this.heap.length; i++) {
-                assert this.heap[i] != null : ""
-                        + "Violation of: if not $this.insertionMode then"
-                        + " all entries in $this.heap are not null";
-            }
-            assert isHeap(this.heap, 0, this.heapSize - 1,
-                    this.machineOrder) : ""
-                            + "Violation of: if not $this.insertionMode then"
-                            + " SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,"
-                            + " [relation computed by $this.machineOrder.compare"
-                            + " method])";
-        }
+        assert this.limit == NO_LIMIT || 0 <= this.limit : ""
+                + "Violation of: $this.limit = NO_LIMIT or 0 <= $this.limit";
+        assert 0 <= this.heapSize && this.heapSize <= this.heap.length : ""
+                + "Violation of: 0 <= $this.heapSize <= |$this.heap|";
+        assert !this.insertionMode || this.heapSize <= this.limit : ""
+                + "Violation of: if $this.insertionMode then"
+                + " $this.heapSize <= $this.limit";
         return true;
     }
 
@@ -412,16 +446,24 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * @ensures <pre>
      * $this.insertionMode = true  and
      * $this.machineOrder = order  and
-     * $this.entries = <>  and
-     * $this.heapSize = 0
+     * $this.reversedOrder = [the reverse of order]  and
+     * $this.heapSize = 0  and
+     * |$this.heap| = min($this.limit, INITIAL_CAPACITY)
      * </pre>
      */
+    @SuppressWarnings("unchecked")
     private void createNewRep(Comparator<T> order) {
 
         this.insertionMode = true;
         this.machineOrder = order;
+        this.reversedOrder = order.reversed();
         this.heapSize = 0;
-        this.entries = new Queue1L<T>();
+        /*
+         * With "new T[...]" in place of "new Object[...]" it does not compile;
+         * as shown, it results in a warning about an unchecked cast, though it
+         * cannot fail.
+         */
+        this.heap = (T[]) (new Object[Math.min(this.limit, INITIAL_CAPACITY)]);
 
     }
 
@@ -436,10 +478,62 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      *            total preorder for sorting
      */
     public SortingMachine5a(Comparator<T> order) {
+        this.limit = NO_LIMIT;
         this.createNewRep(order);
         assert this.conventionHolds();
     }
 
+    /**
+     * Constructor from order and the largest number of entries to keep. Once
+     * {@code limit} entries have been added, each further {@code add} keeps
+     * the {@code limit} entries that come first in {@code order} and discards
+     * the other.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param limit
+     *            the largest number of entries kept
+     * @requires 0 <= limit
+     */
+    public SortingMachine5a(Comparator<T> order, int limit) {
+        assert 0 <= limit : "Violation of: 0 <= limit";
+
+        this.limit = limit;
+        this.createNewRep(order);
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Returns a new machine without a limit whose array starts with room for
+     * {@code expectedSize} entries, so that adding that many entries never
+     * has to copy the array to grow it. (This is a factory rather than a
+     * constructor because {@code (Comparator, int)} is already the signature
+     * of the constructor with a limit.)
+     *
+     * @param <T>
+     *            type of {@code SortingMachine} entries
+     * @param order
+     *            total preorder for sorting
+     * @param expectedSize
+     *            the number of entries expected to be added
+     * @return the new machine
+     * @requires 0 <= expectedSize
+     * @ensures <pre>
+     * withExpectedSize = (true, order, {})  and
+     * [withExpectedSize has room for expectedSize entries without growing]
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> SortingMachine5a<T> withExpectedSize(Comparator<T> order,
+            int expectedSize) {
+        assert 0 <= expectedSize : "Violation of: 0 <= expectedSize";
+
+        SortingMachine5a<T> machine = new SortingMachine5a<>(order);
+        machine.heap = (T[]) (new Object[expectedSize]);
+        assert machine.conventionHolds();
+        return machine;
+    }
+
     /*
      * Standard methods -------------------------------------------------------
      */
@@ -448,8 +542,18 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     @Override
     public final SortingMachine<T> newInstance() {
         try {
-            Constructor<?> c = this.getClass().getConstructor(Comparator.class);
-            return (SortingMachine<T>) c.newInstance(this.machineOrder);
+            SortingMachine<T> result;
+            if (this.limit == NO_LIMIT) {
+                Constructor<?> c = this.getClass()
+                        .getConstructor(Comparator.class);
+                result = (SortingMachine<T>) c.newInstance(this.machineOrder);
+            } else {
+                Constructor<?> c = this.getClass()
+                        .getConstructor(Comparator.class, int.class);
+                result = (SortingMachine<T>) c.newInstance(this.machineOrder,
+                        this.limit);
+            }
+            return result;
         } catch (ReflectiveOperationException e) {
             throw new AssertionError(
                     "Cannot construct object of type " + this.getClass());
@@ -477,7 +581,8 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         SortingMachine5a<T> localSource = (SortingMachine5a<T>) source;
         this.insertionMode = localSource.insertionMode;
         this.machineOrder = localSource.machineOrder;
-        this.entries = localSource.entries;
+        this.reversedOrder = localSource.reversedOrder;
+        this.limit = localSource.limit;
         this.heap = localSource.heap;
         this.heapSize = localSource.heapSize;
         localSource.createNewRep(localSource.machineOrder);
@@ -494,7 +599,38 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         assert x != null : "Violation of: x is not null";
         assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
 
-        this.entries.enqueue(x);
+        /*
+         * Without a limit, heapSize < limit always holds.
+         */
+        if (this.heapSize < this.limit) {
+            if (this.heapSize == this.heap.length) {
+                this.heap = Arrays.copyOf(this.heap, (int) Math.min(this.limit,
+                        Math.max(INITIAL_CAPACITY, 2L * this.heap.length)));
+            }
+            this.heap[this.heapSize] = x;
+            if (this.limit != NO_LIMIT) {
+                siftUp(this.heap, this.heapSize, this.reversedOrder);
+                assert pathIsHeap(this.heap, this.heapSize, this.heapSize,
+                        this.reversedOrder) : ""
+                                + "Violation of: SUBTREE_IS_HEAP($this.heap,"
+                                + " 0, $this.heapSize - 1, [relation computed"
+                                + " by $this.reversedOrder.compare method])";
+            }
+            this.heapSize++;
+        } else if (this.heapSize > 0
+                && this.machineOrder.compare(x, this.heap[0]) < 0) {
+            /*
+             * x comes before the last of the entries kept, which it replaces.
+             */
+            this.heap[0] = x;
+            int hole = siftDown(this.heap, 0, this.heapSize - 1,
+                    this.reversedOrder);
+            assert pathIsHeap(this.heap, hole, this.heapSize - 1,
+                    this.reversedOrder) : ""
+                            + "Violation of: SUBTREE_IS_HEAP($this.heap, 0,"
+                            + " $this.heapSize - 1, [relation computed by"
+                            + " $this.reversedOrder.compare method])";
+        }
 
         assert this.conventionHolds();
     }
@@ -503,9 +639,16 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     public final void changeToExtractionMode() {
         assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
 
-        this.heap = buildHeap(this.entries, this.machineOrder);
-        this.heapSize = this.heap.length;
+        /*
+         * The entries are either in no particular order or, with a limit, in a
+         * heap under the reverse order; either way they are heapified in place.
+         */
+        heapify(this.heap, this.heapSize - 1, this.machineOrder);
         this.insertionMode = false;
+        assert isHeap(this.heap, 0, this.heapSize - 1, this.machineOrder) : ""
+                + "Violation of: SUBTREE_IS_HEAP($this.heap, 0,"
+                + " $this.heapSize - 1, [relation computed by"
+                + " $this.machineOrder.compare method])";
 
         assert this.conventionHolds();
     }
@@ -516,9 +659,16 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
                 .isInInsertionMode() : "Violation of: not this.insertion_mode";
         assert this.size() > 0 : "Violation of: this.contents /= {}";
         T remove = this.heap[0];
-        exchangeEntries(this.heap, 0, this.heapSize - 1);
         this.heapSize--;
-        siftDown(this.heap, 0, this.heapSize - 1, this.machineOrder);
+        this.heap[0] = this.heap[this.heapSize];
+        this.heap[this.heapSize] = null;
+        int hole = siftDown(this.heap, 0, this.heapSize - 1,
+                this.machineOrder);
+        assert pathIsHeap(this.heap, hole, this.heapSize - 1,
+                this.machineOrder) : ""
+                        + "Violation of: SUBTREE_IS_HEAP($this.heap, 0,"
+                        + " $this.heapSize - 1, [relation computed by"
+                        + " $this.machineOrder.compare method])";
         assert this.conventionHolds();
 
         return remove;
@@ -540,15 +690,8 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     @Override
     public final int size() {
 
-        int size = 0;
-        if (this.insertionMode) {
-            size = this.entries.length();
-        } else {
-            size = this.heapSize;
-        }
-
         assert this.conventionHolds();
-        return size;
+        return this.heapSize;
     }
 
     @Override
@@ -563,12 +706,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     private final class SortingMachine5aIterator implements Iterator<T> {
 
         /**
-         * Representation iterator when in insertion mode.
-         */
-        private Iterator<T> queueIterator;
-
-        /**
-         * Representation iterator count when in extraction mode.
+         * Representation iterator count.
          */
         private int arrayCurrentIndex;
 
@@ -576,22 +714,14 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
          * No-argument constructor.
          */
         private SortingMachine5aIterator() {
-            if (SortingMachine5a.this.insertionMode) {
-                this.queueIterator = SortingMachine5a.this.entries.iterator();
-            } else {
-                this.arrayCurrentIndex = 0;
-            }
+            this.arrayCurrentIndex = 0;
             assert SortingMachine5a.this.conventionHolds();
         }
 
         @Override
         public boolean hasNext() {
-            boolean hasNext;
-            if (SortingMachine5a.this.insertionMode) {
-                hasNext = this.queueIterator.hasNext();
-            } else {
-                hasNext = this.arrayCurrentIndex < SortingMachine5a.this.heapSize;
-            }
+            boolean hasNext = this.arrayCurrentIndex < SortingMachine5a.this
+                    .heapSize;
             assert SortingMachine5a.this.conventionHolds();
             return hasNext;
         }
@@ -607,13 +737,8 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
                  */
                 throw new NoSuchElementException();
             }
-            T next;
-            if (SortingMachine5a.this.insertionMode) {
-                next = this.queueIterator.next();
-            } else {
-                next = SortingMachine5a.this.heap[this.arrayCurrentIndex];
-                this.arrayCurrentIndex++;
-            }
+            T next = SortingMachine5a.this.heap[this.arrayCurrentIndex];
+            this.arrayCurrentIndex++;
             assert SortingMachine5a.this.conventionHolds();
             return next;
         }
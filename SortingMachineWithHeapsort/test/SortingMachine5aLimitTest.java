@@ -0,0 +1,125 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+import components.sortingmachine.SortingMachine1L;
+
+/**
+ * Customized JUnit test fixture for {@code SortingMachine5a} constructed with
+ * a limit. The limit used for the inherited tests is larger than the number
+ * of entries they add, so the machine must behave like one without a limit.
+ */
+public final class SortingMachine5aLimitTest extends SortingMachineTest {
+
+    /**
+     * Limit for the machines under test in the inherited tests.
+     */
+    private static final int LIMIT = 20;
+
+    @Override
+    protected SortingMachine<String> constructorTest(Comparator<String> order) {
+        return new SortingMachine5a<String>(order, LIMIT);
+    }
+
+    @Override
+    protected SortingMachine<String> constructorRef(Comparator<String> order) {
+        return new SortingMachine1L<String>(order);
+    }
+
+    /**
+     * Adds {@code entries} to a machine with limit {@code k}, and checks that
+     * it keeps exactly the first {@code k} of them in order.
+     *
+     * @param entries
+     *            the entries to add
+     * @param k
+     *            the limit
+     */
+    private static void checkTopK(Integer[] entries, int k) {
+        SortingMachine<Integer> m = new SortingMachine5a<>(Integer::compare,
+                k);
+        for (Integer x : entries) {
+            m.add(x);
+        }
+        int kept = Math.min(k, entries.length);
+        assertEquals(kept, m.size());
+        m.changeToExtractionMode();
+        Integer[] expected = Arrays.copyOf(entries, entries.length);
+        Arrays.sort(expected);
+        for (int i = 0; i < kept; i++) {
+            assertEquals(expected[i], m.removeFirst());
+        }
+        assertEquals(0, m.size());
+    }
+
+    /**
+     * Test keeping the top 100 of many random entries, with and without
+     * duplicates.
+     */
+    @Test
+    public final void testTopKRandom() {
+        final int n = 100_000;
+        final int k = 100;
+        Random random = new Random(n);
+        Integer[] distinct = new Integer[n];
+        Integer[] duplicates = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            distinct[i] = random.nextInt();
+            duplicates[i] = random.nextInt(k / 2);
+        }
+        checkTopK(distinct, k);
+        checkTopK(duplicates, k);
+    }
+
+    /**
+     * Test keeping the top k of entries in increasing and decreasing order,
+     * for several k including 0, 1, and more than the number of entries.
+     */
+    @Test
+    public final void testTopKOrderedInput() {
+        final int n = 1_000;
+        Integer[] increasing = new Integer[n];
+        Integer[] decreasing = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            increasing[i] = i;
+            decreasing[i] = n - i;
+        }
+        for (int k : new int[] { 0, 1, 2, 17, n, 2 * n }) {
+            checkTopK(increasing, k);
+            checkTopK(decreasing, k);
+        }
+    }
+
+    /**
+     * Test that clear, newInstance, and transferFrom keep the limit.
+     */
+    @Test
+    public final void testLimitKept() {
+        final int k = 3;
+        SortingMachine<Integer> m = new SortingMachine5a<>(Integer::compare,
+                k);
+        SortingMachine<Integer> n = m.newInstance();
+        for (int i = 10; i > 0; i--) {
+            m.add(i);
+            n.add(i);
+        }
+        assertEquals(k, m.size());
+        assertEquals(k, n.size());
+        m.clear();
+        m.transferFrom(n);
+        assertEquals(0, n.size());
+        for (int i = 0; i > -k; i--) {
+            n.add(i);
+        }
+        n.add(-k);
+        assertEquals(k, n.size());
+        m.changeToExtractionMode();
+        assertEquals(Integer.valueOf(1), m.removeFirst());
+    }
+
+}
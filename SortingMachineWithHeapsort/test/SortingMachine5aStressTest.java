@@ -0,0 +1,178 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.sortingmachine.SortingMachine;
+
+/**
+ * Stress tests for {@code SortingMachine5a}: drains machines filled with
+ * large random, duplicate-heavy, and adversarial inputs, and many small
+ * random ones, and checks that the entries come out in order and that none
+ * is lost or duplicated.
+ *
+ * @author Keshab Gautam, Tej Patel
+ *
+ */
+public final class SortingMachine5aStressTest {
+
+    /**
+     * Number of entries in each large input.
+     */
+    private static final int LARGE = 1_000_000;
+
+    /**
+     * Number of small random inputs.
+     */
+    private static final int SMALL_TRIALS = 10_000;
+
+    /**
+     * Largest number of entries in a small input.
+     */
+    private static final int SMALL_MAXIMUM = 40;
+
+    /**
+     * Seed of the random inputs.
+     */
+    private static final long SEED = 20_231_018;
+
+    /**
+     * Natural order on {@code Integer}.
+     */
+    private static final Comparator<Integer> ORDER = Integer::compare;
+
+    /**
+     * Sorts {@code entries} with a {@code SortingMachine5a} ordered by
+     * {@code order}, and checks the result against {@code Arrays.sort}, which
+     * is stable, by comparing entries with {@code order}.
+     *
+     * @param entries
+     *            the entries to sort
+     * @param order
+     *            the order to sort them in
+     */
+    private static void checkSort(Integer[] entries,
+            Comparator<Integer> order) {
+        SortingMachine<Integer> m = new SortingMachine5a<>(order);
+        for (Integer x : entries) {
+            m.add(x);
+        }
+        m.changeToExtractionMode();
+        assertEquals(entries.length, m.size());
+
+        Integer[] expected = Arrays.copyOf(entries, entries.length);
+        Arrays.sort(expected, order);
+        Integer[] actual = new Integer[entries.length];
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = m.removeFirst();
+            assertEquals(0, order.compare(expected[i], actual[i]));
+        }
+        assertEquals(0, m.size());
+
+        /*
+         * Entries that are equal in order may come out in any order, so
+         * compare the multisets by their natural order.
+         */
+        Arrays.sort(expected);
+        Arrays.sort(actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    /**
+     * Returns an array of {@code n} entries whose i-th entry is
+     * {@code f(i)}.
+     *
+     * @param n
+     *            the number of entries
+     * @param f
+     *            the function giving each entry
+     * @return the entries
+     */
+    private static Integer[] entries(int n,
+            java.util.function.IntUnaryOperator f) {
+        Integer[] entries = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            entries[i] = f.applyAsInt(i);
+        }
+        return entries;
+    }
+
+    /**
+     * Test with distinct random entries.
+     */
+    @Test
+    public final void testRandom() {
+        Random random = new Random(SEED);
+        checkSort(entries(LARGE, i -> random.nextInt()), ORDER);
+    }
+
+    /**
+     * Test with random entries taking only a few distinct values.
+     */
+    @Test
+    public final void testDuplicateHeavy() {
+        final int values = 3;
+        Random random = new Random(SEED);
+        checkSort(entries(LARGE, i -> random.nextInt(values)), ORDER);
+    }
+
+    /**
+     * Test with all entries equal.
+     */
+    @Test
+    public final void testAllEqual() {
+        checkSort(entries(LARGE, i -> 7), ORDER);
+    }
+
+    /**
+     * Test with entries already in order, and in reverse order.
+     */
+    @Test
+    public final void testSortedAndReversed() {
+        checkSort(entries(LARGE, i -> i), ORDER);
+        checkSort(entries(LARGE, i -> LARGE - i), ORDER);
+    }
+
+    /**
+     * Test with entries rising then falling ("organ pipe"), and with a
+     * repeating rising run ("sawtooth").
+     */
+    @Test
+    public final void testOrganPipeAndSawtooth() {
+        final int period = 1_000;
+        checkSort(entries(LARGE, i -> Math.min(i, LARGE - i)), ORDER);
+        checkSort(entries(LARGE, i -> i % period), ORDER);
+    }
+
+    /**
+     * Test with an order that has ties between unequal entries, and with the
+     * reverse of the natural order.
+     */
+    @Test
+    public final void testOtherOrders() {
+        final int bucket = 10;
+        Random random = new Random(SEED);
+        Integer[] entries = entries(LARGE, i -> random.nextInt(LARGE));
+        checkSort(entries, Comparator.comparingInt(x -> x / bucket));
+        checkSort(entries, ORDER.reversed());
+    }
+
+    /**
+     * Test with many small random inputs, of every size up to
+     * {@code SMALL_MAXIMUM}, to cover the shapes of small heaps.
+     */
+    @Test
+    public final void testManySmall() {
+        Random random = new Random(SEED);
+        for (int t = 0; t < SMALL_TRIALS; t++) {
+            int n = t % (SMALL_MAXIMUM + 1);
+            int range = 1 + random.nextInt(2 * n + 1);
+            checkSort(entries(n, i -> random.nextInt(range)), ORDER);
+        }
+    }
+
+}
@@ -1,5 +1,9 @@
+import static org.junit.Assert.assertEquals;
+
 import java.util.Comparator;
 
+import org.junit.Test;
+
 import components.sortingmachine.SortingMachine;
 import components.sortingmachine.SortingMachine1L;
 
@@ -18,4 +22,47 @@ public final class SortingMachine5aTest extends SortingMachineTest {
         return new SortingMachine1L<String>(order);
     }
 
+    /*
+     * Test cases for withExpectedSize: adding fewer, as many, and more entries
+     * than expected must all behave the same.
+     */
+
+    /**
+     * Adds {@code n} entries to a machine made with the given expected size,
+     * and checks that they come out in order.
+     *
+     * @param expectedSize
+     *            the expected size
+     * @param n
+     *            the number of entries to add
+     */
+    private static void checkWithExpectedSize(int expectedSize, int n) {
+        SortingMachine<Integer> m = SortingMachine5a
+                .withExpectedSize(Integer::compare, expectedSize);
+        for (int i = n - 1; i >= 0; i--) {
+            m.add(i);
+        }
+        assertEquals(n, m.size());
+        m.changeToExtractionMode();
+        for (int i = 0; i < n; i++) {
+            assertEquals(Integer.valueOf(i), m.removeFirst());
+        }
+        assertEquals(0, m.size());
+    }
+
+    @Test
+    public final void testWithExpectedSizeZero() {
+        checkWithExpectedSize(0, 40);
+    }
+
+    @Test
+    public final void testWithExpectedSizeExact() {
+        checkWithExpectedSize(40, 40);
+    }
+
+    @Test
+    public final void testWithExpectedSizeExceeded() {
+        checkWithExpectedSize(10, 1000);
+    }
+
 }
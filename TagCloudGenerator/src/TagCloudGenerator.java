@@ -2,7 +2,6 @@ import java.util.Comparator;
 
 import components.map.Map;
 import components.map.Map.Pair;
-import components.map.Map1L;
 import components.set.Set;
 import components.set.Set1L;
 import components.simplereader.SimpleReader;
@@ -77,8 +76,13 @@ public final class TagCloudGenerator {
             Comparator<Map.Pair<String, Integer>> countSort,
             Comparator<Map.Pair<String, Integer>> wordSort) {
 
+        /*
+         * Only the numWordsWanted most frequent words are ever removed, so
+         * the machine need not keep any others.
+         */
         SortingMachine<Map.Pair<String, Integer>> occurrenceSorted;
-        occurrenceSorted = new SortingMachine1L<>(countSort);
+        occurrenceSorted = new SortingMachine5a<>(countSort,
+                Math.max(numWordsWanted, 0));
 
         SortingMachine<Map.Pair<String, Integer>> wordSorted = new SortingMachine1L<>(
                 wordSort);
@@ -112,7 +116,7 @@ public final class TagCloudGenerator {
      * @requires size of inputtedWord to be greater than or equal to zero
      * @ensure all the words get inputed from user text file to inputtedWord
      */
-    private static void countWord(Map<String, Integer> wordMap,
+    private static void countWord(StringIntHashMap wordMap,
             SimpleReader in) {
         Set<Character> separators = new Set1L<>();
         separators.add(' ');
@@ -156,11 +160,7 @@ public final class TagCloudGenerator {
                 String word = wordSeparator(words, index, separators)
                         .toLowerCase();
                 if (!separators.contains(word.charAt(0))) {
-                    if (wordMap.hasKey(word)) {
-                        wordMap.replaceValue(word, wordMap.value(word) + 1);
-                    } else {
-                        wordMap.add(word, 1);
-                    }
+                    wordMap.increment(word, 1);
                 }
                 index += word.length();
             }
@@ -325,9 +325,10 @@ public final class TagCloudGenerator {
         Comparator<Map.Pair<String, Integer>> countSort = new ALPHABETIZE();
         Comparator<Map.Pair<String, Integer>> wordSort = new COUNTSORT();
 
-        Map<String, Integer> wordMap = new Map1L<>();
+        StringIntHashMap wordCounts = new StringIntHashMap();
 
-        countWord(wordMap, input);
+        countWord(wordCounts, input);
+        Map<String, Integer> wordMap = wordCounts.asMap();
 
         out.print(
                 "Please enter the number of words in the generated tag cloud: ");
@@ -158,13 +158,7 @@ public final class TagCloudGeneratorJavaStd {
                     String word = wordSeparator(words, index, separators)
                             .toLowerCase();
                     if (!separators.contains(word.charAt(0))) {
-                        if (wordMap.containsKey(word)) {
-                            int wordCount = wordMap.remove(word);
-                            wordCount++;
-                            wordMap.put(word, wordCount);
-                        } else {
-                            wordMap.put(word, 1);
-                        }
+                        wordMap.merge(word, 1, Integer::sum);
                     }
                     index += word.length();
                 }
@@ -5,7 +5,6 @@ import java.util.HashMap;
 import java.util.Scanner;
 
 import components.map.Map;
-import components.map.Map1L;
 import components.queue.Queue;
 import components.queue.Queue1L;
 import components.set.Set;
@@ -54,7 +53,7 @@ public final class WordCounter {
      * @requires size of inputtedWord to be greater than or equal to zero
      * @ensure all the words get inputed from user text file to inputtedWord
      */
-    private static void countWord(Map<String, Integer> wordMap,
+    private static void countWord(StringIntHashMap wordMap,
             SimpleReader in) {
         Set<Character> separators = new Set1L<>();
         separators.add(' ');
@@ -94,11 +93,7 @@ public final class WordCounter {
             while (index < words.length()) {
                 String word = wordSeparator(words, index, separators);
                 if (!separators.contains(word.charAt(0))) {
-                    if (wordMap.hasKey(word)) {
-                        wordMap.replaceValue(word, wordMap.value(word) + 1);
-                    } else {
-                        wordMap.add(word, 1);
-                    }
+                    wordMap.increment(word, 1);
                 }
                 index += word.length();
             }
@@ -172,9 +167,10 @@ public final class WordCounter {
         SimpleReader input = new SimpleReader1L(inputFileName);
         SimpleWriter output = new SimpleWriter1L(outputFileName);
 
-        Map<String, Integer> wordMap = new Map1L<String, Integer>();
+        StringIntHashMap wordCounts = new StringIntHashMap();
         Queue<String> listOfWords = new Queue1L<>();
-        countWord(wordMap, input);
+        countWord(wordCounts, input);
+        Map<String, Integer> wordMap = wordCounts.asMap();
         for (Map.Pair<String, Integer> wordList : wordMap) {
             listOfWords.enqueue(wordList.key());
         }